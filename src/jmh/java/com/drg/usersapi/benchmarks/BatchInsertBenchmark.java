@@ -0,0 +1,119 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.BatchResultDTO;
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.enums.DurabilityMode;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.impl.DurableUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.persistence.WriteAheadLog;
+import com.drg.usersapi.services.impl.UserServiceImpl;
+import com.drg.usersapi.validation.UserValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Users created per second through {@code UserService}: one batch of
+ * {@link #BATCH_SIZE} users against the same number of single inserts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BatchInsertBenchmark {
+	private static final int BATCH_SIZE = 10_000;
+
+	@Param({ "NONE", "DURABLE" })
+	private DurabilityMode durability;
+
+	private Path directory;
+	private UserRepository repository;
+	private UserServiceImpl service;
+	private List<UserDTO> batch;
+	private UserValidator validator;
+	private int seed;
+
+	@Setup(Level.Iteration)
+	public void setup() throws IOException {
+		repository = new InMemoryUserRepository();
+		if (durability != DurabilityMode.NONE) {
+			directory = Files.createTempDirectory("batch-benchmark");
+			repository = new DurableUserRepository(repository, new WriteAheadLog(directory, durability, 5), directory,
+					TimeUnit.HOURS.toMillis(1));
+		}
+		service = Fixtures.userService(repository);
+		validator = Fixtures.userValidator();
+		seed = 0;
+	}
+
+	/**
+	 * Emails are unique, so every invocation needs users the store has not
+	 * seen yet.
+	 */
+	@Setup(Level.Invocation)
+	public void nextBatch() {
+		int first = seed;
+		batch = IntStream.range(first, first + BATCH_SIZE)
+				.mapToObj(Fixtures::userDTO)
+				.collect(Collectors.toList());
+		seed += BATCH_SIZE;
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		if (repository instanceof Closeable) {
+			((Closeable) repository).close();
+		}
+		if (directory != null) {
+			try (Stream<Path> paths = Files.walk(directory)) {
+				paths.sorted(Comparator.reverseOrder())
+						.forEach(path -> path.toFile()
+								.delete());
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public BatchResultDTO batchInsert() {
+		return service.insertAll(batch);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void singleInserts(Blackhole blackhole) {
+		for (UserDTO user : batch) {
+			// What POST /users checks before calling the service
+			if (validator.validateFullUpdate(user)
+					.isValid()) {
+				blackhole.consume(service.insert(user));
+			}
+		}
+	}
+}
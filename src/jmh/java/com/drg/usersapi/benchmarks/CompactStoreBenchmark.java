@@ -0,0 +1,91 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.impl.CompactUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Object store against the compact store. Setup prints the live heap per
+ * user; {@code fullGc} times a full collection of the populated heap, which
+ * is what a store with more live objects pays in pause time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class CompactStoreBenchmark {
+	@Param({ "1000000" })
+	private int users;
+	@Param({ "objects", "compact" })
+	private String store;
+
+	private UserRepository repository;
+
+	@Setup
+	public void setup() {
+		long before = liveHeap();
+		repository = "compact".equals(store) ? new CompactUserRepository() : new InMemoryUserRepository();
+		Fixtures.populate(repository, users);
+		System.out.printf("%nLive heap: %d bytes per user%n", (liveHeap() - before) / users);
+	}
+
+	@Benchmark
+	public Optional<User> findById() {
+		return repository.findById(ThreadLocalRandom.current()
+				.nextLong(1, users + 1L));
+	}
+
+	@Benchmark
+	public List<User> rangeOfOneMonth() {
+		LocalDate from = Fixtures.FIRST_BIRTH_DATE.plusDays(ThreadLocalRandom.current()
+				.nextInt(Fixtures.BIRTH_DATE_SPREAD_DAYS));
+		return repository.findByBirthDateRange(from, from.plusMonths(1));
+	}
+
+	@Benchmark
+	public Optional<User> updateBirthDate() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		LocalDate birthDate = Fixtures.FIRST_BIRTH_DATE.plusDays(random.nextInt(Fixtures.BIRTH_DATE_SPREAD_DAYS));
+		return repository.update(random.nextLong(1, users + 1L), user -> user.toBuilder()
+				.birthDate(birthDate)
+				.build());
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 10)
+	public void fullGc() {
+		System.gc();
+	}
+
+	private static long liveHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		memory.gc();
+		return memory.getHeapMemoryUsage()
+				.getUsed();
+	}
+}
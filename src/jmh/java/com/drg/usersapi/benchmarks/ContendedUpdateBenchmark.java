@@ -0,0 +1,58 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.services.impl.UserServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PATCH throughput with 64 threads, either all on one user ({@code hot}) or
+ * spread over the whole store ({@code uniform}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+@Threads(64)
+public class ContendedUpdateBenchmark {
+	@Param({ "100000" })
+	private int users;
+	@Param({ "hot", "uniform" })
+	private String keys;
+
+	private UserServiceImpl service;
+	private final UserDTO partialUpdate = UserDTO.builder()
+			.firstName("Jane")
+			.build();
+
+	@Setup
+	public void setup() {
+		UserRepository repository = new InMemoryUserRepository();
+		Fixtures.populate(repository, users);
+		service = Fixtures.userService(repository);
+	}
+
+	@Benchmark
+	public UserDTO partialUpdateUser() {
+		long id = "hot".equals(keys) ? 1 : ThreadLocalRandom.current()
+				.nextLong(1, users + 1L);
+		return service.partialUpdateUser(id, partialUpdate, null);
+	}
+}
@@ -0,0 +1,71 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.exceptions.InvalidDateFormatException;
+import com.drg.usersapi.utils.ConverterUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConverterUtil} against the {@link DateTimeFormatter} based
+ * implementation it replaced, for valid and malformed input. Run with
+ * {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class DateConversionBenchmark {
+	private static final DateTimeFormatter LEGACY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+	@Param({ "1999-01-02", "1999-13-02", "not-a-date" })
+	private String input;
+
+	private final LocalDate date = LocalDate.of(1999, 1, 2);
+
+	@Benchmark
+	public Object legacyParse() {
+		try {
+			return LocalDate.parse(input, LEGACY_FORMATTER);
+		} catch (Exception e) {
+			return new InvalidDateFormatException("Invalid date format. Use: yyyy-MM-dd");
+		}
+	}
+
+	@Benchmark
+	public Object parse() {
+		try {
+			return ConverterUtil.localDateFromString(input);
+		} catch (InvalidDateFormatException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public int parseEpochDay() {
+		return ConverterUtil.epochDayFromString(input);
+	}
+
+	@Benchmark
+	public String legacyFormat() {
+		return date.format(LEGACY_FORMATTER);
+	}
+
+	@Benchmark
+	public String format() {
+		return ConverterUtil.stringFromLocalDate(date);
+	}
+}
@@ -0,0 +1,127 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.ImportResultDTO;
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.dto.UserJsonEncoder;
+import com.drg.usersapi.dto.UserJsonReader;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.services.impl.UserServiceImpl;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full export and import of the user base as gzip NDJSON, the work behind
+ * GET /users/export and POST /users/import without HTTP. Setup prints the
+ * uncompressed and compressed size of an export, which divided by the time
+ * per operation gives MB/s. The import reads the export, in birth date order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class ExportImportBenchmark {
+	private static final int BUFFER_SIZE = 8192;
+
+	@Param({ "200000" })
+	private int users;
+
+	private UserServiceImpl service;
+	private byte[] export;
+	private UserServiceImpl importService;
+
+	@Setup
+	public void setup() throws IOException {
+		InMemoryUserRepository repository = new InMemoryUserRepository();
+		Fixtures.populate(repository, users);
+		service = Fixtures.userService(repository);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		CountingOutputStream uncompressed = export(output);
+		export = output.toByteArray();
+		System.out.printf("%nExport: %d MB, %d MB compressed%n", uncompressed.count >> 20, export.length >> 20);
+	}
+
+	@Setup(Level.Invocation)
+	public void freshStore() {
+		importService = Fixtures.userService(new InMemoryUserRepository());
+	}
+
+	@Benchmark
+	public long exportAll() throws IOException {
+		return export(OutputStream.nullOutputStream()).count;
+	}
+
+	@Benchmark
+	public ImportResultDTO importAll() throws IOException {
+		try (UserJsonReader reader = new UserJsonReader(new JsonFactory(),
+				new GZIPInputStream(new ByteArrayInputStream(export), BUFFER_SIZE))) {
+			return importService.importUsers(reader);
+		}
+	}
+
+	/**
+	 * Writes the export as the controller does.
+	 *
+	 * @return the stream the uncompressed bytes went through
+	 */
+	private CountingOutputStream export(OutputStream output) throws IOException {
+		CountingOutputStream counting;
+		try (GZIPOutputStream gzip = new GZIPOutputStream(output, BUFFER_SIZE); Stream<UserDTO> exported = service.exportUsers()) {
+			counting = new CountingOutputStream(gzip);
+			UserJsonEncoder encoder = new UserJsonEncoder(BUFFER_SIZE + 512);
+			Iterator<UserDTO> iterator = exported.iterator();
+			while (iterator.hasNext()) {
+				encoder.append(iterator.next());
+				encoder.append((byte) '\n');
+				if (encoder.length() >= BUFFER_SIZE) {
+					encoder.drainTo(counting);
+				}
+			}
+			encoder.drainTo(counting);
+		}
+		return counting;
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+		private final OutputStream delegate;
+		private long count;
+
+		CountingOutputStream(OutputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			delegate.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			delegate.write(bytes, offset, length);
+			count += length;
+		}
+	}
+}
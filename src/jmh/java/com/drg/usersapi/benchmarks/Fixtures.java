@@ -0,0 +1,66 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.metrics.MetricsRegistry;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.services.impl.UserServiceImpl;
+import com.drg.usersapi.validation.UserValidator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.time.LocalDate;
+
+/**
+ * Shared test data and wiring for the benchmarks.
+ */
+final class Fixtures {
+	static final ValidatorFactory VALIDATOR_FACTORY = Validation.buildDefaultValidatorFactory();
+	static final Validator VALIDATOR = VALIDATOR_FACTORY.getValidator();
+	static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+	static final int BIRTH_DATE_SPREAD_DAYS = 20_000;
+
+	private Fixtures() {
+	}
+
+	static UserDTO userDTO(long seed) {
+		return new UserDTO(null, "user" + seed + "@mail.com", "John", "Tray" + seed, FIRST_BIRTH_DATE.plusDays(seed % BIRTH_DATE_SPREAD_DAYS)
+				.toString(), "Main St. Mankato Mississippi 96522", "212-456-7890");
+	}
+
+	static User user(long seed) {
+		return new User(userDTO(seed));
+	}
+
+	/**
+	 * A service wired the way Spring would, with the defaults from
+	 * application.yaml.
+	 */
+	static UserServiceImpl userService(UserRepository repository) {
+		UserServiceImpl service = new UserServiceImpl();
+		ReflectionTestUtils.setField(service, "minUserAge", 18);
+		ReflectionTestUtils.setField(service, "maxPageLimit", 1000);
+		ReflectionTestUtils.setField(service, "maxBatchSize", 100_000);
+		ReflectionTestUtils.setField(service, "importBatchSize", 1000);
+		ReflectionTestUtils.setField(service, "userRepository", repository);
+		ReflectionTestUtils.setField(service, "userValidator", userValidator());
+		ReflectionTestUtils.setField(service, "metrics", new MetricsRegistry());
+		return service;
+	}
+
+	static UserValidator userValidator() {
+		UserValidator validator = new UserValidator();
+		ReflectionTestUtils.setField(validator, "minUserAge", 18);
+		ReflectionTestUtils.setField(validator, "validator", VALIDATOR);
+		ReflectionTestUtils.setField(validator, "validatorFactory", VALIDATOR_FACTORY);
+		return validator;
+	}
+
+	static void populate(UserRepository repository, int users) {
+		for (int i = 0; i < users; i++) {
+			repository.insert(user(i));
+		}
+	}
+}
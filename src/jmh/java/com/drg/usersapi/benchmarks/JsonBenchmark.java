@@ -0,0 +1,128 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.dto.UserJsonEncoder;
+import com.drg.usersapi.dto.UserJsonSerializer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson (de)serialization of {@link UserDTO} with its snake_case
+ * {@code @JsonProperty} names, for one user and for a 1000-user range result.
+ * The {@code ThousandStoredUsers} pairs write a range result with ids and
+ * versions, once through Jackson's bean serializer and once without: as a
+ * list response through {@link UserJsonSerializer}, and as a streamed
+ * response through {@link UserJsonEncoder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ObjectWriter userWriter = objectMapper.writerFor(UserDTO.class);
+	private final ObjectReader userReader = objectMapper.readerFor(UserDTO.class);
+	private final ObjectMapper directMapper = new ObjectMapper().registerModule(new SimpleModule().addSerializer(new UserJsonSerializer()));
+	private final UserJsonEncoder encoder = new UserJsonEncoder(1 << 18);
+	private final ByteArrayOutputStream sink = new ByteArrayOutputStream(1 << 18);
+	private final UserDTO user = Fixtures.userDTO(42);
+	private List<UserDTO> users;
+	private List<UserDTO> storedUsers;
+	private byte[] userJson;
+
+	@Setup
+	public void setup() throws JsonProcessingException {
+		users = IntStream.range(0, 1000)
+				.mapToObj(Fixtures::userDTO)
+				.collect(Collectors.toList());
+		storedUsers = IntStream.range(0, 1000)
+				.mapToObj(i -> Fixtures.userDTO(i)
+						.toBuilder()
+						.id(i + 1L)
+						.version(1L)
+						.build())
+				.collect(Collectors.toList());
+		userJson = userWriter.writeValueAsBytes(user);
+	}
+
+	@Benchmark
+	public byte[] serializeUser() throws JsonProcessingException {
+		return userWriter.writeValueAsBytes(user);
+	}
+
+	@Benchmark
+	public byte[] serializeThousandUsers() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(users);
+	}
+
+	@Benchmark
+	public int listThousandStoredUsersByBean() throws IOException {
+		sink.reset();
+		objectMapper.writeValue(sink, storedUsers);
+		return sink.size();
+	}
+
+	@Benchmark
+	public int listThousandStoredUsersDirect() throws IOException {
+		sink.reset();
+		directMapper.writeValue(sink, storedUsers);
+		return sink.size();
+	}
+
+	@Benchmark
+	public int streamThousandStoredUsersByBean() throws IOException {
+		sink.reset();
+		try (JsonGenerator generator = objectMapper.getFactory()
+				.createGenerator(sink)) {
+			generator.writeStartArray();
+			for (UserDTO stored : storedUsers) {
+				userWriter.writeValue(generator, stored);
+			}
+			generator.writeEndArray();
+		}
+		return sink.size();
+	}
+
+	@Benchmark
+	public int streamThousandStoredUsersEncoded() throws IOException {
+		sink.reset();
+		encoder.append((byte) '[');
+		for (UserDTO stored : storedUsers) {
+			if (encoder.length() > 1) {
+				encoder.append((byte) ',');
+			}
+			encoder.append(stored);
+		}
+		encoder.append((byte) ']');
+		encoder.drainTo(sink);
+		return sink.size();
+	}
+
+	@Benchmark
+	public UserDTO deserializeUser() throws Exception {
+		return userReader.readValue(userJson);
+	}
+}
@@ -0,0 +1,39 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.entities.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions between {@link User} and {@link UserDTO} done on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+	private final UserDTO userDTO = Fixtures.userDTO(42);
+	private final User user = Fixtures.user(42);
+
+	@Benchmark
+	public User userFromDTO() {
+		return new User(userDTO);
+	}
+
+	@Benchmark
+	public UserDTO dtoFromUser() {
+		return new UserDTO(user);
+	}
+}
@@ -0,0 +1,42 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.exceptions.BirthDateRestrictionException;
+import com.drg.usersapi.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording one call in {@link MetricsRegistry}, contended across
+ * threads. The GC profiler should report no allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final Exception error = new BirthDateRestrictionException("User must be at least 18 years old.");
+
+	@Benchmark
+	public void recordSuccess() {
+		metrics.record("UserService.insert", System.nanoTime() - 1000, null);
+	}
+
+	@Benchmark
+	public void recordError() {
+		metrics.record("UserService.insert", System.nanoTime() - 1000, error);
+	}
+}
@@ -0,0 +1,77 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.NameSearch;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name search through the trigram index against a scan of every user, over
+ * names made of random syllables. Setup prints the index size per user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class NameSearchBenchmark {
+	private static final String[] SYLLABLES = { "an", "bel", "cor", "dan", "el", "fer", "gar", "hol", "is", "jo", "kel", "lin", "mar", "nor",
+			"ol", "per", "ros", "sin", "tor", "wil", "smi", "th", "ul", "vin", "bra", "dor", "ev", "fin", "gun", "har", "ing", "lu", "mo", "nat",
+			"pa", "ri", "sa", "te", "ud", "ver", "wen", "ya" };
+	private static final int LIMIT = 20;
+
+	@Param({ "100000", "1000000" })
+	private int users;
+	@Param({ "smi", "marlin", "jo tor" })
+	private String query;
+
+	private InMemoryUserRepository repository;
+
+	@Setup
+	public void setup() {
+		repository = new InMemoryUserRepository();
+		Random random = new Random(42);
+		for (int i = 0; i < users; i++) {
+			repository.insert(Fixtures.user(i)
+					.toBuilder()
+					.firstName(name(random, 2))
+					.lastName(name(random, 3))
+					.build());
+		}
+		System.out.printf("%nName index: %d bytes per user%n", repository.nameIndexBytes() / users);
+	}
+
+	@Benchmark
+	public List<User> indexed() {
+		return repository.searchByName(query, LIMIT);
+	}
+
+	@Benchmark
+	public List<User> scan() {
+		return NameSearch.top(repository.findAll(), NameSearch.words(query), LIMIT);
+	}
+
+	private static String name(Random random, int syllables) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < syllables; i++) {
+			name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+		return name.toString();
+	}
+}
@@ -0,0 +1,81 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.impl.ShardedUserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single store against the id-hash sharded store. Run with {@code -t} set to
+ * 1, 2, 4 ... up to the core count to see how writes and fanned-out range
+ * reads scale with threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class ShardedStoreBenchmark {
+	@Param({ "100000" })
+	private int users;
+	@Param({ "1", "16" })
+	private int shards;
+
+	private UserRepository repository;
+
+	@Setup
+	public void setup() {
+		repository = shards == 1 ? new InMemoryUserRepository() : new ShardedUserRepository(shards);
+		Fixtures.populate(repository, users);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (repository instanceof ShardedUserRepository) {
+			((ShardedUserRepository) repository).close();
+		}
+	}
+
+	@Benchmark
+	public Optional<User> updateBirthDate() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		LocalDate birthDate = Fixtures.FIRST_BIRTH_DATE
+				.plusDays(random.nextInt(Fixtures.BIRTH_DATE_SPREAD_DAYS));
+		return repository.update(random.nextLong(1, users + 1L), user -> user.toBuilder()
+				.birthDate(birthDate)
+				.build());
+	}
+
+	@Benchmark
+	public Optional<User> findById() {
+		return repository.findById(ThreadLocalRandom.current()
+				.nextLong(1, users + 1L));
+	}
+
+	@Benchmark
+	public List<User> rangeOfOneMonth() {
+		LocalDate from = Fixtures.FIRST_BIRTH_DATE
+				.plusDays(ThreadLocalRandom.current()
+						.nextInt(Fixtures.BIRTH_DATE_SPREAD_DAYS));
+		return repository.findByBirthDateRange(from, from.plusMonths(1));
+	}
+}
@@ -0,0 +1,90 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.enums.DurabilityMode;
+import com.drg.usersapi.repositories.impl.DurableUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.persistence.SnapshotFile;
+import com.drg.usersapi.repositories.persistence.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Time-to-first-request after a restart: loading a snapshot of N users,
+ * rebuilding the indexes and serving one lookup by id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xms12g", "-Xmx12g" })
+public class SnapshotStartupBenchmark {
+	@Param({ "1000000", "10000000" })
+	private long users;
+
+	private Path directory;
+	private DurableUserRepository repository;
+
+	@Setup(Level.Trial)
+	public void writeSnapshot() throws IOException {
+		directory = Files.createTempDirectory("snapshot-benchmark");
+		SnapshotFile.write(directory.resolve("snapshot.bin"), 1, LongStream.rangeClosed(1, users)
+				.mapToObj(SnapshotStartupBenchmark::user));
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeRepository() throws IOException {
+		repository.close();
+		repository = null;
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteSnapshot() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder())
+					.forEach(path -> path.toFile()
+							.delete());
+		}
+	}
+
+	@Benchmark
+	public User timeToFirstRequest() {
+		WriteAheadLog log = new WriteAheadLog(directory, DurabilityMode.ASYNC, 5);
+		repository = new DurableUserRepository(new InMemoryUserRepository(), log, directory, TimeUnit.HOURS.toMillis(1));
+		return repository.findById(users / 2)
+				.orElseThrow();
+	}
+
+	private static User user(long id) {
+		return User.builder()
+				.id(id)
+				.email("user" + id + "@mail.com")
+				.firstName("John")
+				.lastName("Tray" + id)
+				.birthDate(LocalDate.ofEpochDay(-10_000 + id % 20_000))
+				.address("Main St. Mankato Mississippi 96522")
+				.phoneNumber("212-456-7890")
+				.build();
+	}
+}
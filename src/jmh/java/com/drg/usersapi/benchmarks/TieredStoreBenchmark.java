@@ -0,0 +1,91 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.impl.TieredUserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Tiered store holding a tenth of its users on the heap. Setup prints the
+ * live heap per user and the mapped file size; {@code findHot} reads users
+ * that stay hot, {@code findCold} users that are never read twice and stay
+ * in the mapped files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class TieredStoreBenchmark {
+	@Param({ "1000000" })
+	private int users;
+
+	private Path directory;
+	private TieredUserRepository repository;
+	private long[] hotIds;
+	private long[] coldIds;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("tiered-benchmark");
+		long before = liveHeap();
+		// Promote on a read count no cold read reaches, so that the tiers stay put
+		repository = new TieredUserRepository(directory, users / 10, Integer.MAX_VALUE);
+		Fixtures.populate(repository, users);
+		System.out.printf("%nLive heap: %d bytes per user, %d hot, %d MiB mapped%n", (liveHeap() - before) / users,
+				repository.hotCount(), repository.coldMappedBytes() >> 20);
+		hotIds = LongStream.rangeClosed(1, users)
+				.filter(id -> repository.isHot(id))
+				.toArray();
+		coldIds = LongStream.rangeClosed(1, users)
+				.filter(id -> !repository.isHot(id))
+				.toArray();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		repository.close();
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public Optional<User> findHot() {
+		return repository.findById(hotIds[ThreadLocalRandom.current()
+				.nextInt(hotIds.length)]);
+	}
+
+	@Benchmark
+	public Optional<User> findCold() {
+		return repository.findById(coldIds[ThreadLocalRandom.current()
+				.nextInt(coldIds.length)]);
+	}
+
+	private static long liveHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		memory.gc();
+		return memory.getHeapMemoryUsage()
+				.getUsed();
+	}
+}
@@ -0,0 +1,167 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.dto.UserPageDTO;
+import com.drg.usersapi.dto.UserQueryDTO;
+import com.drg.usersapi.dto.UserStatsDTO;
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.UserQuery;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.services.impl.UserServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Every {@code UserService} operation against a populated in-memory store.
+ * Ids are picked at random so lookups do not stay in cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class UserServiceBenchmark {
+	@Param({ "100000" })
+	private int users;
+
+	private UserRepository repository;
+	private UserServiceImpl service;
+	private UserDTO newUser;
+	// Full updates keep each user's own email, which is unique
+	private UserDTO[] fullUpdates;
+	private String[] emails;
+	private final UserQueryDTO oneMonthWithFilters = new UserQueryDTO("1980-01-01", "1980-01-31", null, "mail.com", "tray", true);
+	private final UserDTO partialUpdate = UserDTO.builder()
+			.firstName("Jane")
+			.build();
+
+	@Setup
+	public void setup() {
+		repository = new InMemoryUserRepository();
+		Fixtures.populate(repository, users);
+		service = Fixtures.userService(repository);
+		newUser = Fixtures.userDTO(users);
+		fullUpdates = new UserDTO[users];
+		emails = new String[users];
+		for (int i = 0; i < users; i++) {
+			fullUpdates[i] = Fixtures.userDTO(i)
+					.toBuilder()
+					.firstName("Jane")
+					.build();
+			emails[i] = fullUpdates[i].getEmail()
+					.toUpperCase(Locale.ROOT);
+		}
+	}
+
+	@Benchmark
+	public UserDTO insert() {
+		UserDTO created = service.insert(newUser);
+		// Keep the store size stable
+		repository.delete(created.getId());
+		return created;
+	}
+
+	@Benchmark
+	public UserDTO deleteAndReinsert() {
+		long id = randomId();
+		UserDTO deleted = new UserDTO(repository.findById(id)
+				.orElseThrow());
+		service.delete(id);
+		repository.put(Fixtures.user(id - 1)
+				.toBuilder()
+				.id(id)
+				.build());
+		return deleted;
+	}
+
+	@Benchmark
+	public UserDTO updateUser() {
+		long id = randomId();
+		return service.updateUser(id, fullUpdates[(int) id - 1], null);
+	}
+
+	@Benchmark
+	public UserDTO userByEmail() {
+		return service.getUserByEmail(emails[(int) randomId() - 1]);
+	}
+
+	@Benchmark
+	public UserDTO partialUpdateUser() {
+		return service.partialUpdateUser(randomId(), partialUpdate, null);
+	}
+
+	@Benchmark
+	public List<UserDTO> rangeOfOneMonth() {
+		return service.getUsersByBirthDateRange("1980-01-01", "1980-01-31");
+	}
+
+	@Benchmark
+	public UserPageDTO pageOfHundred() {
+		return service.getUsersByBirthDateRange("1950-01-01", "2000-01-01", 100, null);
+	}
+
+	@Benchmark
+	public long countOfFiftyYears() {
+		return service.countUsersByBirthDateRange("1950-01-01", "2000-01-01");
+	}
+
+	@Benchmark
+	public List<UserDTO> queryOneMonthWithFilters() {
+		return service.queryUsers(oneMonthWithFilters, 100);
+	}
+
+	/**
+	 * The same query without a planner, for comparison.
+	 */
+	@Benchmark
+	public List<User> queryOneMonthWithFiltersByScan() {
+		UserQuery query = UserQuery.builder()
+				.birthDateFrom(LocalDate.of(1980, 1, 1))
+				.birthDateTo(LocalDate.of(1980, 1, 31))
+				.emailDomain(oneMonthWithFilters.getEmailDomain())
+				.lastNamePrefix(oneMonthWithFilters.getLastNamePrefix())
+				.hasPhone(true)
+				.build();
+		try (Stream<User> users = repository.findAll()) {
+			return users.filter(query::matches)
+					.limit(100)
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Benchmark
+	public long upcomingBirthdaysOfWeek() {
+		try (Stream<UserDTO> users = service.streamUpcomingBirthdays(7)) {
+			return users.count();
+		}
+	}
+
+	@Benchmark
+	public UserStatsDTO stats() {
+		return service.getStats();
+	}
+
+	private long randomId() {
+		return ThreadLocalRandom.current()
+				.nextLong(1, users + 1L);
+	}
+}
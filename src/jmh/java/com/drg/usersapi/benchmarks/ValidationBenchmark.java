@@ -0,0 +1,73 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.validation.FullUpdate;
+import com.drg.usersapi.validation.PartialUpdate;
+import com.drg.usersapi.validation.UserValidation;
+import com.drg.usersapi.validation.UserValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean Validation of {@link UserDTO} in the groups the controller used
+ * against the {@link UserValidator} checks that replaced it. The validator
+ * also checks the birth date, which Bean Validation left to the service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+	private final UserDTO valid = Fixtures.userDTO(42);
+	private final UserDTO invalid = valid.toBuilder()
+			.email("wrong")
+			.firstName("")
+			.build();
+	private final UserValidator userValidator = Fixtures.userValidator();
+	private final UserDTO partial = UserDTO.builder()
+			.firstName("Jane")
+			.build();
+
+	@Benchmark
+	public Set<ConstraintViolation<UserDTO>> fullUpdateValid() {
+		return Fixtures.VALIDATOR.validate(valid, FullUpdate.class);
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<UserDTO>> fullUpdateInvalid() {
+		return Fixtures.VALIDATOR.validate(invalid, FullUpdate.class);
+	}
+
+	@Benchmark
+	public Set<ConstraintViolation<UserDTO>> partialUpdateValid() {
+		return Fixtures.VALIDATOR.validate(partial, PartialUpdate.class);
+	}
+
+	@Benchmark
+	public UserValidation fullUpdateValidPrecompiled() {
+		return userValidator.validateFullUpdate(valid);
+	}
+
+	@Benchmark
+	public UserValidation fullUpdateInvalidPrecompiled() {
+		return userValidator.validateFullUpdate(invalid);
+	}
+
+	@Benchmark
+	public UserValidation partialUpdateValidPrecompiled() {
+		return userValidator.validatePartialUpdate(partial);
+	}
+}
@@ -0,0 +1,86 @@
+package com.drg.usersapi.benchmarks;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.enums.DurabilityMode;
+import com.drg.usersapi.repositories.impl.DurableUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.persistence.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Insert throughput of the durable user store in each durability mode, with
+ * enough threads for group commit to matter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(16)
+public class WalWriteBenchmark {
+	@Param({ "DURABLE", "BATCHED", "ASYNC" })
+	private DurabilityMode mode;
+
+	@Param({ "5" })
+	private long flushIntervalMillis;
+
+	private Path directory;
+	private DurableUserRepository repository;
+	private final AtomicLong emailSequence = new AtomicLong();
+	private final User user = User.builder()
+			.email("example@mail.com")
+			.firstName("John")
+			.lastName("Tray")
+			.birthDate(LocalDate.of(1999, 1, 2))
+			.address("Main St. Mankato Mississippi 96522")
+			.phoneNumber("212-456-7890")
+			.build();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("wal-benchmark");
+		WriteAheadLog log = new WriteAheadLog(directory, mode, flushIntervalMillis);
+		repository = new DurableUserRepository(new InMemoryUserRepository(), log, directory, TimeUnit.MINUTES.toMillis(10));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		repository.close();
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder())
+					.forEach(path -> path.toFile()
+							.delete());
+		}
+	}
+
+	@Benchmark
+	public User insert() {
+		// Emails are unique
+		return repository.insert(user.toBuilder()
+				.email("user" + emailSequence.incrementAndGet() + "@mail.com")
+				.build());
+	}
+}
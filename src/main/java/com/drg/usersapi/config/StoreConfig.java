@@ -0,0 +1,103 @@
+package com.drg.usersapi.config;
+
+import com.drg.usersapi.enums.DurabilityMode;
+import com.drg.usersapi.enums.StoreEngine;
+import com.drg.usersapi.metrics.MetricsRegistry;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.impl.CachingUserRepository;
+import com.drg.usersapi.repositories.impl.CompactUserRepository;
+import com.drg.usersapi.repositories.impl.DurableUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.impl.ShardedUserRepository;
+import com.drg.usersapi.repositories.impl.TieredUserRepository;
+import com.drg.usersapi.repositories.persistence.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Configuration
+public class StoreConfig {
+	@Value("${user.store.engine:OBJECTS}")
+	private StoreEngine engine;
+	@Value("${user.store.tiered.hot-capacity:0}")
+	private int hotCapacity;
+	@Value("${user.store.tiered.directory:data/cold}")
+	private String coldDirectory;
+	@Value("${user.store.tiered.promote-after-reads:2}")
+	private int promoteAfterReads;
+	@Value("${user.store.shards:1}")
+	private int shards;
+	@Value("${user.store.durability:NONE}")
+	private DurabilityMode durability;
+	@Value("${user.store.wal.directory:data}")
+	private String walDirectory;
+	@Value("${user.store.wal.flush-interval-ms:5}")
+	private long flushIntervalMillis;
+	@Value("${user.store.wal.snapshot-interval-ms:60000}")
+	private long snapshotIntervalMillis;
+	@Value("${user.store.cache.maximum-size:100000}")
+	private long cacheMaximumSize;
+	@Value("${user.store.cache.expire-after-write-ms:0}")
+	private long cacheExpireAfterWriteMillis;
+	@Autowired
+	private MetricsRegistry metrics;
+
+	@Bean
+	public UserRepository userRepository() {
+		checkStoreSettings();
+		UserRepository repository;
+		if (engine == StoreEngine.COMPACT) {
+			CompactUserRepository store = new CompactUserRepository();
+			metrics.gauge("user_store_bytes", store::estimatedBytes);
+			repository = store;
+		} else if (hotCapacity > 0) {
+			TieredUserRepository store = new TieredUserRepository(Paths.get(coldDirectory), hotCapacity, promoteAfterReads);
+			metrics.gauge("user_hot_users", store::hotCount);
+			metrics.gauge("user_cold_users", store::coldCount);
+			metrics.gauge("user_cold_mapped_bytes", store::coldMappedBytes);
+			repository = store;
+		} else if (shards > 1) {
+			ShardedUserRepository store = new ShardedUserRepository(shards);
+			metrics.gauge("user_name_index_bytes", store::nameIndexBytes);
+			repository = store;
+		} else {
+			InMemoryUserRepository store = new InMemoryUserRepository();
+			metrics.gauge("user_name_index_bytes", store::nameIndexBytes);
+			repository = store;
+		}
+		if (durability != DurabilityMode.NONE) {
+			Path directory = Paths.get(walDirectory);
+			WriteAheadLog log = new WriteAheadLog(directory, durability, flushIntervalMillis);
+			repository = new DurableUserRepository(repository, log, directory, snapshotIntervalMillis);
+		}
+		if (cacheMaximumSize > 0) {
+			CachingUserRepository cache = new CachingUserRepository(repository, cacheMaximumSize, cacheExpireAfterWriteMillis);
+			metrics.gauge("user_cache_hits", () -> cache.stats()
+					.hitCount());
+			metrics.gauge("user_cache_misses", () -> cache.stats()
+					.missCount());
+			metrics.gauge("user_cache_evictions", () -> cache.stats()
+					.evictionCount());
+			metrics.gauge("user_cache_size", cache::estimatedSize);
+			repository = cache;
+		}
+		return repository;
+	}
+
+	/**
+	 * Fails startup on store settings that would otherwise be silently
+	 * ignored: the compact, tiered and sharded stores exclude each other.
+	 */
+	private void checkStoreSettings() {
+		if (engine == StoreEngine.COMPACT && (shards > 1 || hotCapacity > 0)) {
+			throw new IllegalStateException("user.store.engine COMPACT cannot be combined with user.store.shards above 1 or user.store.tiered.hot-capacity above 0");
+		}
+		if (hotCapacity > 0 && shards > 1) {
+			throw new IllegalStateException("user.store.tiered.hot-capacity above 0 cannot be combined with user.store.shards above 1");
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.drg.usersapi.config;
+
+import com.drg.usersapi.metrics.MetricsInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+	@Autowired
+	private MetricsInterceptor metricsInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(metricsInterceptor)
+				.addPathPatterns("/users/**", "/users");
+	}
+}
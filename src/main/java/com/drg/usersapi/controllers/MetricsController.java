@@ -0,0 +1,143 @@
+package com.drg.usersapi.controllers;
+
+import com.drg.usersapi.metrics.LatencyHistogram;
+import com.drg.usersapi.metrics.MetricsRegistry;
+import com.drg.usersapi.metrics.OperationMetrics;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Latency, throughput and error metrics of the user API, for local scraping only.
+ */
+@RestController
+@RequestMapping("/internal/metrics")
+public class MetricsController {
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+	@Autowired
+	private MetricsRegistry metrics;
+	@Value("${user.metrics.local-only:true}")
+	private boolean localOnly;
+
+	@GetMapping(produces = "application/json")
+	@Operation(summary = "Operation metrics as JSON; latencies in microseconds.")
+	public ResponseEntity<?> json(HttpServletRequest request) {
+		if (!isAllowed(request)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN)
+					.build();
+		}
+		Map<String, Object> operations = new LinkedHashMap<>();
+		for (OperationMetrics operation : metrics.operations()) {
+			LatencyHistogram.Snapshot latency = operation.latency();
+			Map<String, Object> latencyMicros = new LinkedHashMap<>();
+			for (double quantile : QUANTILES) {
+				latencyMicros.put("p" + quantileLabel(quantile), latency.valueAtQuantile(quantile) / 1000.0);
+			}
+			latencyMicros.put("mean", latency.getMeanNanos() / 1000.0);
+			latencyMicros.put("max", latency.getMaxNanos() / 1000.0);
+
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("count", latency.getCount());
+			values.put("per_second", latency.getCount() / metrics.uptimeSeconds());
+			values.put("errors", operation.errors());
+			values.put("latency_us", latencyMicros);
+			operations.put(operation.getName(), values);
+		}
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("uptime_seconds", metrics.uptimeSeconds());
+		body.put("operations", operations);
+		body.put("gauges", metrics.gauges());
+		return ResponseEntity.ok(body);
+	}
+
+	@GetMapping(value = "/prometheus", produces = "text/plain;version=0.0.4;charset=utf-8")
+	@Operation(summary = "Operation metrics in the Prometheus text format.")
+	public ResponseEntity<?> prometheus(HttpServletRequest request) {
+		if (!isAllowed(request)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN)
+					.build();
+		}
+		StringBuilder text = new StringBuilder();
+		text.append("# HELP user_api_operation_duration_seconds Latency of user API operations.\n");
+		text.append("# TYPE user_api_operation_duration_seconds summary\n");
+		for (OperationMetrics operation : metrics.operations()) {
+			LatencyHistogram.Snapshot latency = operation.latency();
+			String label = "operation=\"" + operation.getName() + "\"";
+			for (double quantile : QUANTILES) {
+				text.append("user_api_operation_duration_seconds{")
+						.append(label)
+						.append(",quantile=\"")
+						.append(quantile)
+						.append("\"} ")
+						.append(seconds(latency.valueAtQuantile(quantile)))
+						.append('\n');
+			}
+			text.append("user_api_operation_duration_seconds_sum{")
+					.append(label)
+					.append("} ")
+					.append(seconds(latency.getTotalNanos()))
+					.append('\n');
+			text.append("user_api_operation_duration_seconds_count{")
+					.append(label)
+					.append("} ")
+					.append(latency.getCount())
+					.append('\n');
+		}
+		text.append("# HELP user_api_operation_errors_total Failed user API operations by exception type.\n");
+		text.append("# TYPE user_api_operation_errors_total counter\n");
+		for (OperationMetrics operation : metrics.operations()) {
+			operation.errors()
+					.forEach((exception, count) -> text.append("user_api_operation_errors_total{operation=\"")
+							.append(operation.getName())
+							.append("\",exception=\"")
+							.append(exception)
+							.append("\"} ")
+							.append(count)
+							.append('\n'));
+		}
+		metrics.gauges()
+				.forEach((name, value) -> text.append("# TYPE user_api_")
+						.append(name)
+						.append(" gauge\n")
+						.append("user_api_")
+						.append(name)
+						.append(' ')
+						.append(value)
+						.append('\n'));
+		return ResponseEntity.ok(text.toString());
+	}
+
+	private boolean isAllowed(HttpServletRequest request) {
+		if (!localOnly) {
+			return true;
+		}
+		try {
+			return InetAddress.getByName(request.getRemoteAddr())
+					.isLoopbackAddress();
+		} catch (UnknownHostException e) {
+			return false;
+		}
+	}
+
+	private static String quantileLabel(double quantile) {
+		return String.format(Locale.ROOT, "%s", quantile * 100)
+				.replaceAll("\\.0$", "")
+				.replace('.', '_');
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+	}
+}
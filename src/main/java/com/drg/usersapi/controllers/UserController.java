@@ -1,23 +1,43 @@
 package com.drg.usersapi.controllers;
 
+import com.drg.usersapi.dto.BatchResultDTO;
 import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.dto.UserJsonEncoder;
+import com.drg.usersapi.dto.UserJsonReader;
+import com.drg.usersapi.dto.UserPageDTO;
+import com.drg.usersapi.dto.UserQueryDTO;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
 import com.drg.usersapi.exceptions.BirthDateRestrictionException;
+import com.drg.usersapi.exceptions.InvalidBatchException;
+import com.drg.usersapi.exceptions.InvalidBirthdayWindowException;
 import com.drg.usersapi.exceptions.InvalidDateFormatException;
 import com.drg.usersapi.exceptions.InvalidDateRangeException;
+import com.drg.usersapi.exceptions.InvalidPageRequestException;
+import com.drg.usersapi.exceptions.InvalidSearchException;
+import com.drg.usersapi.exceptions.StaleVersionException;
+import com.drg.usersapi.exceptions.UserNotFoundException;
+import com.drg.usersapi.metrics.MetricsInterceptor;
 import com.drg.usersapi.services.UserService;
-import com.drg.usersapi.validation.FullUpdate;
-import com.drg.usersapi.validation.PartialUpdate;
+import com.drg.usersapi.validation.UserValidation;
+import com.drg.usersapi.validation.UserValidator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
-import org.springframework.validation.FieldError;
-import org.springframework.validation.annotation.Validated;
-import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -26,46 +46,232 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.util.HashMap;
+import javax.servlet.http.HttpServletRequest;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 
 @RestController
 @RequestMapping(value = "/users", produces = "application/json")
 public class UserController {
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+	public static final String APPLICATION_GZIP_VALUE = "application/gzip";
+	public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+	private static final int STREAM_BUFFER_SIZE = 8192;
+	private static final Logger LOGGER = LoggerFactory.getLogger(UserController.class);
 	@Autowired
 	private UserService userService;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private UserValidator userValidator;
+	@Autowired
+	private MetricsInterceptor metricsInterceptor;
+	@Value("${user.batch.max-size:100000}")
+	private int maxBatchSize;
 
 	@PostMapping
 	@Operation(summary = "Create a new user.")
 	@ApiResponses(value = { @ApiResponse(responseCode = "201", description = "User created."),
-			@ApiResponse(responseCode = "400", description = "Problem with request.") })
-	public ResponseEntity<?> insert(@RequestBody @Validated(FullUpdate.class) UserDTO user) {
+			@ApiResponse(responseCode = "400", description = "Problem with request."),
+			@ApiResponse(responseCode = "409", description = "Email already in use.") })
+	public ResponseEntity<?> insert(@RequestBody UserDTO user) {
+		UserValidation validation = userValidator.validateFullUpdate(user);
+		if (!validation.isValid()) {
+			return badRequest(validation);
+		}
 		UserDTO createdUser = userService.insert(user);
 		return ResponseEntity.status(HttpStatus.CREATED)
 				.body(createdUser);
 	}
 
+	@PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+	@Operation(summary = "Create users in bulk from a JSON array.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Batch processed, see per-item results."),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<?> insertBatch(@RequestBody List<UserDTO> users) {
+		BatchResultDTO result = userService.insertAll(users);
+		return ResponseEntity.ok(result);
+	}
+
+	@PostMapping(value = "/batch", consumes = APPLICATION_NDJSON_VALUE)
+	@Operation(summary = "Create users in bulk from newline-delimited JSON.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Batch processed, see per-item results."),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<?> insertBatchNdjson(HttpServletRequest request) throws IOException {
+		List<UserDTO> users = new ArrayList<>();
+		try (MappingIterator<UserDTO> iterator = objectMapper.readerFor(UserDTO.class)
+				.readValues(request.getInputStream())) {
+			while (iterator.hasNextValue()) {
+				if (users.size() == maxBatchSize) {
+					throw new InvalidBatchException("Batch must not contain more than " + maxBatchSize + " users.");
+				}
+				users.add(iterator.nextValue());
+			}
+		} catch (JsonProcessingException e) {
+			throw new HttpMessageNotReadableException(e.getOriginalMessage(), e, new ServletServerHttpRequest(request));
+		}
+		BatchResultDTO result = userService.insertAll(users);
+		return ResponseEntity.ok(result);
+	}
+
+	@PostMapping(value = "/import", consumes = { APPLICATION_GZIP_VALUE, APPLICATION_NDJSON_VALUE })
+	@Operation(summary = "Restore users from an export, gzip-compressed or plain newline-delimited JSON.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Import finished, see counts and the first errors."),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<?> importUsers(HttpServletRequest request) throws IOException {
+		InputStream input = request.getInputStream();
+		try {
+			if (MediaType.parseMediaType(request.getContentType())
+					.isCompatibleWith(MediaType.parseMediaType(APPLICATION_GZIP_VALUE))) {
+				input = new GZIPInputStream(input, STREAM_BUFFER_SIZE);
+			}
+			try (UserJsonReader users = new UserJsonReader(objectMapper.getFactory(), input)) {
+				return ResponseEntity.ok(userService.importUsers(users));
+			}
+		} catch (UncheckedIOException e) {
+			rejectUnreadable(e.getCause(), request);
+			throw e.getCause();
+		} catch (IOException e) {
+			rejectUnreadable(e, request);
+			throw e;
+		}
+	}
+
+	/**
+	 * Answers malformed JSON or gzip with a 400. Other I/O errors, such as
+	 * the client going away, are left to the caller.
+	 */
+	private static void rejectUnreadable(IOException e, HttpServletRequest request) {
+		if (e instanceof JsonProcessingException) {
+			throw new HttpMessageNotReadableException(((JsonProcessingException) e).getOriginalMessage(), e, new ServletServerHttpRequest(request));
+		}
+		if (e instanceof ZipException || e instanceof EOFException) {
+			throw new HttpMessageNotReadableException("Invalid gzip data: " + e.getMessage(), e, new ServletServerHttpRequest(request));
+		}
+	}
+
+	@GetMapping("/{id}")
+	@Operation(summary = "Get user.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "User found."),
+			@ApiResponse(responseCode = "304", description = "User unchanged since the version in If-None-Match."),
+			@ApiResponse(responseCode = "404", description = "User not found.") })
+	public ResponseEntity<?> getUser(@PathVariable Long id, WebRequest request) {
+		UserDTO user = userService.getUser(id);
+		String eTag = eTagOf(user);
+		if (request.checkNotModified(eTag)) {
+			// The 304 status and ETag header are already set, there is no body to write
+			return null;
+		}
+		return ResponseEntity.ok()
+				.eTag(eTag)
+				.body(user);
+	}
+
+	@GetMapping(params = "email")
+	@Operation(summary = "Get user by email.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "User found."),
+			@ApiResponse(responseCode = "404", description = "User not found.") })
+	public ResponseEntity<?> getUserByEmail(@RequestParam @Parameter(name = "email", description = "email, in any case", example = "example@mail.com") String email) {
+		UserDTO user = userService.getUserByEmail(email);
+		return ResponseEntity.ok()
+				.eTag(eTagOf(user))
+				.body(user);
+	}
+
 	@PutMapping("/{id}")
 	@Operation(summary = "Update user.")
 	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "User updated."),
-			@ApiResponse(responseCode = "400", description = "Problem with request.") })
-	public ResponseEntity<?> updateUser(@PathVariable Long id, @RequestBody @Validated(FullUpdate.class) UserDTO user) {
-		UserDTO updatedUser = userService.updateUser(id, user);
-		return ResponseEntity.ok(updatedUser);
+			@ApiResponse(responseCode = "400", description = "Problem with request."),
+			@ApiResponse(responseCode = "404", description = "User not found."),
+			@ApiResponse(responseCode = "409", description = "Email already in use."),
+			@ApiResponse(responseCode = "412", description = "User changed since the version in If-Match.") })
+	public ResponseEntity<?> updateUser(@PathVariable Long id, @RequestBody UserDTO user,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		UserValidation validation = userValidator.validateFullUpdate(user);
+		if (!validation.isValid()) {
+			return badRequest(validation);
+		}
+		UserDTO updatedUser = userService.updateUser(id, user, expectedVersion(ifMatch));
+		return ResponseEntity.ok()
+				.eTag(eTagOf(updatedUser))
+				.body(updatedUser);
 	}
 
 	@PatchMapping("/{id}")
 	@Operation(summary = "Update user partially.")
 	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "User updated."),
-			@ApiResponse(responseCode = "400", description = "Problem with request.") })
-	public ResponseEntity<?> updatePartialUser(@PathVariable Long id, @RequestBody @Validated(PartialUpdate.class) UserDTO partialUser) {
-		UserDTO updatedUser = userService.partialUpdateUser(id, partialUser);
-		return ResponseEntity.ok(updatedUser);
+			@ApiResponse(responseCode = "400", description = "Problem with request."),
+			@ApiResponse(responseCode = "404", description = "User not found."),
+			@ApiResponse(responseCode = "409", description = "Email already in use."),
+			@ApiResponse(responseCode = "412", description = "User changed since the version in If-Match.") })
+	public ResponseEntity<?> updatePartialUser(@PathVariable Long id, @RequestBody UserDTO partialUser,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		UserValidation validation = userValidator.validatePartialUpdate(partialUser);
+		if (!validation.isValid()) {
+			return badRequest(validation);
+		}
+		UserDTO updatedUser = userService.partialUpdateUser(id, partialUser, expectedVersion(ifMatch));
+		return ResponseEntity.ok()
+				.eTag(eTagOf(updatedUser))
+				.body(updatedUser);
+	}
+
+	/**
+	 * Answers a request that failed validation with the body its exception
+	 * handler would give: the field errors, or else the birth date message.
+	 */
+	private ResponseEntity<?> badRequest(UserValidation validation) {
+		metricsInterceptor.recordError(validation.getErrorType());
+		if (validation.getFieldErrors()
+				.isEmpty()) {
+			return ResponseEntity.badRequest()
+					.body(validation.getBirthDateError());
+		}
+		return ResponseEntity.badRequest()
+				.body(validation.getFieldErrors());
+	}
+
+	private static String eTagOf(UserDTO user) {
+		return "\"" + user.getVersion() + "\"";
+	}
+
+	/**
+	 * Reads the version a client expects from an If-Match header. Only a
+	 * single strong entity tag is supported; {@code *} matches any version.
+	 */
+	private static Long expectedVersion(String ifMatch) {
+		if (ifMatch == null || ifMatch.trim()
+				.equals("*")) {
+			return null;
+		}
+		String tag = ifMatch.trim();
+		if (tag.length() > 2 && tag.charAt(0) == '"' && tag.charAt(tag.length() - 1) == '"') {
+			try {
+				return Long.parseLong(tag.substring(1, tag.length() - 1));
+			} catch (NumberFormatException e) {
+				// Not a tag this service hands out, so it cannot match
+			}
+		}
+		throw new StaleVersionException("If-Match must be a single entity tag returned by this service.");
 	}
 
 	@DeleteMapping("/{id}")
@@ -80,12 +286,181 @@ public class UserController {
 
 	@GetMapping
 	@Operation(summary = "Search users by birth date range.")
-	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users found."),
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users found.", headers = @Header(name = TOTAL_COUNT_HEADER,
+			description = "Users in the range. Exact without a limit; with one it is counted apart from the page, so concurrent writes can make it differ.")),
 			@ApiResponse(responseCode = "400", description = "Problem with request.") })
 	public ResponseEntity<?> searchUsersByBirthDateRange(@RequestParam @Parameter(name = "from", description = "from date", example = "2000-01-01") String from,
-			@Parameter(name = "to", description = "to date", example = "2000-05-09") String to) {
-		List<UserDTO> users = userService.getUsersByBirthDateRange(from, to);
-		return ResponseEntity.ok(users);
+			@Parameter(name = "to", description = "to date", example = "2000-05-09") String to,
+			@RequestParam(required = false) @Parameter(name = "limit", description = "page size", example = "100") Integer limit,
+			@RequestParam(required = false) @Parameter(name = "cursor", description = "next-page cursor from the previous page's Link header") String cursor) {
+		if (limit == null && cursor == null) {
+			List<UserDTO> users = userService.getUsersByBirthDateRange(from, to);
+			return ResponseEntity.ok()
+					.header(TOTAL_COUNT_HEADER, String.valueOf(users.size()))
+					.body(users);
+		}
+		if (limit == null) {
+			throw new InvalidPageRequestException("A cursor requires a limit.");
+		}
+		UserPageDTO page = userService.getUsersByBirthDateRange(from, to, limit, cursor);
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+				.header(TOTAL_COUNT_HEADER, String.valueOf(userService.countUsersByBirthDateRange(from, to)));
+		if (page.getNextCursor() != null) {
+			String next = ServletUriComponentsBuilder.fromCurrentRequest()
+					.replaceQueryParam("cursor", page.getNextCursor())
+					.toUriString();
+			response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+		}
+		return response.body(page.getUsers());
+	}
+
+	@GetMapping("/count")
+	@Operation(summary = "Count users by birth date range.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users counted."),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<?> countUsersByBirthDateRange(@RequestParam @Parameter(name = "from", description = "from date", example = "2000-01-01") String from,
+			@RequestParam @Parameter(name = "to", description = "to date", example = "2000-05-09") String to) {
+		long count = userService.countUsersByBirthDateRange(from, to);
+		return ResponseEntity.ok(Collections.singletonMap("count", count));
+	}
+
+	@GetMapping("/stats")
+	@Operation(summary = "Get age and birth year statistics.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Statistics returned.") })
+	public ResponseEntity<?> getStats() {
+		return ResponseEntity.ok(userService.getStats());
+	}
+
+	@GetMapping("/query")
+	@Operation(summary = "Find users matching all the given predicates, or explain how they would be found.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users found, or the query plan if explain is set."),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<?> queryUsers(@RequestParam(required = false) @Parameter(name = "from", description = "from birth date", example = "2000-01-01") String from,
+			@RequestParam(required = false) @Parameter(name = "to", description = "to birth date", example = "2000-05-09") String to,
+			@RequestParam(required = false) @Parameter(name = "email", description = "email, in any case", example = "example@mail.com") String email,
+			@RequestParam(name = "email_domain", required = false) @Parameter(name = "email_domain", description = "email domain", example = "mail.com") String emailDomain,
+			@RequestParam(name = "last_name_prefix", required = false) @Parameter(name = "last_name_prefix", description = "start of the last name", example = "tr") String lastNamePrefix,
+			@RequestParam(name = "has_phone", required = false) @Parameter(name = "has_phone", description = "whether the user has a phone number") Boolean hasPhone,
+			@RequestParam(defaultValue = "100") @Parameter(name = "limit", description = "maximum number of users", example = "100") int limit,
+			@RequestParam(defaultValue = "false") @Parameter(name = "explain", description = "return the query plan instead of users") boolean explain) {
+		UserQueryDTO query = new UserQueryDTO(from, to, email, emailDomain, lastNamePrefix, hasPhone);
+		if (explain) {
+			return ResponseEntity.ok(userService.explainQuery(query));
+		}
+		return ResponseEntity.ok(userService.queryUsers(query, limit));
+	}
+
+	@GetMapping("/search")
+	@Operation(summary = "Search users by first or last name, best matches first.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users found."),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<?> searchUsersByName(@RequestParam @Parameter(name = "name", description = "whole or partial name", example = "smi") String name,
+			@RequestParam(defaultValue = "20") @Parameter(name = "limit", description = "maximum number of users", example = "20") int limit) {
+		return ResponseEntity.ok(userService.searchUsersByName(name, limit));
+	}
+
+	@GetMapping("/birthdays")
+	@Operation(summary = "Stream users with a birthday in the coming days, soonest first.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users found."),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<StreamingResponseBody> streamUpcomingBirthdays(
+			@RequestParam(defaultValue = "7") @Parameter(name = "days", description = "number of days, starting today", example = "7") int days) {
+		// Validated here; the store is only read once the body starts
+		Stream<UserDTO> users = userService.streamUpcomingBirthdays(days);
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(output -> writeUsers(users, output, true));
+	}
+
+	@GetMapping(produces = APPLICATION_NDJSON_VALUE)
+	@Operation(summary = "Stream users by birth date range as newline-delimited JSON.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users found.", headers = @Header(name = TOTAL_COUNT_HEADER,
+			description = "Users in the range when the request is handled. The body is read from a snapshot taken later, so concurrent writes can make them differ.")),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<StreamingResponseBody> streamUsersByBirthDateRange(
+			@RequestParam @Parameter(name = "from", description = "from date", example = "2000-01-01") String from,
+			@RequestParam @Parameter(name = "to", description = "to date", example = "2000-05-09") String to) {
+		long total = userService.countUsersByBirthDateRange(from, to);
+		// Validated here; the snapshot is only taken once the body starts reading
+		Stream<UserDTO> users = userService.streamUsersByBirthDateRange(from, to);
+		return ResponseEntity.ok()
+				.header(TOTAL_COUNT_HEADER, String.valueOf(total))
+				.contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+				.body(output -> writeUsers(users, output, false));
+	}
+
+	@GetMapping(value = "/export", produces = APPLICATION_GZIP_VALUE)
+	@Operation(summary = "Export every user as gzip-compressed newline-delimited JSON, by birth date.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users exported.") })
+	public ResponseEntity<StreamingResponseBody> exportUsers() {
+		// The snapshot of the whole store is only taken once the body starts reading
+		Stream<UserDTO> users = userService.exportUsers();
+		return ResponseEntity.ok()
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson.gz\"")
+				.contentType(MediaType.parseMediaType(APPLICATION_GZIP_VALUE))
+				.body(output -> {
+					try (GZIPOutputStream gzip = new GZIPOutputStream(output, STREAM_BUFFER_SIZE)) {
+						writeUsers(users, gzip, false);
+					}
+				});
+	}
+
+	@GetMapping(params = "stream=true")
+	@Operation(summary = "Stream users by birth date range as a chunked JSON array.")
+	@ApiResponses(value = { @ApiResponse(responseCode = "200", description = "Users found.", headers = @Header(name = TOTAL_COUNT_HEADER,
+			description = "Users in the range when the request is handled. The body is read from a snapshot taken later, so concurrent writes can make them differ.")),
+			@ApiResponse(responseCode = "400", description = "Problem with request.") })
+	public ResponseEntity<StreamingResponseBody> streamUsersByBirthDateRangeAsArray(
+			@RequestParam @Parameter(name = "from", description = "from date", example = "2000-01-01") String from,
+			@RequestParam @Parameter(name = "to", description = "to date", example = "2000-05-09") String to) {
+		long total = userService.countUsersByBirthDateRange(from, to);
+		// Validated here; the snapshot is only taken once the body starts reading
+		Stream<UserDTO> users = userService.streamUsersByBirthDateRange(from, to);
+		return ResponseEntity.ok()
+				.header(TOTAL_COUNT_HEADER, String.valueOf(total))
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(output -> writeUsers(users, output, true));
+	}
+
+	/**
+	 * Encodes users one at a time straight to the response. Writes block
+	 * while the client is not reading, which holds back the store scan as
+	 * well, so memory stays bounded by the output buffers.
+	 */
+	private void writeUsers(Stream<UserDTO> users, OutputStream output, boolean asArray) throws IOException {
+		UserJsonEncoder encoder = new UserJsonEncoder(STREAM_BUFFER_SIZE + 512);
+		try (users) {
+			if (asArray) {
+				encoder.append((byte) '[');
+			}
+			Iterator<UserDTO> iterator = users.iterator();
+			boolean first = true;
+			while (iterator.hasNext()) {
+				if (asArray && !first) {
+					encoder.append((byte) ',');
+				}
+				encoder.append(iterator.next());
+				if (!asArray) {
+					encoder.append((byte) '\n');
+				}
+				if (first) {
+					// Get the first user to the client without waiting for the buffer to fill
+					encoder.drainTo(output);
+					output.flush();
+					first = false;
+				} else if (encoder.length() >= STREAM_BUFFER_SIZE) {
+					encoder.drainTo(output);
+				}
+			}
+			if (asArray) {
+				encoder.append((byte) ']');
+			}
+			encoder.drainTo(output);
+			output.flush();
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Error streaming users: {}", e.getMessage());
+			throw e;
+		}
 	}
 
 	@ExceptionHandler(BirthDateRestrictionException.class)
@@ -106,18 +481,46 @@ public class UserController {
 				.body(e.getMessage());
 	}
 
-	@ExceptionHandler(MethodArgumentNotValidException.class)
-	public ResponseEntity<?> handleMethodArgumentNotValidException(MethodArgumentNotValidException e) {
-		Map<String, String> errors = new HashMap<>();
-		e.getBindingResult()
-				.getAllErrors()
-				.forEach(error -> {
-					String fieldName = ((FieldError) error).getField();
-					String errorMessage = error.getDefaultMessage();
-					errors.put(fieldName, errorMessage);
-				});
+	@ExceptionHandler(InvalidPageRequestException.class)
+	public ResponseEntity<?> handleInvalidPageRequestException(InvalidPageRequestException e) {
 		return ResponseEntity.badRequest()
-				.body(errors);
+				.body(e.getMessage());
+	}
+
+	@ExceptionHandler(InvalidSearchException.class)
+	public ResponseEntity<?> handleInvalidSearchException(InvalidSearchException e) {
+		return ResponseEntity.badRequest()
+				.body(e.getMessage());
+	}
+
+	@ExceptionHandler(InvalidBatchException.class)
+	public ResponseEntity<?> handleInvalidBatchException(InvalidBatchException e) {
+		return ResponseEntity.badRequest()
+				.body(e.getMessage());
+	}
+
+	@ExceptionHandler(InvalidBirthdayWindowException.class)
+	public ResponseEntity<?> handleInvalidBirthdayWindowException(InvalidBirthdayWindowException e) {
+		return ResponseEntity.badRequest()
+				.body(e.getMessage());
+	}
+
+	@ExceptionHandler(UserNotFoundException.class)
+	public ResponseEntity<?> handleUserNotFoundException(UserNotFoundException e) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND)
+				.body(e.getMessage());
+	}
+
+	@ExceptionHandler(DuplicateEmailException.class)
+	public ResponseEntity<?> handleDuplicateEmailException(DuplicateEmailException e) {
+		return ResponseEntity.status(HttpStatus.CONFLICT)
+				.body(e.getMessage());
+	}
+
+	@ExceptionHandler(StaleVersionException.class)
+	public ResponseEntity<?> handleStaleVersionException(StaleVersionException e) {
+		return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+				.body(e.getMessage());
 	}
 
 	@ExceptionHandler(HttpMessageNotReadableException.class)
@@ -0,0 +1,28 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Outcome of one entry of a batch insert: the created user, or the errors
+ * that kept it out of the store, keyed by field name.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResultDTO {
+	@JsonProperty("index")
+	private int index;
+
+	@JsonProperty("user")
+	private UserDTO user;
+
+	@JsonProperty("errors")
+	private Map<String, String> errors;
+}
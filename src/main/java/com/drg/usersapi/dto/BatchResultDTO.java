@@ -0,0 +1,22 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResultDTO {
+	@JsonProperty("created")
+	private int created;
+
+	@JsonProperty("failed")
+	private int failed;
+
+	@JsonProperty("items")
+	private List<BatchItemResultDTO> items;
+}
@@ -0,0 +1,27 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of an import: how many users were stored and how many were
+ * rejected, with the errors of only the first rejected entries so that the
+ * response stays small however large the import.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResultDTO {
+	@JsonProperty("imported")
+	private long imported;
+
+	@JsonProperty("failed")
+	private long failed;
+
+	@JsonProperty("errors")
+	private List<BatchItemResultDTO> errors;
+}
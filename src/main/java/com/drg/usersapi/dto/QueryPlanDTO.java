@@ -0,0 +1,36 @@
+package com.drg.usersapi.dto;
+
+import com.drg.usersapi.repositories.QueryPlan;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The plan chosen for a user query: the index that drives it, the users that
+ * index reads, the expected number of matches and the predicates checked on
+ * every user read.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPlanDTO {
+	@JsonProperty("access_path")
+	private String accessPath;
+
+	@JsonProperty("index_rows")
+	private long indexRows;
+
+	@JsonProperty("estimated_rows")
+	private long estimatedRows;
+
+	@JsonProperty("filters")
+	private List<String> filters;
+
+	public QueryPlanDTO(QueryPlan plan) {
+		this(plan.getAccessPath()
+				.name(), plan.getIndexRows(), plan.getEstimatedRows(), plan.getFilters());
+	}
+}
@@ -6,6 +6,7 @@ import com.drg.usersapi.validation.FullUpdate;
 import com.drg.usersapi.validation.PartialUpdate;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,6 +16,7 @@ import javax.validation.constraints.NotBlank;
 
 @Data
 @NoArgsConstructor
+@AllArgsConstructor
 @Builder(toBuilder = true)
 public class UserDTO {
 	@JsonProperty("id")
@@ -49,6 +51,10 @@ public class UserDTO {
 	@Schema(name = "phone_number", example = "212-456-7890")
 	private String phoneNumber;
 
+	@JsonProperty(value = "version", access = JsonProperty.Access.READ_ONLY)
+	@Schema(name = "version", example = "3", accessMode = Schema.AccessMode.READ_ONLY)
+	private Long version;
+
 	public UserDTO(User user) {
 		this.id = user.getId();
 		this.firstName = user.getFirstName();
@@ -57,6 +63,7 @@ public class UserDTO {
 		this.email = user.getEmail();
 		this.phoneNumber = user.getPhoneNumber();
 		this.address = user.getAddress();
+		this.version = user.getVersion();
 	}
 
 	public UserDTO(Long id, String email, String firstName, String lastName, String birthDate, String address, String phoneNumber) {
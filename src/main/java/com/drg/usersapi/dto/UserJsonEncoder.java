@@ -0,0 +1,191 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.core.io.CharTypes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes {@link UserDTO}s as UTF-8 JSON into a growable buffer, byte for
+ * byte the same as Jackson's bean serializer writes them, without going
+ * through a generator. The text between fields is encoded once, and strings
+ * are escaped with Jackson's own escape table, copying plain ASCII a
+ * character at a time.
+ * <p>
+ * Not thread-safe.
+ */
+public final class UserJsonEncoder {
+	private static final byte[] ID = ascii("{\"id\":");
+	private static final byte[] EMAIL = ascii(",\"email\":");
+	private static final byte[] FIRST_NAME = ascii(",\"first_name\":");
+	private static final byte[] LAST_NAME = ascii(",\"last_name\":");
+	private static final byte[] BIRTH_DATE = ascii(",\"birth_date\":");
+	private static final byte[] ADDRESS = ascii(",\"address\":");
+	private static final byte[] PHONE_NUMBER = ascii(",\"phone_number\":");
+	private static final byte[] VERSION = ascii(",\"version\":");
+	private static final byte[] NULL = ascii("null");
+	private static final int MAX_LONG_DIGITS = 20;
+	// Per ASCII character: 0 to copy, the character to write after a backslash, or -1 for a unicode escape
+	private static final int[] ESCAPES = CharTypes.get7BitOutputEscapes();
+	private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+	private byte[] buffer;
+	private int length;
+
+	public UserJsonEncoder(int initialCapacity) {
+		buffer = new byte[initialCapacity];
+	}
+
+	public void append(UserDTO user) {
+		append(ID);
+		appendNumber(user.getId());
+		append(EMAIL);
+		appendString(user.getEmail());
+		append(FIRST_NAME);
+		appendString(user.getFirstName());
+		append(LAST_NAME);
+		appendString(user.getLastName());
+		append(BIRTH_DATE);
+		appendString(user.getBirthDate());
+		append(ADDRESS);
+		appendString(user.getAddress());
+		append(PHONE_NUMBER);
+		appendString(user.getPhoneNumber());
+		append(VERSION);
+		appendNumber(user.getVersion());
+		append((byte) '}');
+	}
+
+	/**
+	 * Appends a single ASCII character, such as an array bracket or separator.
+	 */
+	public void append(byte character) {
+		ensureCapacity(1);
+		buffer[length++] = character;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	byte[] buffer() {
+		return buffer;
+	}
+
+	public void reset() {
+		length = 0;
+	}
+
+	/**
+	 * Writes the encoded bytes to {@code output} and empties the buffer.
+	 */
+	public void drainTo(OutputStream output) throws IOException {
+		output.write(buffer, 0, length);
+		length = 0;
+	}
+
+	private void append(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	private void appendString(String value) {
+		if (value == null) {
+			append(NULL);
+			return;
+		}
+		int count = value.length();
+		ensureCapacity(count + 2);
+		byte[] bytes = buffer;
+		int end = length;
+		bytes[end++] = '"';
+		for (int i = 0; i < count; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80 || ESCAPES[c] != 0) {
+				length = end;
+				appendEscaped(value, i);
+				return;
+			}
+			bytes[end++] = (byte) c;
+		}
+		bytes[end++] = '"';
+		length = end;
+	}
+
+	/**
+	 * Finishes a string from {@code start} the way Jackson's UTF-8 generator
+	 * does, escaping each half of a surrogate pair on its own.
+	 */
+	private void appendEscaped(String value, int start) {
+		for (int i = start; i < value.length(); i++) {
+			char c = value.charAt(i);
+			ensureCapacity(6);
+			if (c < 0x80) {
+				int escape = ESCAPES[c];
+				if (escape == 0) {
+					buffer[length++] = (byte) c;
+				} else if (escape > 0) {
+					buffer[length++] = '\\';
+					buffer[length++] = (byte) escape;
+				} else {
+					appendUnicodeEscape(c);
+				}
+			} else if (c < 0x800) {
+				buffer[length++] = (byte) (0xC0 | c >> 6);
+				buffer[length++] = (byte) (0x80 | c & 0x3F);
+			} else if (Character.isSurrogate(c)) {
+				appendUnicodeEscape(c);
+			} else {
+				buffer[length++] = (byte) (0xE0 | c >> 12);
+				buffer[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+				buffer[length++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		append((byte) '"');
+	}
+
+	private void appendUnicodeEscape(char c) {
+		buffer[length++] = '\\';
+		buffer[length++] = 'u';
+		buffer[length++] = HEX[c >> 12];
+		buffer[length++] = HEX[c >> 8 & 0xF];
+		buffer[length++] = HEX[c >> 4 & 0xF];
+		buffer[length++] = HEX[c & 0xF];
+	}
+
+	private void appendNumber(Long number) {
+		if (number == null) {
+			append(NULL);
+			return;
+		}
+		long value = number;
+		if (value < 0) {
+			append(ascii(Long.toString(value)));
+			return;
+		}
+		ensureCapacity(MAX_LONG_DIGITS);
+		int digits = 1;
+		for (long rest = value / 10; rest != 0; rest /= 10) {
+			digits++;
+		}
+		int end = length + digits;
+		for (int i = end - 1; i >= length; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		length = end;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (length + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+		}
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+}
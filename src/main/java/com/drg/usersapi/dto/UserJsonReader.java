@@ -0,0 +1,127 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads users one at a time from newline-delimited JSON in the layout
+ * {@link UserJsonEncoder} writes, straight off a streaming parser, so only
+ * the user being read is held in memory. Unlike binding a {@link UserDTO},
+ * the stored version is read too. Unknown fields are skipped.
+ * <p>
+ * Malformed input and failed reads surface from {@link #hasNext()} and
+ * {@link #next()} as an {@link UncheckedIOException}.
+ */
+public final class UserJsonReader implements Iterator<UserDTO>, Closeable {
+	private final JsonParser parser;
+	private UserDTO next;
+
+	public UserJsonReader(JsonFactory factory, InputStream input) throws IOException {
+		parser = factory.createParser(input);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = read();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public UserDTO next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		UserDTO user = next;
+		next = null;
+		return user;
+	}
+
+	@Override
+	public void close() throws IOException {
+		parser.close();
+	}
+
+	/**
+	 * @return the next user, or {@code null} at the end of the input
+	 */
+	private UserDTO read() throws IOException {
+		JsonToken token = parser.nextToken();
+		if (token == null) {
+			return null;
+		}
+		if (token != JsonToken.START_OBJECT) {
+			throw new JsonParseException(parser, "Expected a user object but found " + token);
+		}
+		UserDTO user = new UserDTO();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			parser.nextToken();
+			switch (name) {
+				case "id":
+					user.setId(readLong());
+					break;
+				case "email":
+					user.setEmail(readString());
+					break;
+				case "first_name":
+					user.setFirstName(readString());
+					break;
+				case "last_name":
+					user.setLastName(readString());
+					break;
+				case "birth_date":
+					user.setBirthDate(readString());
+					break;
+				case "address":
+					user.setAddress(readString());
+					break;
+				case "phone_number":
+					user.setPhoneNumber(readString());
+					break;
+				case "version":
+					user.setVersion(readLong());
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return user;
+	}
+
+	private String readString() throws IOException {
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (token != JsonToken.VALUE_STRING) {
+			throw new JsonParseException(parser, "Expected a string for " + parser.getCurrentName() + " but found " + token);
+		}
+		return parser.getText();
+	}
+
+	private Long readLong() throws IOException {
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (token != JsonToken.VALUE_NUMBER_INT) {
+			throw new JsonParseException(parser, "Expected an integer for " + parser.getCurrentName() + " but found " + token);
+		}
+		return parser.getLongValue();
+	}
+}
@@ -0,0 +1,181 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link UserDTO} as the same JSON object Jackson's bean serializer
+ * would produce: the same snake_case names in the same order, nulls included.
+ * <p>
+ * A compact generator writing bytes gets the object encoded by a
+ * {@link UserJsonEncoder} and copied in as one raw value. Any other generator,
+ * such as one pretty printing or escaping non-ASCII characters, is written to
+ * field by field with names encoded once.
+ */
+@JsonComponent
+public class UserJsonSerializer extends StdSerializer<UserDTO> {
+	private static final SerializedString ID = new SerializedString("id");
+	private static final SerializedString EMAIL = new SerializedString("email");
+	private static final SerializedString FIRST_NAME = new SerializedString("first_name");
+	private static final SerializedString LAST_NAME = new SerializedString("last_name");
+	private static final SerializedString BIRTH_DATE = new SerializedString("birth_date");
+	private static final SerializedString ADDRESS = new SerializedString("address");
+	private static final SerializedString PHONE_NUMBER = new SerializedString("phone_number");
+	private static final SerializedString VERSION = new SerializedString("version");
+	private static final ThreadLocal<UserJsonEncoder> ENCODER = ThreadLocal.withInitial(() -> new UserJsonEncoder(512));
+
+	public UserJsonSerializer() {
+		super(UserDTO.class);
+	}
+
+	@Override
+	public void serialize(UserDTO user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+		if (writesPlainBytes(generator)) {
+			UserJsonEncoder encoder = ENCODER.get();
+			encoder.reset();
+			encoder.append(user);
+			generator.writeRawValue(new EncodedJson(encoder.buffer(), encoder.length()));
+			return;
+		}
+		generator.writeStartObject(user);
+		generator.writeFieldName(ID);
+		writeNumber(generator, user.getId());
+		generator.writeFieldName(EMAIL);
+		generator.writeString(user.getEmail());
+		generator.writeFieldName(FIRST_NAME);
+		generator.writeString(user.getFirstName());
+		generator.writeFieldName(LAST_NAME);
+		generator.writeString(user.getLastName());
+		generator.writeFieldName(BIRTH_DATE);
+		generator.writeString(user.getBirthDate());
+		generator.writeFieldName(ADDRESS);
+		generator.writeString(user.getAddress());
+		generator.writeFieldName(PHONE_NUMBER);
+		generator.writeString(user.getPhoneNumber());
+		generator.writeFieldName(VERSION);
+		writeNumber(generator, user.getVersion());
+		generator.writeEndObject();
+	}
+
+	private static void writeNumber(JsonGenerator generator, Long value) throws IOException {
+		if (value == null) {
+			generator.writeNull();
+		} else {
+			generator.writeNumber(value);
+		}
+	}
+
+	/**
+	 * Whether the generator writes compact JSON with default escaping
+	 * straight to a stream, which copies a raw value before returning. Token
+	 * buffers have no output target and keep raw values, so they are excluded.
+	 */
+	@SuppressWarnings("deprecation")
+	private static boolean writesPlainBytes(JsonGenerator generator) {
+		return generator.getOutputTarget() instanceof OutputStream && generator.getPrettyPrinter() == null
+				&& generator.getCharacterEscapes() == null && !generator.isEnabled(JsonGenerator.Feature.ESCAPE_NON_ASCII);
+	}
+
+	/**
+	 * Already encoded JSON handed to {@link JsonGenerator#writeRawValue}.
+	 * Only the unquoted forms make sense for a raw value; the quoted ones are
+	 * derived from the decoded text.
+	 */
+	private static final class EncodedJson implements SerializableString {
+		private final byte[] bytes;
+		private final int length;
+
+		EncodedJson(byte[] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+		}
+
+		@Override
+		public String getValue() {
+			return new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public int charLength() {
+			return getValue().length();
+		}
+
+		@Override
+		public byte[] asUnquotedUTF8() {
+			return Arrays.copyOf(bytes, length);
+		}
+
+		@Override
+		public int appendUnquotedUTF8(byte[] buffer, int offset) {
+			if (offset + length > buffer.length) {
+				return -1;
+			}
+			System.arraycopy(bytes, 0, buffer, offset, length);
+			return length;
+		}
+
+		@Override
+		public int writeUnquotedUTF8(OutputStream output) throws IOException {
+			output.write(bytes, 0, length);
+			return length;
+		}
+
+		@Override
+		public int putUnquotedUTF8(ByteBuffer buffer) {
+			if (length > buffer.remaining()) {
+				return -1;
+			}
+			buffer.put(bytes, 0, length);
+			return length;
+		}
+
+		@Override
+		public int appendUnquoted(char[] buffer, int offset) {
+			return quoted().appendUnquoted(buffer, offset);
+		}
+
+		@Override
+		public char[] asQuotedChars() {
+			return quoted().asQuotedChars();
+		}
+
+		@Override
+		public byte[] asQuotedUTF8() {
+			return quoted().asQuotedUTF8();
+		}
+
+		@Override
+		public int appendQuotedUTF8(byte[] buffer, int offset) {
+			return quoted().appendQuotedUTF8(buffer, offset);
+		}
+
+		@Override
+		public int appendQuoted(char[] buffer, int offset) {
+			return quoted().appendQuoted(buffer, offset);
+		}
+
+		@Override
+		public int writeQuotedUTF8(OutputStream output) throws IOException {
+			return quoted().writeQuotedUTF8(output);
+		}
+
+		@Override
+		public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+			return quoted().putQuotedUTF8(buffer);
+		}
+
+		private SerializedString quoted() {
+			return new SerializedString(getValue());
+		}
+	}
+}
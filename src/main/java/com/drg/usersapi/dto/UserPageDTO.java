@@ -0,0 +1,18 @@
+package com.drg.usersapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a birth-date range search. {@code nextCursor} is {@code null}
+ * on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class UserPageDTO {
+	private List<UserDTO> users;
+
+	private String nextCursor;
+}
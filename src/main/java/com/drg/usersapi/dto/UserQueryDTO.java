@@ -0,0 +1,28 @@
+package com.drg.usersapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Predicates of a multi-predicate user query, as received; {@code null}
+ * fields do not constrain the result.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserQueryDTO {
+	private String from;
+
+	private String to;
+
+	private String email;
+
+	private String emailDomain;
+
+	private String lastNamePrefix;
+
+	private Boolean hasPhone;
+}
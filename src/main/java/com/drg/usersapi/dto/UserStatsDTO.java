@@ -0,0 +1,38 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.SortedMap;
+
+/**
+ * Aggregates over all users as of {@code asOf}. Maps are keyed by age or
+ * birth year and leave out empty buckets.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatsDTO {
+	@JsonProperty("as_of")
+	private String asOf;
+
+	@JsonProperty("total")
+	private long total;
+
+	@JsonProperty("min_age")
+	private int minAge;
+
+	@JsonProperty("under_min_age")
+	private long underMinAge;
+
+	@JsonProperty("at_least_min_age")
+	private long atLeastMinAge;
+
+	@JsonProperty("ages")
+	private SortedMap<Integer, Long> ages;
+
+	@JsonProperty("birth_years")
+	private SortedMap<Integer, Long> birthYears;
+}
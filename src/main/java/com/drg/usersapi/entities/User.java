@@ -2,6 +2,8 @@ package com.drg.usersapi.entities;
 
 import com.drg.usersapi.dto.UserDTO;
 import com.drg.usersapi.utils.ConverterUtil;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -9,6 +11,8 @@ import java.time.LocalDate;
 
 @Data
 @NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
 public class User {
 	private Long id;
 
@@ -24,6 +28,11 @@ public class User {
 
 	private String phoneNumber;
 
+	/**
+	 * Assigned by the repository: 1 on insert, incremented by every update.
+	 */
+	private long version;
+
 	public User(UserDTO userDTO) {
 		this.id = userDTO.getId();
 		this.firstName = userDTO.getFirstName();
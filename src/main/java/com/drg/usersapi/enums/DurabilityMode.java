@@ -0,0 +1,23 @@
+package com.drg.usersapi.enums;
+
+/**
+ * How the user store persists writes before acknowledging them.
+ */
+public enum DurabilityMode {
+	/**
+	 * Nothing is written to disk.
+	 */
+	NONE,
+	/**
+	 * Every write waits for an fsync; concurrent writers share one fsync.
+	 */
+	DURABLE,
+	/**
+	 * Writes wait for the next periodic fsync of the log.
+	 */
+	BATCHED,
+	/**
+	 * Writes return once they are in the log buffer; the log is fsynced periodically.
+	 */
+	ASYNC
+}
@@ -0,0 +1,16 @@
+package com.drg.usersapi.enums;
+
+/**
+ * How the user store lays out users on the heap.
+ */
+public enum StoreEngine {
+	/**
+	 * One immutable object graph per user version; every index is lock-free.
+	 */
+	OBJECTS,
+	/**
+	 * Primitive rows and a shared string arena; a fraction of the heap per
+	 * user, with reads and writes serialized by a read-write lock.
+	 */
+	COMPACT
+}
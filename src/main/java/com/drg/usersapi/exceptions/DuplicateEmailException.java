@@ -0,0 +1,7 @@
+package com.drg.usersapi.exceptions;
+
+public class DuplicateEmailException extends RuntimeException {
+	public DuplicateEmailException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,7 @@
+package com.drg.usersapi.exceptions;
+
+public class InvalidBatchException extends RuntimeException {
+	public InvalidBatchException(String message) {
+		super(message);
+	}
+}
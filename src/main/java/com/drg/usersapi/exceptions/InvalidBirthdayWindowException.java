@@ -0,0 +1,7 @@
+package com.drg.usersapi.exceptions;
+
+public class InvalidBirthdayWindowException extends RuntimeException {
+	public InvalidBirthdayWindowException(String message) {
+		super(message);
+	}
+}
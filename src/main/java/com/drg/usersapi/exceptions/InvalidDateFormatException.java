@@ -1,7 +1,12 @@
 package com.drg.usersapi.exceptions;
 
+/**
+ * Raised for malformed client input, so it carries no stack trace: the trace
+ * has no diagnostic value and filling it in is the dominant cost when a
+ * client floods us with bad dates.
+ */
 public class InvalidDateFormatException extends RuntimeException {
 	public InvalidDateFormatException(String message) {
-		super(message);
+		super(message, null, false, false);
 	}
 }
@@ -0,0 +1,7 @@
+package com.drg.usersapi.exceptions;
+
+public class InvalidSearchException extends RuntimeException {
+	public InvalidSearchException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,7 @@
+package com.drg.usersapi.exceptions;
+
+public class StaleVersionException extends RuntimeException {
+	public StaleVersionException(String message) {
+		super(message);
+	}
+}
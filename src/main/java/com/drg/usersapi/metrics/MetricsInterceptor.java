@@ -0,0 +1,102 @@
+package com.drg.usersapi.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times every controller handler.
+ * <p>
+ * The start time lives in a per-thread holder rather than a request
+ * attribute, so timing a synchronous request allocates nothing. As the
+ * first {@link HandlerExceptionResolver} it also notes the exception a
+ * handler failed with before an {@code @ExceptionHandler} turns it into a
+ * response, and handlers that answer with an error response themselves can
+ * note one through {@link #recordError(Class)}. Streaming handlers are timed
+ * until the response is complete.
+ */
+@Component
+public class MetricsInterceptor implements AsyncHandlerInterceptor, HandlerExceptionResolver, Ordered {
+	private static final String ASYNC_START_ATTRIBUTE = MetricsInterceptor.class.getName() + ".asyncStart";
+	private static final ThreadLocal<Timing> TIMING = ThreadLocal.withInitial(Timing::new);
+
+	@Autowired
+	private MetricsRegistry metrics;
+
+	private static final class Timing {
+		private OperationMetrics operation;
+		private long startNanos;
+		private Class<? extends Exception> errorType;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!(handler instanceof HandlerMethod)) {
+			return true;
+		}
+		Timing timing = TIMING.get();
+		timing.operation = metrics.operation(((HandlerMethod) handler).getMethod());
+		timing.errorType = null;
+		Object asyncStart = request.getAttribute(ASYNC_START_ATTRIBUTE);
+		if (request.getDispatcherType() == DispatcherType.ASYNC && asyncStart != null) {
+			timing.startNanos = (Long) asyncStart;
+		} else {
+			timing.startNanos = System.nanoTime();
+		}
+		return true;
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		Timing timing = TIMING.get();
+		if (timing.operation != null) {
+			request.setAttribute(ASYNC_START_ATTRIBUTE, timing.startNanos);
+			timing.operation = null;
+		}
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		Timing timing = TIMING.get();
+		if (timing.operation == null) {
+			return;
+		}
+		timing.operation.record(System.nanoTime() - timing.startNanos, ex != null ? ex.getClass() : timing.errorType);
+		timing.operation = null;
+		timing.errorType = null;
+	}
+
+	@Override
+	public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		Timing timing = TIMING.get();
+		if (timing.operation != null) {
+			timing.errorType = ex.getClass();
+		}
+		// Let the next resolver produce the response
+		return null;
+	}
+
+	/**
+	 * Counts the current request as failed with {@code errorType}, for a
+	 * handler that returns an error response rather than throwing.
+	 */
+	public void recordError(Class<? extends Exception> errorType) {
+		Timing timing = TIMING.get();
+		if (timing.operation != null) {
+			timing.errorType = errorType;
+		}
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+}
@@ -0,0 +1,79 @@
+package com.drg.usersapi.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds the {@link OperationMetrics} of every instrumented operation, keyed
+ * by a {@code Class.method} name.
+ */
+@Component
+public class MetricsRegistry {
+	private final ConcurrentHashMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Method, OperationMetrics> handlerOperations = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+	private final long startNanos = System.nanoTime();
+
+	public OperationMetrics operation(String name) {
+		OperationMetrics operation = operations.get(name);
+		if (operation == null) {
+			operation = operations.computeIfAbsent(name, OperationMetrics::new);
+		}
+		return operation;
+	}
+
+	/**
+	 * @return the metrics of a controller handler method
+	 */
+	public OperationMetrics operation(Method handler) {
+		OperationMetrics operation = handlerOperations.get(handler);
+		if (operation == null) {
+			operation = handlerOperations.computeIfAbsent(handler, method -> operation(method.getDeclaringClass()
+					.getSimpleName() + "." + method.getName()));
+		}
+		return operation;
+	}
+
+	/**
+	 * Records a call that started at {@code startNanos} (from {@link System#nanoTime()}).
+	 */
+	public void record(String name, long startNanos, Throwable error) {
+		operation(name).record(System.nanoTime() - startNanos, error);
+	}
+
+	/**
+	 * Registers a value that is sampled whenever metrics are read, such as
+	 * the size or hit count of a cache.
+	 */
+	public void gauge(String name, DoubleSupplier value) {
+		gauges.put(name, value);
+	}
+
+	/**
+	 * @return the current value of every gauge, ordered by name
+	 */
+	public Map<String, Double> gauges() {
+		Map<String, Double> values = new LinkedHashMap<>();
+		gauges.forEach((name, value) -> values.put(name, value.getAsDouble()));
+		return values;
+	}
+
+	public List<OperationMetrics> operations() {
+		List<OperationMetrics> list = new ArrayList<>(operations.values());
+		list.sort(Comparator.comparing(OperationMetrics::getName));
+		return list;
+	}
+
+	public double uptimeSeconds() {
+		return (System.nanoTime() - startNanos) / 1e9;
+	}
+}
@@ -0,0 +1,61 @@
+package com.drg.usersapi.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, call count and failures by exception type of one operation.
+ */
+public class OperationMetrics {
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final ConcurrentHashMap<Class<?>, LongAdder> errors = new ConcurrentHashMap<>();
+
+	OperationMetrics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Records one call. Does not allocate unless this is the first failure
+	 * with {@code error}'s type.
+	 *
+	 * @param error what the call failed with, or {@code null}
+	 */
+	public void record(long nanos, Throwable error) {
+		record(nanos, error != null ? error.getClass() : null);
+	}
+
+	/**
+	 * Records one call that failed with an error of {@code errorType}
+	 * without one being thrown, or succeeded if it is {@code null}.
+	 */
+	public void record(long nanos, Class<? extends Throwable> errorType) {
+		latency.record(nanos);
+		if (errorType != null) {
+			LongAdder counter = errors.get(errorType);
+			if (counter == null) {
+				counter = errors.computeIfAbsent(errorType, type -> new LongAdder());
+			}
+			counter.increment();
+		}
+	}
+
+	public LatencyHistogram.Snapshot latency() {
+		return latency.snapshot();
+	}
+
+	/**
+	 * @return failure counts keyed by the exception's simple class name
+	 */
+	public Map<String, Long> errors() {
+		Map<String, Long> counts = new TreeMap<>();
+		errors.forEach((type, counter) -> counts.merge(type.getSimpleName(), counter.sum(), Long::sum));
+		return counts;
+	}
+}
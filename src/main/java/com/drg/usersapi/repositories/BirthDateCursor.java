@@ -0,0 +1,58 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.InvalidPageRequestException;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Position in the birth-date index: the (birth date, id) of the last user a
+ * client has seen. Encoded as an opaque URL-safe token so clients cannot
+ * depend on its layout.
+ */
+@Getter
+@EqualsAndHashCode
+public final class BirthDateCursor {
+	private static final int ENCODED_BYTES = 2 * Long.BYTES;
+
+	private final long epochDay;
+	private final long id;
+
+	public BirthDateCursor(long epochDay, long id) {
+		this.epochDay = epochDay;
+		this.id = id;
+	}
+
+	public static BirthDateCursor after(User user) {
+		return new BirthDateCursor(user.getBirthDate()
+				.toEpochDay(), user.getId());
+	}
+
+	public static BirthDateCursor decode(String token) {
+		byte[] bytes;
+		try {
+			bytes = Base64.getUrlDecoder()
+					.decode(token);
+		} catch (IllegalArgumentException e) {
+			bytes = null;
+		}
+		if (bytes == null || bytes.length != ENCODED_BYTES) {
+			throw new InvalidPageRequestException("Invalid cursor.");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return new BirthDateCursor(buffer.getLong(), buffer.getLong());
+	}
+
+	public String encode() {
+		byte[] bytes = ByteBuffer.allocate(ENCODED_BYTES)
+				.putLong(epochDay)
+				.putLong(id)
+				.array();
+		return Base64.getUrlEncoder()
+				.withoutPadding()
+				.encodeToString(bytes);
+	}
+}
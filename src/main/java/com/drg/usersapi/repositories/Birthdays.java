@@ -0,0 +1,83 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+import java.time.Year;
+import java.util.Comparator;
+
+/**
+ * Birthday arithmetic shared by the birthday index and the scanning fallback.
+ * <p>
+ * A birthday is identified by its day in a leap year, from 1 (January 1) to
+ * {@link #DAYS} (December 31). In common years a February 29 birthday falls
+ * on March 1, the day the user turns a year older.
+ */
+public final class Birthdays {
+	public static final int DAYS = 366;
+	private static final int LEAP_YEAR = 2000;
+	private static final MonthDay FEBRUARY_29 = MonthDay.of(Month.FEBRUARY, 29);
+	private static final MonthDay MARCH_1 = MonthDay.of(Month.MARCH, 1);
+	private static final int FEBRUARY_29_DAY = dayOf(FEBRUARY_29);
+
+	private Birthdays() {
+	}
+
+	public static int dayOf(LocalDate birthDate) {
+		return dayOf(MonthDay.from(birthDate));
+	}
+
+	/**
+	 * @return the first birthday on or after {@code from}
+	 */
+	public static LocalDate next(LocalDate birthDate, LocalDate from) {
+		MonthDay birthday = MonthDay.from(birthDate);
+		LocalDate next = birthdayIn(birthday, from.getYear());
+		return next.isBefore(from) ? birthdayIn(birthday, from.getYear() + 1) : next;
+	}
+
+	/**
+	 * Orders users by their next birthday on or after {@code from}, then by
+	 * birthday and id.
+	 */
+	public static Comparator<User> upcomingFrom(LocalDate from) {
+		return Comparator.<User, LocalDate> comparing(user -> next(user.getBirthDate(), from))
+				.thenComparingInt(user -> dayOf(user.getBirthDate()))
+				.thenComparing(User::getId);
+	}
+
+	/**
+	 * Returns the birthdays in the {@code days} days starting at {@code from}
+	 * as at most two ranges of {@link #dayOf(LocalDate) days}, inclusive, in
+	 * calendar order. A window that wraps past December 31 continues from
+	 * January 1 but never reaches its own start again.
+	 */
+	public static int[][] window(LocalDate from, int days) {
+		LocalDate last = from.plusDays(days - 1L);
+		int start = dayOf(MonthDay.from(from));
+		// In a common year February 29 birthdays are celebrated on March 1
+		if (!from.isLeapYear() && MonthDay.from(from)
+				.equals(MARCH_1)) {
+			start = FEBRUARY_29_DAY;
+		}
+		int end = dayOf(MonthDay.from(last));
+		if (last.getYear() == from.getYear()) {
+			return new int[][] { { start, end } };
+		}
+		return new int[][] { { start, DAYS }, { 1, Math.min(end, start - 1) } };
+	}
+
+	private static int dayOf(MonthDay monthDay) {
+		return monthDay.atYear(LEAP_YEAR)
+				.getDayOfYear();
+	}
+
+	private static LocalDate birthdayIn(MonthDay birthday, int year) {
+		if (birthday.equals(FEBRUARY_29) && !Year.isLeap(year)) {
+			return MARCH_1.atYear(year);
+		}
+		return birthday.atYear(year);
+	}
+}
@@ -0,0 +1,24 @@
+package com.drg.usersapi.repositories;
+
+import java.util.Locale;
+
+/**
+ * Email normalization shared by the email index and the scanning fallback.
+ * Two emails that normalize to the same key belong to the same user.
+ */
+public final class Emails {
+	private Emails() {
+	}
+
+	/**
+	 * @return {@code email} without surrounding whitespace and in lower case,
+	 * or {@code null} for a {@code null} email
+	 */
+	public static String normalize(String email) {
+		if (email == null) {
+			return null;
+		}
+		return email.trim()
+				.toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,208 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Name matching shared by the name index and the scanning fallback.
+ * <p>
+ * Names and queries are compared without case or accents, word by word: a
+ * name is split into words at spaces, hyphens and apostrophes, and every word
+ * of the query must match a word of the first or last name. A query word of
+ * three or more letters may match anywhere inside a name word; a shorter one
+ * only at its start.
+ * <p>
+ * Each query word scores {@link #EXACT}, {@link #PREFIX} or {@link #INFIX}
+ * for its best match, and a user's score is the sum; lower is better.
+ */
+public final class NameSearch {
+	public static final int EXACT = 0;
+	public static final int PREFIX = 1;
+	public static final int INFIX = 2;
+	public static final int MIN_INFIX_LENGTH = 3;
+	private static final int NO_MATCH = -1;
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARATORS = Pattern.compile("[\\s\\-']+");
+	private static final Comparator<Match> MATCH_ORDER = Comparator.<Match> comparingInt(match -> match.score)
+			.thenComparingInt(match -> nameLength(match.user))
+			.thenComparing(match -> match.user.getId());
+
+	private NameSearch() {
+	}
+
+	/**
+	 * @return the words of {@code text}, without case or accents
+	 */
+	public static String[] words(String text) {
+		if (text == null) {
+			return new String[0];
+		}
+		String folded = isAscii(text) ? text.toLowerCase(Locale.ROOT) : MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+				.replaceAll("")
+				.toLowerCase(Locale.ROOT);
+		return Arrays.stream(SEPARATORS.split(folded))
+				.filter(word -> !word.isEmpty())
+				.toArray(String[]::new);
+	}
+
+	/**
+	 * @return the words of the user's first and last name
+	 */
+	public static String[] words(User user) {
+		String[] first = words(user.getFirstName());
+		String[] last = words(user.getLastName());
+		String[] words = Arrays.copyOf(first, first.length + last.length);
+		System.arraycopy(last, 0, words, first.length, last.length);
+		return words;
+	}
+
+	/**
+	 * @return the user's score for {@code query}, a non-empty result of
+	 * {@link #words(String)}, or a negative number if the user does not match
+	 */
+	public static int score(User user, String[] query) {
+		String first = user.getFirstName();
+		String last = user.getLastName();
+		// ASCII names are matched in place; others are folded first
+		String[] names = isAscii(first) && isAscii(last) ? null : words(user);
+		int total = 0;
+		for (String word : query) {
+			int best = NO_MATCH;
+			if (names == null) {
+				best = best(best(best, first, word), last, word);
+			} else {
+				for (String name : names) {
+					best = better(best, score(name, 0, name.length(), word));
+				}
+			}
+			if (best == NO_MATCH) {
+				return NO_MATCH;
+			}
+			total += best;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns at most {@code limit} of the {@code candidates} that match
+	 * {@code query}, best score first, then shortest name, then lowest id.
+	 * Only the best {@code limit} are kept while the candidates are read.
+	 */
+	public static List<User> top(Stream<User> candidates, String[] query, int limit) {
+		PriorityQueue<Match> best = new PriorityQueue<>(MATCH_ORDER.reversed());
+		candidates.forEach(user -> {
+			int score = score(user, query);
+			if (score < 0) {
+				return;
+			}
+			Match match = new Match(user, score);
+			if (best.size() < limit) {
+				best.add(match);
+			} else if (MATCH_ORDER.compare(match, best.peek()) < 0) {
+				best.poll();
+				best.add(match);
+			}
+		});
+		List<User> top = new ArrayList<>(best.size());
+		while (!best.isEmpty()) {
+			top.add(best.poll().user);
+		}
+		Collections.reverse(top);
+		return top;
+	}
+
+	/**
+	 * Scores {@code word} against every word of {@code name}, keeping
+	 * {@code best} if it is better.
+	 */
+	private static int best(int best, String name, String word) {
+		if (name == null) {
+			return best;
+		}
+		int end = 0;
+		while (end < name.length()) {
+			int start = end;
+			while (start < name.length() && isSeparator(name.charAt(start))) {
+				start++;
+			}
+			end = start;
+			while (end < name.length() && !isSeparator(name.charAt(end))) {
+				end++;
+			}
+			if (end > start) {
+				best = better(best, score(name, start, end, word));
+			}
+		}
+		return best;
+	}
+
+	private static int better(int best, int score) {
+		return score != NO_MATCH && (best == NO_MATCH || score < best) ? score : best;
+	}
+
+	/**
+	 * Scores {@code word} against the part of {@code name} between
+	 * {@code start} and {@code end}, ignoring case.
+	 */
+	private static int score(String name, int start, int end, String word) {
+		int length = word.length();
+		if (end - start < length) {
+			return NO_MATCH;
+		}
+		if (name.regionMatches(true, start, word, 0, length)) {
+			return end - start == length ? EXACT : PREFIX;
+		}
+		if (length >= MIN_INFIX_LENGTH) {
+			for (int i = start + 1; i <= end - length; i++) {
+				if (name.regionMatches(true, i, word, 0, length)) {
+					return INFIX;
+				}
+			}
+		}
+		return NO_MATCH;
+	}
+
+	private static boolean isSeparator(char c) {
+		return Character.isWhitespace(c) || c == '-' || c == '\'';
+	}
+
+	private static boolean isAscii(String text) {
+		if (text == null) {
+			return true;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int nameLength(User user) {
+		return length(user.getFirstName()) + length(user.getLastName());
+	}
+
+	private static int length(String name) {
+		return name == null ? 0 : name.length();
+	}
+
+	private static final class Match {
+		private final User user;
+		private final int score;
+
+		Match(User user, int score) {
+			this.user = user;
+			this.score = score;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.drg.usersapi.repositories;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * How a {@link UserQuery} is run: the index that produces the candidate
+ * users, how many it produces, and the predicates then applied to each of
+ * them as a filter.
+ */
+@Getter
+@AllArgsConstructor
+public final class QueryPlan {
+	public enum AccessPath {
+		EMAIL_HASH, BIRTH_DATE_RANGE, NAME_TRIGRAM, FULL_SCAN
+	}
+
+	private final AccessPath accessPath;
+	/**
+	 * Users the access path reads.
+	 */
+	private final long indexRows;
+	/**
+	 * Users expected to match the whole query, assuming the predicates with
+	 * an estimate are independent.
+	 */
+	private final long estimatedRows;
+	private final List<String> filters;
+}
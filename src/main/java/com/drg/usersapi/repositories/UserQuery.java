@@ -0,0 +1,110 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A conjunction of optional predicates over users; a {@code null} field does
+ * not constrain the result. Emails and names are compared the way
+ * {@link Emails} and {@link NameSearch} do.
+ */
+@Getter
+public final class UserQuery {
+	/**
+	 * Inclusive birth-date bounds, both set or both {@code null}.
+	 */
+	private final LocalDate birthDateFrom;
+	private final LocalDate birthDateTo;
+	private final String email;
+	/**
+	 * Part of the email after the {@code @}.
+	 */
+	private final String emailDomain;
+	/**
+	 * Start of the last name, as whole words followed by a word prefix.
+	 */
+	private final String lastNamePrefix;
+	private final Boolean hasPhone;
+
+	private final String emailKey;
+	private final String emailSuffix;
+	private final String lastNameKey;
+
+	@Builder
+	private UserQuery(LocalDate birthDateFrom, LocalDate birthDateTo, String email, String emailDomain, String lastNamePrefix, Boolean hasPhone) {
+		this.birthDateFrom = birthDateFrom;
+		this.birthDateTo = birthDateTo;
+		this.email = email;
+		this.emailDomain = emailDomain;
+		this.lastNamePrefix = lastNamePrefix;
+		this.hasPhone = hasPhone;
+		this.emailKey = Emails.normalize(email);
+		this.emailSuffix = emailDomain == null ? null : "@" + Emails.normalize(emailDomain.startsWith("@") ? emailDomain.substring(1) : emailDomain);
+		this.lastNameKey = lastNamePrefix == null ? null : String.join(" ", NameSearch.words(lastNamePrefix));
+	}
+
+	public boolean hasBirthDateRange() {
+		return birthDateFrom != null && birthDateTo != null;
+	}
+
+	public boolean matches(User user) {
+		if (hasBirthDateRange() && (user.getBirthDate() == null || user.getBirthDate()
+				.isBefore(birthDateFrom) || user.getBirthDate()
+				.isAfter(birthDateTo))) {
+			return false;
+		}
+		String userEmail = Emails.normalize(user.getEmail());
+		if (emailKey != null && !emailKey.equals(userEmail)) {
+			return false;
+		}
+		if (emailSuffix != null && (userEmail == null || !userEmail.endsWith(emailSuffix))) {
+			return false;
+		}
+		if (lastNameKey != null && !String.join(" ", NameSearch.words(user.getLastName()))
+				.startsWith(lastNameKey)) {
+			return false;
+		}
+		return hasPhone == null || hasPhone == (user.getPhoneNumber() != null && !user.getPhoneNumber()
+				.isBlank());
+	}
+
+	/**
+	 * @return a readable form of every predicate, in field order
+	 */
+	public List<String> predicates() {
+		List<String> predicates = new ArrayList<>();
+		if (hasBirthDateRange()) {
+			predicates.add(birthDatePredicate());
+		}
+		if (email != null) {
+			predicates.add(emailPredicate());
+		}
+		if (emailDomain != null) {
+			predicates.add("email_domain = " + emailSuffix.substring(1));
+		}
+		if (lastNamePrefix != null) {
+			predicates.add(lastNamePredicate());
+		}
+		if (hasPhone != null) {
+			predicates.add("has_phone = " + hasPhone);
+		}
+		return predicates;
+	}
+
+	public String birthDatePredicate() {
+		return "birth_date between " + birthDateFrom + " and " + birthDateTo;
+	}
+
+	public String emailPredicate() {
+		return "email = " + emailKey;
+	}
+
+	public String lastNamePredicate() {
+		return "last_name_prefix = " + lastNameKey;
+	}
+}
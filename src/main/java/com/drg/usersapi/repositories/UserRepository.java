@@ -0,0 +1,241 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Storage for {@link User} records.
+ * <p>
+ * Implementations must be safe for concurrent use and must not hand out
+ * instances that are shared with their internal indexes: callers are free to
+ * mutate what they get back and store it again through {@link #update(User)}.
+ * <p>
+ * Emails are unique once {@link Emails#normalize(String) normalized}: a write
+ * that would give a user an email another user holds fails with a
+ * {@link DuplicateEmailException} and stores nothing.
+ */
+public interface UserRepository {
+	/**
+	 * Stores a new user under a freshly generated id.
+	 *
+	 * @return the stored user with its id populated
+	 */
+	User insert(User user);
+
+	/**
+	 * Stores new users under freshly generated ids as one batch. Durable
+	 * implementations make the whole batch durable with a single flush.
+	 * Users whose email is already taken, including by an earlier user of the
+	 * batch, are skipped.
+	 *
+	 * @return the stored users with their ids populated, in input order, with
+	 * {@code null} in place of every skipped user
+	 */
+	default List<User> insertAll(List<User> users) {
+		List<User> stored = new ArrayList<>(users.size());
+		for (User user : users) {
+			try {
+				stored.add(insert(user));
+			} catch (DuplicateEmailException e) {
+				stored.add(null);
+			}
+		}
+		return stored;
+	}
+
+	/**
+	 * Replaces the user with the same id, one version past the stored one.
+	 *
+	 * @return the stored user, or empty if no user with that id exists
+	 */
+	Optional<User> update(User user);
+
+	/**
+	 * Atomically replaces the user with the given id by the result of
+	 * applying {@code change} to a copy of its current version. No other
+	 * write to the same id can land between that read and the replacement.
+	 * <p>
+	 * {@code change} may be called more than once when other writers get in
+	 * between, so it must not have side effects beyond the copy it is given.
+	 * An exception thrown by it aborts the update and is rethrown.
+	 *
+	 * @return the stored user, or empty if no user with that id exists
+	 */
+	Optional<User> update(Long id, UnaryOperator<User> change);
+
+	/**
+	 * Stores the user under its own id and version, inserting or replacing as
+	 * needed.
+	 * Used to rebuild a store from persisted state; ids generated by later
+	 * {@link #insert(User)} calls are always greater than any id stored here.
+	 * The persisted state is trusted, so the email is not checked for
+	 * uniqueness.
+	 */
+	User put(User user);
+
+	/**
+	 * Stores users under their own ids and versions as one batch, as
+	 * {@link #put(User)} does for each. Durable implementations make the whole
+	 * batch durable with a single flush.
+	 */
+	default void putAll(List<User> users) {
+		for (User user : users) {
+			put(user);
+		}
+	}
+
+	Optional<User> findById(Long id);
+
+	/**
+	 * Finds the user whose email equals {@code email} once both are
+	 * {@link Emails#normalize(String) normalized}. Indexed implementations
+	 * answer without a scan.
+	 */
+	default Optional<User> findByEmail(String email) {
+		String key = Emails.normalize(email);
+		if (key == null) {
+			return Optional.empty();
+		}
+		try (Stream<User> users = findAll()) {
+			return users.filter(user -> key.equals(Emails.normalize(user.getEmail())))
+					.findFirst();
+		}
+	}
+
+	/**
+	 * @return {@code true} if a user was removed
+	 */
+	boolean delete(Long id);
+
+	/**
+	 * Returns users born between {@code from} and {@code to}, both inclusive,
+	 * ordered by birth date and then by id.
+	 */
+	default List<User> findByBirthDateRange(LocalDate from, LocalDate to) {
+		try (Stream<User> users = streamByBirthDateRange(from, to)) {
+			return users.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Lazily streams users born between {@code from} and {@code to}, both
+	 * inclusive, in the order of {@link #findByBirthDateRange(LocalDate, LocalDate)}.
+	 * Users are read from the index as the stream is consumed, so memory use
+	 * does not depend on the size of the range. The stream shows the store as
+	 * it was when the stream was opened, whatever is written meanwhile, and
+	 * holds on to that snapshot until it is closed or fully consumed.
+	 */
+	default Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to) {
+		return streamByBirthDateRange(from, to, null);
+	}
+
+	/**
+	 * Like {@link #streamByBirthDateRange(LocalDate, LocalDate)}, but starts
+	 * right after {@code after} when it is not {@code null}. Implementations
+	 * seek to the cursor instead of skipping, so every page costs the same.
+	 */
+	Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to, BirthDateCursor after);
+
+	/**
+	 * Streams users whose birthday falls in the {@code days} days starting at
+	 * {@code from}, ordered by that birthday, then by the birthday's
+	 * {@link Birthdays#dayOf(LocalDate) day of the year} and then by id. In
+	 * common years users born on February 29 celebrate on March 1.
+	 * Indexed implementations do not scan the store.
+	 */
+	default Stream<User> streamByUpcomingBirthday(LocalDate from, int days) {
+		LocalDate last = from.plusDays(days - 1L);
+		return findAll().filter(user -> user.getBirthDate() != null && !Birthdays.next(user.getBirthDate(), from)
+						.isAfter(last))
+				.sorted(Birthdays.upcomingFrom(from));
+	}
+
+	/**
+	 * Returns at most {@code limit} users whose first or last name matches
+	 * {@code name} as described in {@link NameSearch}, best matches first.
+	 * Indexed implementations only look at users sharing the query's rarest
+	 * trigram.
+	 */
+	default List<User> searchByName(String name, int limit) {
+		String[] query = NameSearch.words(name);
+		if (query.length == 0) {
+			return List.of();
+		}
+		try (Stream<User> users = findAll()) {
+			return NameSearch.top(users, query, limit);
+		}
+	}
+
+	/**
+	 * Describes how {@link #find(UserQuery)} runs {@code query}.
+	 * Implementations without indexes scan every user.
+	 */
+	default QueryPlan explain(UserQuery query) {
+		long count = count();
+		return new QueryPlan(QueryPlan.AccessPath.FULL_SCAN, count, count, query.predicates());
+	}
+
+	/**
+	 * Lazily streams the users matching every predicate of {@code query}, in
+	 * an order that depends on the plan. Indexed implementations read only the
+	 * candidates of the most selective index they have for the query, so a
+	 * caller that stops early, for instance with {@link Stream#limit(long)},
+	 * does no more work than it needs. The caller must close the stream.
+	 */
+	default Stream<User> find(UserQuery query) {
+		return findAll().filter(query::matches);
+	}
+
+	/**
+	 * Counts users born between {@code from} and {@code to}, both inclusive.
+	 * Indexed implementations answer without scanning the range.
+	 */
+	default long countByBirthDateRange(LocalDate from, LocalDate to) {
+		try (Stream<User> users = streamByBirthDateRange(from, to)) {
+			return users.count();
+		}
+	}
+
+	/**
+	 * @return the number of users born in each year, for years with any
+	 */
+	default SortedMap<Integer, Long> countByBirthYear() {
+		try (Stream<User> users = findAll()) {
+			return users.filter(user -> user.getBirthDate() != null)
+					.collect(Collectors.groupingBy(user -> user.getBirthDate()
+							.getYear(), TreeMap::new, Collectors.counting()));
+		}
+	}
+
+	/**
+	 * @return the number of users of each age on {@code date}, for ages with
+	 * any; users born after {@code date} are left out
+	 */
+	default SortedMap<Integer, Long> countByAge(LocalDate date) {
+		try (Stream<User> users = findAll()) {
+			return users.filter(user -> user.getBirthDate() != null && !user.getBirthDate()
+							.isAfter(date))
+					.collect(Collectors.groupingBy(user -> Period.between(user.getBirthDate(), date)
+							.getYears(), TreeMap::new, Collectors.counting()));
+		}
+	}
+
+	/**
+	 * Streams every stored user. The stream is weakly consistent: it reflects
+	 * writes that complete while it is consumed only on a best-effort basis.
+	 */
+	Stream<User> findAll();
+
+	long count();
+}
@@ -0,0 +1,159 @@
+package com.drg.usersapi.repositories.impl;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.temporal.ChronoUnit;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Number of users per birth date, kept in a two-level Fenwick tree so that the
+ * number of users born in any range is answered in O(log n) without a scan:
+ * one tree over years 0-9999 and, per year in use, one over its days.
+ * <p>
+ * Per-year and per-age totals are derived from the same trees, at a cost that
+ * depends on the number of birth years in use but not on the number of users.
+ * Ages are worked out for the requested date on every read, so there is
+ * nothing to roll over when the date changes.
+ * <p>
+ * Updates are lock-free. A count taken while users are being moved between
+ * birth dates may be off by the moves in flight.
+ */
+final class BirthDateCounts {
+	private static final int MIN_YEAR = 0;
+	private static final int MAX_YEAR = 9999;
+	private static final int YEARS = MAX_YEAR - MIN_YEAR + 1;
+	private static final int DAYS_PER_YEAR = 366;
+
+	private final AtomicLongArray years = new AtomicLongArray(YEARS + 1);
+	private final AtomicReferenceArray<AtomicLongArray> daysByYear = new AtomicReferenceArray<>(YEARS);
+	// Dates the API cannot produce; only a bulk put with a far-off date lands here
+	private final ConcurrentSkipListMap<Long, AtomicLong> outOfRange = new ConcurrentSkipListMap<>();
+
+	void add(LocalDate birthDate, long delta) {
+		int year = birthDate.getYear();
+		if (year < MIN_YEAR || year > MAX_YEAR) {
+			outOfRange.computeIfAbsent(birthDate.toEpochDay(), day -> new AtomicLong())
+					.addAndGet(delta);
+			return;
+		}
+		add(years, year - MIN_YEAR + 1, delta);
+		add(days(year), birthDate.getDayOfYear(), delta);
+	}
+
+	/**
+	 * @return the number of users born between {@code from} and {@code to},
+	 * both inclusive
+	 */
+	long count(LocalDate from, LocalDate to) {
+		if (to.isBefore(from)) {
+			return 0;
+		}
+		return countBefore(to.plusDays(1)) - countBefore(from);
+	}
+
+	/**
+	 * @return the number of users born in each year that has any
+	 */
+	SortedMap<Integer, Long> countByYear() {
+		SortedMap<Integer, Long> counts = new TreeMap<>();
+		forEachYear((days, year) -> counts.put(year, prefix(days, DAYS_PER_YEAR)));
+		outOfRange.forEach((epochDay, count) -> counts.merge(LocalDate.ofEpochDay(epochDay)
+				.getYear(), count.get(), Long::sum));
+		counts.values()
+				.removeIf(count -> count == 0);
+		return counts;
+	}
+
+	/**
+	 * @return the number of users of each age on {@code date}, leaving out
+	 * users born after it. Users born on February 29 turn a year older on
+	 * March 1 in common years.
+	 */
+	SortedMap<Integer, Long> countByAge(LocalDate date) {
+		SortedMap<Integer, Long> counts = new TreeMap<>();
+		MonthDay today = MonthDay.from(date);
+		forEachYear((days, year) -> {
+			if (year > date.getYear()) {
+				return;
+			}
+			long born = prefix(days, DAYS_PER_YEAR);
+			long hadBirthday = prefix(days, today.atYear(year)
+					.getDayOfYear());
+			int age = date.getYear() - year;
+			if (hadBirthday > 0) {
+				counts.merge(age, hadBirthday, Long::sum);
+			}
+			if (born > hadBirthday && age > 0) {
+				counts.merge(age - 1, born - hadBirthday, Long::sum);
+			}
+		});
+		outOfRange.forEach((epochDay, count) -> {
+			LocalDate birthDate = LocalDate.ofEpochDay(epochDay);
+			if (!birthDate.isAfter(date)) {
+				counts.merge((int) ChronoUnit.YEARS.between(birthDate, date), count.get(), Long::sum);
+			}
+		});
+		counts.values()
+				.removeIf(count -> count == 0);
+		return counts;
+	}
+
+	private void forEachYear(ObjIntConsumer<AtomicLongArray> action) {
+		for (int i = 0; i < YEARS; i++) {
+			AtomicLongArray days = daysByYear.get(i);
+			if (days != null) {
+				action.accept(days, MIN_YEAR + i);
+			}
+		}
+	}
+
+	private long countBefore(LocalDate date) {
+		long count = outOfRange.isEmpty() ? 0 : outOfRange.headMap(date.toEpochDay())
+				.values()
+				.stream()
+				.mapToLong(AtomicLong::get)
+				.sum();
+		int year = date.getYear();
+		if (year < MIN_YEAR) {
+			return count;
+		}
+		if (year > MAX_YEAR) {
+			return count + prefix(years, YEARS);
+		}
+		count += prefix(years, year - MIN_YEAR);
+		AtomicLongArray days = daysByYear.get(year - MIN_YEAR);
+		return days == null ? count : count + prefix(days, date.getDayOfYear() - 1);
+	}
+
+	private AtomicLongArray days(int year) {
+		AtomicLongArray days = daysByYear.get(year - MIN_YEAR);
+		if (days == null) {
+			daysByYear.compareAndSet(year - MIN_YEAR, null, new AtomicLongArray(DAYS_PER_YEAR + 1));
+			days = daysByYear.get(year - MIN_YEAR);
+		}
+		return days;
+	}
+
+	private static void add(AtomicLongArray tree, int index, long delta) {
+		for (int i = index; i < tree.length(); i += i & -i) {
+			tree.getAndAdd(i, delta);
+		}
+	}
+
+	/**
+	 * @return the sum of the first {@code index} slots
+	 */
+	private static long prefix(AtomicLongArray tree, int index) {
+		long sum = 0;
+		for (int i = index; i > 0; i -= i & -i) {
+			sum += tree.get(i);
+		}
+		return sum;
+	}
+}
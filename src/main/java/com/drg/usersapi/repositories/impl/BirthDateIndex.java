@@ -0,0 +1,291 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Multi-versioned birth-date index that serves range scans from a consistent
+ * point-in-time snapshot without taking locks.
+ * <p>
+ * Every key holds a chain of versions, newest first. A write stamps all the
+ * versions it creates (the user under its new key and a tombstone under the
+ * old one) with a shared {@link Commit}, and only takes a timestamp from the
+ * global clock once they are all in place. A scan reads the clock when it
+ * starts and sees, under each key, the newest version committed at or before
+ * that time, so a user moved mid-scan shows up exactly once. A scan that
+ * meets a fully installed commit still waiting for its timestamp assigns one
+ * itself, later than its own, instead of waiting for the writer.
+ * <p>
+ * Old versions are reclaimed epoch style: open scans register their start
+ * time, and versions or tombstoned keys that no open or future scan can see
+ * are dropped on later writes and left to the garbage collector.
+ */
+final class BirthDateIndex {
+	private static final long INSTALLING = Long.MAX_VALUE;
+	private static final long PENDING = Long.MAX_VALUE - 1;
+	private static final Version DEAD = new Version(null, null);
+
+	private final ConcurrentSkipListMap<BirthDateKey, Entry> entries = new ConcurrentSkipListMap<>();
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicLong viewSequence = new AtomicLong();
+	private final ConcurrentSkipListSet<ReadView> openViews = new ConcurrentSkipListSet<>();
+	private final Queue<Retired> retired = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Replaces {@code previous} by {@code next} in the index. Either may be
+	 * {@code null} or lack a birth date. Writes to the same id must not run
+	 * concurrently; the caller holds the id's lock.
+	 */
+	void publish(User previous, User next) {
+		BirthDateKey previousKey = keyOf(previous);
+		BirthDateKey nextKey = keyOf(next);
+		if (previousKey == null && nextKey == null) {
+			return;
+		}
+		long oldest = oldestVisibleTimestamp();
+		Commit commit = new Commit();
+		if (nextKey != null) {
+			push(nextKey, new Version(next, commit), oldest);
+		}
+		Version tombstone = null;
+		if (previousKey != null && !previousKey.equals(nextKey)) {
+			tombstone = new Version(null, commit);
+			push(previousKey, tombstone, oldest);
+		}
+		commit.seal();
+		commit.assign(clock.incrementAndGet());
+		if (tombstone != null) {
+			retired.add(new Retired(previousKey, tombstone));
+		}
+		reclaim(oldest);
+	}
+
+	/**
+	 * Streams the users between the keys as of now. Writes that commit while
+	 * the stream is consumed are not visible in it. Closing the stream, or
+	 * consuming it to the end, releases the snapshot.
+	 */
+	Stream<User> range(BirthDateKey lower, boolean lowerInclusive, BirthDateKey upper) {
+		ReadView view = open();
+		long timestamp = clock.get();
+		Iterator<Entry> range = entries.subMap(lower, lowerInclusive, upper, true)
+				.values()
+				.iterator();
+		Iterator<User> users = new Iterator<User>() {
+			private User next;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && range.hasNext()) {
+					next = range.next()
+							.visibleAt(timestamp, clock);
+				}
+				if (next == null) {
+					view.close();
+					return false;
+				}
+				return true;
+			}
+
+			@Override
+			public User next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				User user = next;
+				next = null;
+				return user;
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(view::close);
+	}
+
+	/**
+	 * Announces a scan. The caller reads its timestamp only afterwards: a
+	 * writer that misses the announcement read the clock earlier, so it never
+	 * drops a version the scan can see.
+	 */
+	private ReadView open() {
+		ReadView view = new ReadView(clock.get(), viewSequence.incrementAndGet());
+		openViews.add(view);
+		return view;
+	}
+
+	/**
+	 * @return a timestamp no open or future scan reads below
+	 */
+	private long oldestVisibleTimestamp() {
+		long now = clock.get();
+		Iterator<ReadView> views = openViews.iterator();
+		return views.hasNext() ? Math.min(now, views.next().announced) : now;
+	}
+
+	private void push(BirthDateKey key, Version version, long oldest) {
+		while (true) {
+			Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+			Version head = entry.head;
+			if (head == DEAD) {
+				entries.remove(key, entry);
+				continue;
+			}
+			version.older = head;
+			if (entry.casHead(head, version)) {
+				if (head != null) {
+					head.prune(oldest);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes keys whose newest version is a tombstone every scan can see.
+	 */
+	private void reclaim(long oldest) {
+		Retired next;
+		while ((next = retired.peek()) != null && next.tombstone.commit.timestamp <= oldest) {
+			if (retired.remove(next)) {
+				Entry entry = entries.get(next.key);
+				if (entry != null && entry.casHead(next.tombstone, DEAD)) {
+					entries.remove(next.key, entry);
+				}
+			}
+		}
+	}
+
+	private static BirthDateKey keyOf(User user) {
+		if (user == null || user.getBirthDate() == null) {
+			return null;
+		}
+		return new BirthDateKey(user.getBirthDate()
+				.toEpochDay(), user.getId());
+	}
+
+	private static final class Entry {
+		private static final AtomicReferenceFieldUpdater<Entry, Version> HEAD = AtomicReferenceFieldUpdater.newUpdater(Entry.class,
+				Version.class, "head");
+
+		private volatile Version head;
+
+		boolean casHead(Version expected, Version version) {
+			return HEAD.compareAndSet(this, expected, version);
+		}
+
+		/**
+		 * @return the user visible at {@code timestamp}, or {@code null} if the
+		 * key was empty then
+		 */
+		User visibleAt(long timestamp, AtomicLong clock) {
+			for (Version version = head; version != null && version != DEAD; version = version.older) {
+				if (version.commit.timestamp(clock) <= timestamp) {
+					return version.user;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final class Version {
+		private final User user;
+		private final Commit commit;
+		private volatile Version older;
+
+		Version(User user, Commit commit) {
+			this.user = user;
+			this.commit = commit;
+		}
+
+		/**
+		 * Cuts off the versions that are hidden from every scan at or after
+		 * {@code oldest} by a newer committed version.
+		 */
+		void prune(long oldest) {
+			for (Version version = this; version != null; version = version.older) {
+				if (version.commit.timestamp <= oldest) {
+					version.older = null;
+					return;
+				}
+			}
+		}
+	}
+
+	private static final class Commit {
+		private static final AtomicLongFieldUpdater<Commit> TIMESTAMP = AtomicLongFieldUpdater.newUpdater(Commit.class, "timestamp");
+
+		private volatile long timestamp = INSTALLING;
+
+		/**
+		 * Marks every version of the commit as installed. Until then scans
+		 * treat them as not yet written.
+		 */
+		void seal() {
+			timestamp = PENDING;
+		}
+
+		void assign(long value) {
+			TIMESTAMP.compareAndSet(this, PENDING, value);
+		}
+
+		/**
+		 * Returns the commit timestamp, assigning a fresh one if the writer
+		 * has not done so yet. A reader that assigns it is guaranteed a
+		 * timestamp later than its own, so it rightly skips the version.
+		 */
+		long timestamp(AtomicLong clock) {
+			long value = timestamp;
+			if (value == PENDING) {
+				assign(clock.incrementAndGet());
+				value = timestamp;
+			}
+			return value;
+		}
+	}
+
+	private static final class Retired {
+		private final BirthDateKey key;
+		private final Version tombstone;
+
+		Retired(BirthDateKey key, Version tombstone) {
+			this.key = key;
+			this.tombstone = tombstone;
+		}
+	}
+
+	private final class ReadView implements Comparable<ReadView> {
+		private final long announced;
+		private final long sequence;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		ReadView(long announced, long sequence) {
+			this.announced = announced;
+			this.sequence = sequence;
+		}
+
+		void close() {
+			if (closed.compareAndSet(false, true)) {
+				openViews.remove(this);
+			}
+		}
+
+		@Override
+		public int compareTo(ReadView other) {
+			int result = Long.compare(announced, other.announced);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+	}
+}
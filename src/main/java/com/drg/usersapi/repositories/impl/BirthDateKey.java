@@ -0,0 +1,34 @@
+package com.drg.usersapi.repositories.impl;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Key of the birth-date index: epoch day first, id as a tie breaker so that
+ * users sharing a birthday get distinct entries.
+ */
+@Getter
+@EqualsAndHashCode
+final class BirthDateKey implements Comparable<BirthDateKey> {
+	private final long epochDay;
+	private final long id;
+
+	BirthDateKey(long epochDay, long id) {
+		this.epochDay = epochDay;
+		this.id = id;
+	}
+
+	static BirthDateKey lowest(long epochDay) {
+		return new BirthDateKey(epochDay, Long.MIN_VALUE);
+	}
+
+	static BirthDateKey highest(long epochDay) {
+		return new BirthDateKey(epochDay, Long.MAX_VALUE);
+	}
+
+	@Override
+	public int compareTo(BirthDateKey other) {
+		int result = Long.compare(epochDay, other.epochDay);
+		return result != 0 ? result : Long.compare(id, other.id);
+	}
+}
@@ -0,0 +1,65 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.Birthdays;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Users bucketed by birthday, one bucket per {@link Birthdays#dayOf(LocalDate)
+ * day of the year}, each ordered by id. Finding the birthdays in a window of
+ * d days visits d buckets, so it costs O(d + k) whatever the number of users.
+ * <p>
+ * Buckets are concurrent maps, so reads take no locks; a scan that runs while
+ * a user changes birthday may see them in both buckets or in neither.
+ */
+final class BirthdayIndex {
+	private final ConcurrentSkipListMap<Long, User>[] usersByDay = newBuckets();
+
+	/**
+	 * Replaces {@code previous} by {@code next} in the index. Either may be
+	 * {@code null} or lack a birth date. Writes to the same id must not run
+	 * concurrently; the caller holds the id's lock.
+	 */
+	void publish(User previous, User next) {
+		int previousDay = dayOf(previous);
+		int nextDay = dayOf(next);
+		if (previousDay != 0 && previousDay != nextDay) {
+			usersByDay[previousDay].remove(previous.getId());
+		}
+		if (nextDay != 0) {
+			usersByDay[nextDay].put(next.getId(), next);
+		}
+	}
+
+	/**
+	 * Streams the users whose birthday falls in the {@code days} days
+	 * starting at {@code from}, ordered by birthday and then by id.
+	 */
+	Stream<User> upcoming(LocalDate from, int days) {
+		return Stream.of(Birthdays.window(from, days))
+				.flatMap(range -> IntStream.rangeClosed(range[0], range[1])
+						.boxed()
+						.flatMap(day -> usersByDay[day].values()
+								.stream()));
+	}
+
+	private static int dayOf(User user) {
+		if (user == null || user.getBirthDate() == null) {
+			return 0;
+		}
+		return Birthdays.dayOf(user.getBirthDate());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ConcurrentSkipListMap<Long, User>[] newBuckets() {
+		ConcurrentSkipListMap<Long, User>[] buckets = new ConcurrentSkipListMap[Birthdays.DAYS + 1];
+		for (int day = 1; day <= Birthdays.DAYS; day++) {
+			buckets[day] = new ConcurrentSkipListMap<>();
+		}
+		return buckets;
+	}
+}
@@ -0,0 +1,193 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.BirthDateCursor;
+import com.drg.usersapi.repositories.QueryPlan;
+import com.drg.usersapi.repositories.UserQuery;
+import com.drg.usersapi.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of users by id in front of another
+ * {@link UserRepository}, bounded with Caffeine's W-TinyLFU eviction.
+ * <p>
+ * Every write invalidates the id after the store has been updated. Caffeine
+ * runs a load and an invalidation of the same key one after the other, so a
+ * load that read the old value before the write cannot leave it behind in
+ * the cache: once a write returns, no reader is served the old version.
+ */
+public class CachingUserRepository implements UserRepository, Closeable {
+	private final UserRepository delegate;
+	private final Cache<Long, User> cache;
+
+	public CachingUserRepository(UserRepository delegate, long maximumSize, long expireAfterWriteMillis) {
+		this.delegate = delegate;
+		Caffeine<Object, Object> builder = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats();
+		if (expireAfterWriteMillis > 0) {
+			builder.expireAfterWrite(Duration.ofMillis(expireAfterWriteMillis));
+		}
+		this.cache = builder.build();
+	}
+
+	@Override
+	public User insert(User user) {
+		return delegate.insert(user);
+	}
+
+	@Override
+	public List<User> insertAll(List<User> users) {
+		return delegate.insertAll(users);
+	}
+
+	@Override
+	public Optional<User> update(User user) {
+		try {
+			return delegate.update(user);
+		} finally {
+			cache.invalidate(user.getId());
+		}
+	}
+
+	@Override
+	public Optional<User> update(Long id, UnaryOperator<User> change) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		try {
+			return delegate.update(id, change);
+		} finally {
+			cache.invalidate(id);
+		}
+	}
+
+	@Override
+	public User put(User user) {
+		try {
+			return delegate.put(user);
+		} finally {
+			cache.invalidate(user.getId());
+		}
+	}
+
+	@Override
+	public void putAll(List<User> users) {
+		try {
+			delegate.putAll(users);
+		} finally {
+			users.forEach(user -> cache.invalidate(user.getId()));
+		}
+	}
+
+	@Override
+	public Optional<User> findById(Long id) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		User cached = cache.get(id, key -> delegate.findById(key)
+				.orElse(null));
+		return Optional.ofNullable(cached)
+				.map(user -> user.toBuilder()
+						.build());
+	}
+
+	@Override
+	public Optional<User> findByEmail(String email) {
+		return delegate.findByEmail(email);
+	}
+
+	@Override
+	public boolean delete(Long id) {
+		if (id == null) {
+			return false;
+		}
+		try {
+			return delegate.delete(id);
+		} finally {
+			cache.invalidate(id);
+		}
+	}
+
+	@Override
+	public List<User> findByBirthDateRange(LocalDate from, LocalDate to) {
+		return delegate.findByBirthDateRange(from, to);
+	}
+
+	@Override
+	public Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to, BirthDateCursor after) {
+		return delegate.streamByBirthDateRange(from, to, after);
+	}
+
+	@Override
+	public Stream<User> streamByUpcomingBirthday(LocalDate from, int days) {
+		return delegate.streamByUpcomingBirthday(from, days);
+	}
+
+	@Override
+	public List<User> searchByName(String name, int limit) {
+		return delegate.searchByName(name, limit);
+	}
+
+	@Override
+	public QueryPlan explain(UserQuery query) {
+		return delegate.explain(query);
+	}
+
+	@Override
+	public Stream<User> find(UserQuery query) {
+		return delegate.find(query);
+	}
+
+	@Override
+	public long countByBirthDateRange(LocalDate from, LocalDate to) {
+		return delegate.countByBirthDateRange(from, to);
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByBirthYear() {
+		return delegate.countByBirthYear();
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByAge(LocalDate date) {
+		return delegate.countByAge(date);
+	}
+
+	@Override
+	public Stream<User> findAll() {
+		return delegate.findAll();
+	}
+
+	@Override
+	public long count() {
+		return delegate.count();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public long estimatedSize() {
+		return cache.estimatedSize();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (delegate instanceof Closeable) {
+			((Closeable) delegate).close();
+		}
+	}
+}
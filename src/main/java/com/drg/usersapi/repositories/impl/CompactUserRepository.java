@@ -0,0 +1,791 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.repositories.BirthDateCursor;
+import com.drg.usersapi.repositories.Emails;
+import com.drg.usersapi.repositories.UserRepository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compact heap-resident user store that keeps users in primitive arrays
+ * instead of objects: a user costs an 80-byte row of {@code long}s, the
+ * bytes of its strings in a {@link StringArena} and a few index slots, and
+ * {@link User} instances are only built for the callers that read them. The
+ * fields of a row sit side by side, so reading a user touches one or two
+ * cache lines. First and last names are interned, so common names are
+ * stored once. Rows and strings can also live in memory-mapped files, which
+ * leaves only the indexes, some 50 bytes a user, on the heap.
+ * <p>
+ * Rows are never changed once written: a write appends a row, or reuses a
+ * freed one, and marks the user's previous row dead. Every row records the
+ * write that created it and the one that killed it, so a range scan reads
+ * the rows alive when it started and sees a consistent snapshot. Dead rows
+ * are freed once no open scan can see them, and the string arena is rewritten
+ * when more than half of it belongs to freed rows.
+ * <p>
+ * Ids map to rows through a {@link LongIntHashMap}, normalized emails through
+ * an open-addressing table of rows, and birth dates through per-day lists of
+ * rows ordered by id, so lookups and range scans scale as they do in
+ * {@link InMemoryUserRepository}. Name searches, upcoming birthdays and
+ * multi-predicate queries scan the store. Reads share a lock and writes take
+ * it exclusively.
+ */
+public class CompactUserRepository implements UserRepository, Closeable {
+	private static final int NO_DATE = Integer.MIN_VALUE;
+	private static final long ALIVE = Long.MAX_VALUE;
+	private static final long FREE = 0;
+	private static final int SCAN_BATCH = 1024;
+	// Fields of a row, laid out one after the other in the records array
+	private static final int ID = 0;
+	private static final int VERSION = 1;
+	private static final int BIRTH_DAY = 2;
+	private static final int EMAIL = 3;
+	private static final int FIRST_NAME = 4;
+	private static final int LAST_NAME = 5;
+	private static final int ADDRESS = 6;
+	private static final int PHONE_NUMBER = 7;
+	private static final int CREATED = 8;
+	private static final int DIED = 9;
+	private static final int STRIDE = 10;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final AtomicLong idSequence = new AtomicLong();
+	private final LongIntHashMap rowsById = new LongIntHashMap();
+	private final EmailRows rowsByEmail = new EmailRows();
+	private final TreeMap<Integer, Postings> rowsByBirthDay = new TreeMap<>();
+	private final BirthDateCounts birthDateCounts = new BirthDateCounts();
+	private final ConcurrentSkipListSet<ReadView> openViews = new ConcurrentSkipListSet<>();
+	private final AtomicLong viewSequence = new AtomicLong();
+	private final ArrayDeque<Integer> retired = new ArrayDeque<>();
+	private final Supplier<StringArena> arenas;
+	private StringArena strings;
+	private long garbageBytes;
+	private long clock;
+	private volatile long live;
+
+	private int rowCount;
+	private int[] freeRows = new int[16];
+	private int freeCount;
+	private final LongStore records;
+
+	public CompactUserRepository() {
+		records = LongStore.onHeap(1024 * STRIDE);
+		arenas = StringArena::new;
+		strings = arenas.get();
+	}
+
+	/**
+	 * Creates a store whose rows and strings live in files in
+	 * {@code directory}, mapped into memory, so that only the indexes take
+	 * heap. The files are scratch space, emptied on creation and deleted on
+	 * close.
+	 */
+	public CompactUserRepository(Path directory) {
+		records = LongStore.mapped(directory.resolve("rows.bin"));
+		AtomicLong arenaSequence = new AtomicLong();
+		arenas = () -> new StringArena(directory.resolve("strings-" + arenaSequence.incrementAndGet() + ".bin"));
+		strings = arenas.get();
+	}
+
+	@Override
+	public User insert(User user) {
+		User stored = user.toBuilder()
+				.id(idSequence.incrementAndGet())
+				.version(1)
+				.build();
+		return write(stored, false);
+	}
+
+	@Override
+	public Optional<User> update(User user) {
+		if (user.getId() == null) {
+			return Optional.empty();
+		}
+		lock.writeLock()
+				.lock();
+		try {
+			int row = rowsById.get(user.getId());
+			if (row == LongIntHashMap.ABSENT) {
+				return Optional.empty();
+			}
+			return Optional.of(write(user.toBuilder()
+					.version(records.get(row * STRIDE + VERSION) + 1)
+					.build(), false));
+		} finally {
+			lock.writeLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public Optional<User> update(Long id, UnaryOperator<User> change) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		lock.writeLock()
+				.lock();
+		try {
+			int row = rowsById.get(id);
+			if (row == LongIntHashMap.ABSENT) {
+				return Optional.empty();
+			}
+			User next = change.apply(view(row))
+					.toBuilder()
+					.id(id)
+					.version(records.get(row * STRIDE + VERSION) + 1)
+					.build();
+			return Optional.of(write(next, false));
+		} finally {
+			lock.writeLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public User put(User user) {
+		idSequence.accumulateAndGet(user.getId(), Math::max);
+		return write(user, true);
+	}
+
+	@Override
+	public Optional<User> findById(Long id) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		lock.readLock()
+				.lock();
+		try {
+			int row = rowsById.get(id);
+			return row == LongIntHashMap.ABSENT ? Optional.empty() : Optional.of(view(row));
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public Optional<User> findByEmail(String email) {
+		String key = Emails.normalize(email);
+		if (key == null) {
+			return Optional.empty();
+		}
+		lock.readLock()
+				.lock();
+		try {
+			int row = rowsByEmail.find(key);
+			return row == LongIntHashMap.ABSENT ? Optional.empty() : Optional.of(view(row));
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public boolean delete(Long id) {
+		if (id == null) {
+			return false;
+		}
+		lock.writeLock()
+				.lock();
+		try {
+			int row = rowsById.remove(id);
+			if (row == LongIntHashMap.ABSENT) {
+				return false;
+			}
+			long stamp = ++clock;
+			String key = emailKeyOf(row);
+			if (key != null) {
+				rowsByEmail.remove(key, row);
+			}
+			retire(row, stamp);
+			live--;
+			reclaim();
+			return true;
+		} finally {
+			lock.writeLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to, BirthDateCursor after) {
+		long fromDay = from.toEpochDay();
+		long afterId = Long.MIN_VALUE;
+		if (after != null && after.getEpochDay() >= fromDay) {
+			fromDay = after.getEpochDay();
+			afterId = after.getId();
+		}
+		long toDay = Math.min(to.toEpochDay(), Integer.MAX_VALUE);
+		fromDay = Math.max(fromDay, Integer.MIN_VALUE + 1L);
+		if (fromDay > toDay) {
+			return Stream.empty();
+		}
+		ReadView view;
+		lock.readLock()
+				.lock();
+		try {
+			view = new ReadView(clock, viewSequence.incrementAndGet());
+			openViews.add(view);
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+		Iterator<User> users = new RangeIterator(view, (int) fromDay, afterId, (int) toDay);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(view::close);
+	}
+
+	@Override
+	public long countByBirthDateRange(LocalDate from, LocalDate to) {
+		lock.readLock()
+				.lock();
+		try {
+			return birthDateCounts.count(from, to);
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByBirthYear() {
+		lock.readLock()
+				.lock();
+		try {
+			return birthDateCounts.countByYear();
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByAge(LocalDate date) {
+		lock.readLock()
+				.lock();
+		try {
+			return birthDateCounts.countByAge(date);
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public Stream<User> findAll() {
+		Iterator<User> users = new Iterator<User>() {
+			private final List<User> batch = new ArrayList<>(SCAN_BATCH);
+			private int position;
+			private int nextRow;
+
+			@Override
+			public boolean hasNext() {
+				if (position < batch.size()) {
+					return true;
+				}
+				batch.clear();
+				position = 0;
+				lock.readLock()
+						.lock();
+				try {
+					while (batch.size() < SCAN_BATCH && nextRow < rowCount) {
+						if (records.get(nextRow * STRIDE + DIED) == ALIVE) {
+							batch.add(view(nextRow));
+						}
+						nextRow++;
+					}
+				} finally {
+					lock.readLock()
+							.unlock();
+				}
+				return !batch.isEmpty();
+			}
+
+			@Override
+			public User next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return batch.get(position++);
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users, Spliterator.NONNULL), false);
+	}
+
+	@Override
+	public long count() {
+		return live;
+	}
+
+	/**
+	 * @return an estimate of the heap taken by the rows, string arena and
+	 * indexes
+	 */
+	public long estimatedBytes() {
+		lock.readLock()
+				.lock();
+		try {
+			long postingBytes = 0;
+			for (Postings postings : rowsByBirthDay.values()) {
+				postingBytes += (long) postings.rows.length * Integer.BYTES;
+			}
+			return records.heapBytes() + (long) freeRows.length * Integer.BYTES + strings.estimatedBytes()
+					+ rowsById.estimatedBytes() + rowsByEmail.estimatedBytes() + postingBytes;
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+	}
+
+	/**
+	 * @return the bytes of file mapped for rows and strings, 0 on the heap
+	 */
+	public long mappedBytes() {
+		lock.readLock()
+				.lock();
+		try {
+			return records.mappedBytes() + strings.mappedBytes();
+		} finally {
+			lock.readLock()
+					.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.writeLock()
+				.lock();
+		try {
+			records.close();
+			strings.close();
+		} finally {
+			lock.writeLock()
+					.unlock();
+		}
+	}
+
+	/**
+	 * Stores {@code next} in a new row and retires the row of its previous
+	 * version, if any. Emails are checked first, so a duplicate leaves the
+	 * store unchanged. A {@code trusted} write takes over its email from
+	 * whoever held it.
+	 */
+	private User write(User next, boolean trusted) {
+		lock.writeLock()
+				.lock();
+		try {
+			long id = next.getId();
+			int previous = rowsById.get(id);
+			String key = Emails.normalize(next.getEmail());
+			if (key != null && !trusted) {
+				int owner = rowsByEmail.find(key);
+				if (owner != LongIntHashMap.ABSENT && records.get(owner * STRIDE + ID) != id) {
+					throw new DuplicateEmailException("User with email " + key + " already exists");
+				}
+			}
+			int birthDay = next.getBirthDate() == null ? NO_DATE : Math.toIntExact(next.getBirthDate()
+					.toEpochDay());
+			reclaim();
+			int row = allocate();
+			int at = row * STRIDE;
+			long stamp = ++clock;
+			records.set(at + ID, id);
+			records.set(at + VERSION, next.getVersion());
+			records.set(at + BIRTH_DAY, birthDay);
+			records.set(at + EMAIL, strings.add(next.getEmail()));
+			records.set(at + FIRST_NAME, strings.intern(next.getFirstName()));
+			records.set(at + LAST_NAME, strings.intern(next.getLastName()));
+			records.set(at + ADDRESS, strings.add(next.getAddress()));
+			records.set(at + PHONE_NUMBER, strings.add(next.getPhoneNumber()));
+			records.set(at + CREATED, stamp);
+			records.set(at + DIED, ALIVE);
+			if (birthDay != NO_DATE) {
+				rowsByBirthDay.computeIfAbsent(birthDay, day -> new Postings())
+						.add(row, records);
+				birthDateCounts.add(next.getBirthDate(), 1);
+			}
+			if (previous == LongIntHashMap.ABSENT) {
+				live++;
+			} else {
+				String previousKey = emailKeyOf(previous);
+				if (previousKey != null && !previousKey.equals(key)) {
+					rowsByEmail.remove(previousKey, previous);
+				}
+				retire(previous, stamp);
+			}
+			if (key != null) {
+				rowsByEmail.put(key, row);
+			}
+			rowsById.put(id, row);
+			return view(row);
+		} finally {
+			lock.writeLock()
+					.unlock();
+		}
+	}
+
+	/**
+	 * Marks a row dead as of {@code stamp}; scans that started earlier still
+	 * see it.
+	 */
+	private void retire(int row, long stamp) {
+		int at = row * STRIDE;
+		records.set(at + DIED, stamp);
+		if (records.get(at + BIRTH_DAY) != NO_DATE) {
+			birthDateCounts.add(LocalDate.ofEpochDay(records.get(at + BIRTH_DAY)), -1);
+		}
+		retired.add(row);
+	}
+
+	/**
+	 * Frees the dead rows no open scan can see, then rewrites the string
+	 * arena if most of it is garbage.
+	 */
+	private void reclaim() {
+		Iterator<ReadView> views = openViews.iterator();
+		long oldest = views.hasNext() ? Math.min(clock, views.next().timestamp) : clock;
+		Integer row;
+		while ((row = retired.peek()) != null && records.get(row * STRIDE + DIED) <= oldest) {
+			retired.poll();
+			int at = row * STRIDE;
+			int birthDay = (int) records.get(at + BIRTH_DAY);
+			if (birthDay != NO_DATE) {
+				Postings postings = rowsByBirthDay.get(birthDay);
+				postings.remove(row, records);
+				if (postings.size == 0) {
+					rowsByBirthDay.remove(birthDay);
+				}
+			}
+			garbageBytes += StringArena.length(records.get(at + EMAIL)) + StringArena.length(records.get(at + ADDRESS))
+					+ StringArena.length(records.get(at + PHONE_NUMBER));
+			records.set(at + DIED, FREE);
+			if (freeCount == freeRows.length) {
+				freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+			}
+			freeRows[freeCount++] = row;
+		}
+		if (garbageBytes > StringArena.CHUNK_SIZE && garbageBytes > strings.storedBytes() / 2) {
+			compact();
+		}
+	}
+
+	/**
+	 * Copies the strings of every row that is not free into a fresh arena.
+	 * Only references change, so open scans are unaffected.
+	 */
+	private void compact() {
+		StringArena fresh = arenas.get();
+		for (int at = 0; at < rowCount * STRIDE; at += STRIDE) {
+			if (records.get(at + DIED) != FREE) {
+				records.set(at + EMAIL, fresh.add(strings.get(records.get(at + EMAIL))));
+				records.set(at + FIRST_NAME, fresh.intern(strings.get(records.get(at + FIRST_NAME))));
+				records.set(at + LAST_NAME, fresh.intern(strings.get(records.get(at + LAST_NAME))));
+				records.set(at + ADDRESS, fresh.add(strings.get(records.get(at + ADDRESS))));
+				records.set(at + PHONE_NUMBER, fresh.add(strings.get(records.get(at + PHONE_NUMBER))));
+			}
+		}
+		try {
+			strings.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		strings = fresh;
+		garbageBytes = 0;
+	}
+
+	private int allocate() {
+		if (freeCount > 0) {
+			return freeRows[--freeCount];
+		}
+		records.ensureCapacity((rowCount + 1) * STRIDE);
+		return rowCount++;
+	}
+
+	private String emailKeyOf(int row) {
+		return Emails.normalize(strings.get(records.get(row * STRIDE + EMAIL)));
+	}
+
+	private User view(int row) {
+		int at = row * STRIDE;
+		long birthDay = records.get(at + BIRTH_DAY);
+		return User.builder()
+				.id(records.get(at + ID))
+				.version(records.get(at + VERSION))
+				.email(strings.get(records.get(at + EMAIL)))
+				.firstName(strings.get(records.get(at + FIRST_NAME)))
+				.lastName(strings.get(records.get(at + LAST_NAME)))
+				.birthDate(birthDay == NO_DATE ? null : LocalDate.ofEpochDay(birthDay))
+				.address(strings.get(records.get(at + ADDRESS)))
+				.phoneNumber(strings.get(records.get(at + PHONE_NUMBER)))
+				.build();
+	}
+
+	/**
+	 * Reads the range one birth day at a time, each under the read lock, and
+	 * keeps the rows visible at the view's timestamp.
+	 */
+	private final class RangeIterator implements Iterator<User> {
+		private final ReadView view;
+		private final int firstDay;
+		private final long afterId;
+		private final int lastDay;
+		private final List<User> day = new ArrayList<>();
+		private int position;
+		private long nextDay;
+
+		RangeIterator(ReadView view, int firstDay, long afterId, int lastDay) {
+			this.view = view;
+			this.firstDay = firstDay;
+			this.afterId = afterId;
+			this.lastDay = lastDay;
+			this.nextDay = firstDay;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (position < day.size()) {
+				return true;
+			}
+			day.clear();
+			position = 0;
+			lock.readLock()
+					.lock();
+			try {
+				while (day.isEmpty() && nextDay <= lastDay) {
+					Map.Entry<Integer, Postings> entry = rowsByBirthDay.ceilingEntry((int) nextDay);
+					if (entry == null || entry.getKey() > lastDay) {
+						break;
+					}
+					Postings postings = entry.getValue();
+					for (int i = 0; i < postings.size; i++) {
+						int row = postings.rows[i];
+						if (records.get(row * STRIDE + CREATED) <= view.timestamp && records.get(row * STRIDE + DIED) > view.timestamp
+								&& (entry.getKey() != firstDay || records.get(row * STRIDE + ID) > afterId)) {
+							day.add(view(row));
+						}
+					}
+					nextDay = entry.getKey() + 1L;
+				}
+			} finally {
+				lock.readLock()
+						.unlock();
+			}
+			if (day.isEmpty()) {
+				nextDay = lastDay + 1L;
+				view.close();
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public User next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return day.get(position++);
+		}
+	}
+
+	/**
+	 * Rows born on one day, ordered by id. Rows of the same id, one alive and
+	 * some dead, may sit side by side.
+	 */
+	private static final class Postings {
+		private int[] rows = new int[2];
+		private int size;
+
+		void add(int row, LongStore records) {
+			int index = upperBound(records.get(row * STRIDE + ID), records);
+			if (size == rows.length) {
+				rows = Arrays.copyOf(rows, size * 2);
+			}
+			System.arraycopy(rows, index, rows, index + 1, size - index);
+			rows[index] = row;
+			size++;
+		}
+
+		void remove(int row, LongStore records) {
+			for (int index = lowerBound(records.get(row * STRIDE + ID), records); index < size; index++) {
+				if (rows[index] == row) {
+					System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+					size--;
+					return;
+				}
+			}
+		}
+
+		private int lowerBound(long id, LongStore records) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (records.get(rows[middle] * STRIDE + ID) < id) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		private int upperBound(long id, LongStore records) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (records.get(rows[middle] * STRIDE + ID) <= id) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Open-addressing table of live rows keyed by normalized email. Keys are
+	 * not stored: a probe compares hashes first and then the row's email.
+	 */
+	private final class EmailRows {
+		private int[] rows = newRows(1024);
+		private int[] hashes = new int[1024];
+		private int size;
+
+		int find(String key) {
+			int hash = key.hashCode();
+			int mask = rows.length - 1;
+			for (int slot = slotOf(hash, mask); rows[slot] != LongIntHashMap.ABSENT; slot = (slot + 1) & mask) {
+				if (hashes[slot] == hash && key.equals(emailKeyOf(rows[slot]))) {
+					return rows[slot];
+				}
+			}
+			return LongIntHashMap.ABSENT;
+		}
+
+		void put(String key, int row) {
+			int hash = key.hashCode();
+			int mask = rows.length - 1;
+			int slot = slotOf(hash, mask);
+			while (rows[slot] != LongIntHashMap.ABSENT) {
+				if (hashes[slot] == hash && key.equals(emailKeyOf(rows[slot]))) {
+					rows[slot] = row;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			rows[slot] = row;
+			hashes[slot] = hash;
+			if (++size > rows.length / 2) {
+				grow();
+			}
+		}
+
+		/**
+		 * Removes {@code key} if it still points at {@code row}.
+		 */
+		void remove(String key, int row) {
+			int mask = rows.length - 1;
+			int slot = slotOf(key.hashCode(), mask);
+			while (rows[slot] != LongIntHashMap.ABSENT && rows[slot] != row) {
+				slot = (slot + 1) & mask;
+			}
+			if (rows[slot] == LongIntHashMap.ABSENT) {
+				return;
+			}
+			size--;
+			int hole = slot;
+			for (int next = (hole + 1) & mask; rows[next] != LongIntHashMap.ABSENT; next = (next + 1) & mask) {
+				int home = slotOf(hashes[next], mask);
+				if (((next - home) & mask) >= ((next - hole) & mask)) {
+					rows[hole] = rows[next];
+					hashes[hole] = hashes[next];
+					hole = next;
+				}
+			}
+			rows[hole] = LongIntHashMap.ABSENT;
+		}
+
+		long estimatedBytes() {
+			return (long) rows.length * 2 * Integer.BYTES;
+		}
+
+		private void grow() {
+			int[] oldRows = rows;
+			int[] oldHashes = hashes;
+			rows = newRows(oldRows.length * 2);
+			hashes = new int[oldRows.length * 2];
+			int mask = rows.length - 1;
+			for (int i = 0; i < oldRows.length; i++) {
+				if (oldRows[i] != LongIntHashMap.ABSENT) {
+					int slot = slotOf(oldHashes[i], mask);
+					while (rows[slot] != LongIntHashMap.ABSENT) {
+						slot = (slot + 1) & mask;
+					}
+					rows[slot] = oldRows[i];
+					hashes[slot] = oldHashes[i];
+				}
+			}
+		}
+
+		private int slotOf(int hash, int mask) {
+			return (hash ^ (hash >>> 16)) & mask;
+		}
+
+		private int[] newRows(int capacity) {
+			int[] empty = new int[capacity];
+			Arrays.fill(empty, LongIntHashMap.ABSENT);
+			return empty;
+		}
+	}
+
+	private final class ReadView implements Comparable<ReadView> {
+		private final long timestamp;
+		private final long sequence;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		ReadView(long timestamp, long sequence) {
+			this.timestamp = timestamp;
+			this.sequence = sequence;
+		}
+
+		void close() {
+			if (closed.compareAndSet(false, true)) {
+				openViews.remove(this);
+			}
+		}
+
+		@Override
+		public int compareTo(ReadView other) {
+			int result = Long.compare(timestamp, other.timestamp);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+	}
+}
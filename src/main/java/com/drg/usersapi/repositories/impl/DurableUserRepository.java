@@ -0,0 +1,365 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.BirthDateCursor;
+import com.drg.usersapi.repositories.QueryPlan;
+import com.drg.usersapi.repositories.UserQuery;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.persistence.SnapshotFile;
+import com.drg.usersapi.repositories.persistence.UserRecordCodec;
+import com.drg.usersapi.repositories.persistence.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Makes another {@link UserRepository} durable by logging every write to a
+ * {@link WriteAheadLog} and periodically compacting the log into a snapshot.
+ * <p>
+ * Each log record is the full post-image of a user (or a delete marker), so
+ * replaying the tail of the log over a snapshot taken while writes were still
+ * running converges on the right state. Writes to the same id are applied and
+ * logged under one lock stripe to keep the log order equal to the apply order;
+ * waiting for the fsync happens outside the stripe. A write whose record
+ * cannot be appended is undone before the error is rethrown.
+ */
+public class DurableUserRepository implements UserRepository, Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DurableUserRepository.class);
+	private static final String SNAPSHOT_FILE = "snapshot.bin";
+	private static final int STRIPES = 64;
+
+	private final UserRepository delegate;
+	private final WriteAheadLog log;
+	private final Path snapshotPath;
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+	private final ScheduledExecutorService compactor;
+
+	public DurableUserRepository(UserRepository delegate, WriteAheadLog log, Path directory, long snapshotIntervalMillis) {
+		this.delegate = delegate;
+		this.log = log;
+		this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		recover();
+		compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "wal-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		compactor.scheduleWithFixedDelay(this::compactQuietly, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public User insert(User user) {
+		User stored = delegate.insert(user);
+		long seq = logInserted(stored);
+		if (seq >= 0) {
+			log.awaitDurable(seq);
+		}
+		return stored;
+	}
+
+	@Override
+	public List<User> insertAll(List<User> users) {
+		List<User> stored = delegate.insertAll(users);
+		long seq = -1;
+		for (User user : stored) {
+			if (user == null) {
+				continue;
+			}
+			seq = Math.max(seq, logInserted(user));
+		}
+		if (seq >= 0) {
+			log.awaitDurable(seq);
+		}
+		return stored;
+	}
+
+	@Override
+	public Optional<User> update(User user) {
+		long seq;
+		Optional<User> stored;
+		ReentrantLock stripe = stripeOf(user.getId());
+		stripe.lock();
+		try {
+			User previous = delegate.findById(user.getId())
+					.orElse(null);
+			stored = delegate.update(user);
+			if (stored.isEmpty()) {
+				return stored;
+			}
+			seq = appendOrUndo(user.getId(), previous, WriteAheadLog.OP_PUT, UserRecordCodec.encode(stored.get()));
+		} finally {
+			stripe.unlock();
+		}
+		log.awaitDurable(seq);
+		return stored;
+	}
+
+	@Override
+	public Optional<User> update(Long id, UnaryOperator<User> change) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		long seq;
+		Optional<User> stored;
+		ReentrantLock stripe = stripeOf(id);
+		stripe.lock();
+		try {
+			// The change may modify the user it is handed, so keep a copy to undo with
+			User[] previous = new User[1];
+			stored = delegate.update(id, current -> {
+				previous[0] = current.toBuilder()
+						.build();
+				return change.apply(current);
+			});
+			if (stored.isEmpty()) {
+				return stored;
+			}
+			seq = appendOrUndo(id, previous[0], WriteAheadLog.OP_PUT, UserRecordCodec.encode(stored.get()));
+		} finally {
+			stripe.unlock();
+		}
+		log.awaitDurable(seq);
+		return stored;
+	}
+
+	@Override
+	public User put(User user) {
+		long seq;
+		User stored;
+		ReentrantLock stripe = stripeOf(user.getId());
+		stripe.lock();
+		try {
+			User previous = delegate.findById(user.getId())
+					.orElse(null);
+			stored = delegate.put(user);
+			seq = appendOrUndo(user.getId(), previous, WriteAheadLog.OP_PUT, UserRecordCodec.encode(stored));
+		} finally {
+			stripe.unlock();
+		}
+		log.awaitDurable(seq);
+		return stored;
+	}
+
+	@Override
+	public void putAll(List<User> users) {
+		long seq = -1;
+		for (User user : users) {
+			ReentrantLock stripe = stripeOf(user.getId());
+			stripe.lock();
+			try {
+				User previous = delegate.findById(user.getId())
+						.orElse(null);
+				seq = appendOrUndo(user.getId(), previous, WriteAheadLog.OP_PUT, UserRecordCodec.encode(delegate.put(user)));
+			} finally {
+				stripe.unlock();
+			}
+		}
+		if (seq >= 0) {
+			log.awaitDurable(seq);
+		}
+	}
+
+	@Override
+	public Optional<User> findById(Long id) {
+		return delegate.findById(id);
+	}
+
+	@Override
+	public Optional<User> findByEmail(String email) {
+		return delegate.findByEmail(email);
+	}
+
+	@Override
+	public boolean delete(Long id) {
+		if (id == null) {
+			return false;
+		}
+		long seq;
+		ReentrantLock stripe = stripeOf(id);
+		stripe.lock();
+		try {
+			User previous = delegate.findById(id)
+					.orElse(null);
+			if (previous == null || !delegate.delete(id)) {
+				return false;
+			}
+			seq = appendOrUndo(id, previous, WriteAheadLog.OP_DELETE, ByteBuffer.allocate(Long.BYTES)
+					.putLong(id)
+					.array());
+		} finally {
+			stripe.unlock();
+		}
+		log.awaitDurable(seq);
+		return true;
+	}
+
+	@Override
+	public List<User> findByBirthDateRange(LocalDate from, LocalDate to) {
+		return delegate.findByBirthDateRange(from, to);
+	}
+
+	@Override
+	public Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to, BirthDateCursor after) {
+		return delegate.streamByBirthDateRange(from, to, after);
+	}
+
+	@Override
+	public Stream<User> streamByUpcomingBirthday(LocalDate from, int days) {
+		return delegate.streamByUpcomingBirthday(from, days);
+	}
+
+	@Override
+	public List<User> searchByName(String name, int limit) {
+		return delegate.searchByName(name, limit);
+	}
+
+	@Override
+	public QueryPlan explain(UserQuery query) {
+		return delegate.explain(query);
+	}
+
+	@Override
+	public Stream<User> find(UserQuery query) {
+		return delegate.find(query);
+	}
+
+	@Override
+	public long countByBirthDateRange(LocalDate from, LocalDate to) {
+		return delegate.countByBirthDateRange(from, to);
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByBirthYear() {
+		return delegate.countByBirthYear();
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByAge(LocalDate date) {
+		return delegate.countByAge(date);
+	}
+
+	@Override
+	public Stream<User> findAll() {
+		return delegate.findAll();
+	}
+
+	@Override
+	public long count() {
+		return delegate.count();
+	}
+
+	/**
+	 * Writes a snapshot of the current state and drops the log segments it
+	 * makes redundant.
+	 */
+	public void compact() throws IOException {
+		long seq = log.roll();
+		try (Stream<User> users = delegate.findAll()) {
+			SnapshotFile.write(snapshotPath, seq, users);
+		}
+		log.deleteSegmentsBefore(seq);
+		LOGGER.debug("Compacted user store into snapshot at sequence {}", seq);
+	}
+
+	@Override
+	public void close() throws IOException {
+		compactor.shutdown();
+		try {
+			compactor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+		}
+		log.close();
+		if (delegate instanceof Closeable) {
+			((Closeable) delegate).close();
+		}
+	}
+
+	private void recover() {
+		try {
+			long seq = SnapshotFile.read(snapshotPath, delegate::put);
+			log.open(seq, (recordSeq, op, payload) -> {
+				if (op == WriteAheadLog.OP_PUT) {
+					delegate.put(UserRecordCodec.decode(payload));
+				} else if (op == WriteAheadLog.OP_DELETE) {
+					delegate.delete(payload.getLong());
+				}
+			});
+			LOGGER.info("Recovered {} users from {}", delegate.count(), snapshotPath.getParent());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void compactQuietly() {
+		try {
+			compact();
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Error compacting user store: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Logs a freshly inserted user under its stripe. The store assigns the id,
+	 * so the id is visible before its stripe can be taken and an update or
+	 * delete of it may have been logged in between; logging what the store
+	 * holds now keeps the last record of the id equal to its state.
+	 *
+	 * @return the sequence to wait for, or -1 if the user is already deleted
+	 */
+	private long logInserted(User stored) {
+		ReentrantLock stripe = stripeOf(stored.getId());
+		stripe.lock();
+		try {
+			Optional<User> current = delegate.findById(stored.getId());
+			if (current.isEmpty()) {
+				return -1;
+			}
+			return appendOrUndo(stored.getId(), null, WriteAheadLog.OP_PUT, UserRecordCodec.encode(current.get()));
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Appends the record of a write already applied to the store. If the
+	 * append fails the write is undone, restoring {@code previous} or removing
+	 * the user if there was none, so the store never keeps a write the log
+	 * lost.
+	 */
+	private long appendOrUndo(long id, User previous, byte op, byte[] payload) {
+		try {
+			return log.append(op, payload);
+		} catch (RuntimeException e) {
+			if (previous == null) {
+				delegate.delete(id);
+			} else {
+				delegate.put(previous);
+			}
+			throw e;
+		}
+	}
+
+	private ReentrantLock stripeOf(long id) {
+		return stripes[Long.hashCode(id) & (STRIPES - 1)];
+	}
+}
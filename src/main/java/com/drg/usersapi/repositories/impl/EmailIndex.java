@@ -0,0 +1,77 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.repositories.Emails;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids keyed by {@link Emails#normalize(String) normalized} email. Claiming an
+ * email is a single {@code putIfAbsent}, so two writers racing for the same
+ * email cannot both win, and lookups are one hash probe.
+ */
+final class EmailIndex {
+	private final ConcurrentHashMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
+
+	/**
+	 * Replaces {@code previous} by {@code next} in the index. Either may be
+	 * {@code null}. Writes to the same id must not run concurrently; the
+	 * caller holds the id's lock and calls this before touching anything
+	 * else, so a rejected write leaves the store unchanged.
+	 *
+	 * @throws DuplicateEmailException if another user holds the email of
+	 * {@code next}
+	 */
+	void publish(User previous, User next) {
+		String previousKey = keyOf(previous);
+		String nextKey = keyOf(next);
+		if (nextKey != null && !nextKey.equals(previousKey)) {
+			claim(nextKey, next.getId());
+		}
+		if (previousKey != null && !previousKey.equals(nextKey)) {
+			idsByEmail.remove(previousKey, previous.getId());
+		}
+	}
+
+	/**
+	 * Claims the email of a user that is about to be inserted under a fresh
+	 * id, before the user becomes visible.
+	 *
+	 * @throws DuplicateEmailException if another user holds the email
+	 */
+	void reserve(User user) {
+		String key = keyOf(user);
+		if (key != null) {
+			claim(key, user.getId());
+		}
+	}
+
+	/**
+	 * Points the email of {@code user} at it, whoever held it before. Used
+	 * when rebuilding a store from persisted state, which is trusted as is.
+	 */
+	void assign(User user) {
+		String key = keyOf(user);
+		if (key != null) {
+			idsByEmail.put(key, user.getId());
+		}
+	}
+
+	Long idOf(String email) {
+		String key = Emails.normalize(email);
+		return key == null ? null : idsByEmail.get(key);
+	}
+
+	private void claim(String key, Long id) {
+		Long owner = idsByEmail.putIfAbsent(key, id);
+		if (owner != null && !Objects.equals(owner, id)) {
+			throw new DuplicateEmailException("User with email " + key + " already exists");
+		}
+	}
+
+	private static String keyOf(User user) {
+		return user == null ? null : Emails.normalize(user.getEmail());
+	}
+}
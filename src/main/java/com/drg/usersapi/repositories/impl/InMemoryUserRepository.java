@@ -0,0 +1,379 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.BirthDateCursor;
+import com.drg.usersapi.repositories.Emails;
+import com.drg.usersapi.repositories.NameSearch;
+import com.drg.usersapi.repositories.QueryPlan;
+import com.drg.usersapi.repositories.UserQuery;
+import com.drg.usersapi.repositories.UserRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Heap-resident user store.
+ * <p>
+ * Users live in a {@link ConcurrentHashMap} keyed by id, and a
+ * {@link BirthDateIndex} keyed by (epoch day, id) serves range scans in
+ * O(log n + k), each from a consistent snapshot. {@link BirthDateCounts}
+ * answers range counts in O(log n) and {@link BirthdayIndex} upcoming
+ * birthdays in O(days + k). {@link EmailIndex} looks users up by email in
+ * O(1) and keeps emails unique, and {@link NameIndex} serves name searches
+ * from trigram posting lists. Multi-predicate queries are driven by
+ * whichever of these indexes promises the fewest candidates. Writes to the
+ * same id are serialized by the id map's {@code compute} methods, which also
+ * keep the indexes and counts in step; reads take no locks at all.
+ * <p>
+ * Stored instances are never mutated once published, so every write swaps
+ * in a new immutable version. Read-modify-write updates apply their change
+ * outside any lock and publish it with a compare-and-set on the version they
+ * read, retrying a bounded number of times before falling back to applying
+ * the change under the id's map lock.
+ */
+public class InMemoryUserRepository implements UserRepository {
+	private static final int MAX_OPTIMISTIC_ATTEMPTS = 8;
+
+	private final ConcurrentHashMap<Long, User> usersById = new ConcurrentHashMap<>();
+	private final BirthDateIndex usersByBirthDate = new BirthDateIndex();
+	private final BirthDateCounts birthDateCounts = new BirthDateCounts();
+	private final BirthdayIndex usersByBirthday = new BirthdayIndex();
+	private final EmailIndex idsByEmail;
+	private final NameIndex usersByName = new NameIndex();
+	private final AtomicLong idSequence = new AtomicLong();
+
+	public InMemoryUserRepository() {
+		this(new EmailIndex());
+	}
+
+	/**
+	 * Creates a store that keeps emails unique across every store sharing
+	 * {@code idsByEmail}.
+	 */
+	InMemoryUserRepository(EmailIndex idsByEmail) {
+		this.idsByEmail = idsByEmail;
+	}
+
+	@Override
+	public User insert(User user) {
+		return insert(user, idSequence.incrementAndGet());
+	}
+
+	/**
+	 * Inserts the user under an id generated by the caller, which must not be
+	 * in use.
+	 */
+	User insert(User user, long id) {
+		User stored = user.toBuilder()
+				.id(id)
+				.version(1)
+				.build();
+		idsByEmail.reserve(stored);
+		usersById.compute(id, (key, previous) -> {
+			reindex(previous, stored);
+			return stored;
+		});
+		return copy(stored);
+	}
+
+	@Override
+	public Optional<User> update(User user) {
+		User result = usersById.computeIfPresent(user.getId(), (key, previous) -> {
+			User stored = user.toBuilder()
+					.version(previous.getVersion() + 1)
+					.build();
+			reindex(previous, stored);
+			return stored;
+		});
+		return Optional.ofNullable(result)
+				.map(InMemoryUserRepository::copy);
+	}
+
+	@Override
+	public Optional<User> update(Long id, UnaryOperator<User> change) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		for (int attempt = 0; attempt < MAX_OPTIMISTIC_ATTEMPTS; attempt++) {
+			User current = usersById.get(id);
+			if (current == null) {
+				return Optional.empty();
+			}
+			User next = apply(change, current);
+			if (replace(current, next)) {
+				return Optional.of(copy(next));
+			}
+		}
+		// The id is too hot for optimistic updates to make progress
+		User[] stored = new User[1];
+		usersById.computeIfPresent(id, (key, previous) -> {
+			User next = apply(change, previous);
+			reindex(previous, next);
+			stored[0] = next;
+			return next;
+		});
+		return Optional.ofNullable(stored[0])
+				.map(InMemoryUserRepository::copy);
+	}
+
+	@Override
+	public User put(User user) {
+		User stored = user.toBuilder()
+				.build();
+		idSequence.accumulateAndGet(stored.getId(), Math::max);
+		idsByEmail.assign(stored);
+		usersById.compute(stored.getId(), (key, previous) -> {
+			reindex(previous, stored);
+			return stored;
+		});
+		return copy(stored);
+	}
+
+	@Override
+	public Optional<User> findById(Long id) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(usersById.get(id))
+				.map(InMemoryUserRepository::copy);
+	}
+
+	@Override
+	public Optional<User> findByEmail(String email) {
+		Long id = idsByEmail.idOf(email);
+		if (id == null) {
+			return Optional.empty();
+		}
+		// The email may have moved on since it was looked up
+		return Optional.ofNullable(usersById.get(id))
+				.filter(user -> Emails.normalize(email)
+						.equals(Emails.normalize(user.getEmail())))
+				.map(InMemoryUserRepository::copy);
+	}
+
+	@Override
+	public boolean delete(Long id) {
+		if (id == null) {
+			return false;
+		}
+		boolean[] removed = new boolean[1];
+		usersById.computeIfPresent(id, (key, previous) -> {
+			reindex(previous, null);
+			removed[0] = true;
+			return null;
+		});
+		return removed[0];
+	}
+
+	@Override
+	public Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to, BirthDateCursor after) {
+		BirthDateKey lower = BirthDateKey.lowest(from.toEpochDay());
+		BirthDateKey upper = BirthDateKey.highest(to.toEpochDay());
+		boolean lowerInclusive = true;
+		if (after != null) {
+			BirthDateKey cursor = new BirthDateKey(after.getEpochDay(), after.getId());
+			if (cursor.compareTo(lower) >= 0) {
+				lower = cursor;
+				lowerInclusive = false;
+			}
+		}
+		if (lower.compareTo(upper) > 0) {
+			return Stream.empty();
+		}
+		return usersByBirthDate.range(lower, lowerInclusive, upper)
+				.map(InMemoryUserRepository::copy);
+	}
+
+	@Override
+	public Stream<User> streamByUpcomingBirthday(LocalDate from, int days) {
+		return usersByBirthday.upcoming(from, days)
+				.map(InMemoryUserRepository::copy);
+	}
+
+	@Override
+	public List<User> searchByName(String name, int limit) {
+		String[] query = NameSearch.words(name);
+		if (query.length == 0) {
+			return List.of();
+		}
+		return usersByName.search(query, limit, usersById::get)
+				.stream()
+				.map(InMemoryUserRepository::copy)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public QueryPlan explain(UserQuery query) {
+		return plan(query);
+	}
+
+	@Override
+	public Stream<User> find(UserQuery query) {
+		QueryPlan plan = plan(query);
+		Stream<User> candidates;
+		switch (plan.getAccessPath()) {
+		case EMAIL_HASH:
+			candidates = findByEmail(query.getEmail()).stream();
+			break;
+		case BIRTH_DATE_RANGE:
+			candidates = streamByBirthDateRange(query.getBirthDateFrom(), query.getBirthDateTo());
+			break;
+		case NAME_TRIGRAM:
+			candidates = usersByName.ids(lastNameGrams(query))
+					.mapToObj(usersById::get)
+					.filter(Objects::nonNull)
+					.map(InMemoryUserRepository::copy);
+			break;
+		default:
+			candidates = findAll();
+		}
+		return candidates.filter(query::matches);
+	}
+
+	/**
+	 * Picks the access path with the fewest candidates, each counted exactly
+	 * or bounded from above without touching a single user: an email matches
+	 * at most one user, a birth-date range is counted by
+	 * {@link BirthDateCounts} and a last-name prefix is bounded by its
+	 * shortest trigram posting list.
+	 */
+	private QueryPlan plan(UserQuery query) {
+		long total = usersById.size();
+		QueryPlan.AccessPath path = QueryPlan.AccessPath.FULL_SCAN;
+		long rows = total;
+		String driving = null;
+		double selectivity = 1;
+		if (query.getEmail() != null) {
+			long emailRows = idsByEmail.idOf(query.getEmail()) == null ? 0 : 1;
+			selectivity *= fraction(emailRows, total);
+			if (emailRows < rows) {
+				path = QueryPlan.AccessPath.EMAIL_HASH;
+				rows = emailRows;
+				driving = query.emailPredicate();
+			}
+		}
+		if (query.hasBirthDateRange()) {
+			long rangeRows = birthDateCounts.count(query.getBirthDateFrom(), query.getBirthDateTo());
+			selectivity *= fraction(rangeRows, total);
+			if (rangeRows < rows) {
+				path = QueryPlan.AccessPath.BIRTH_DATE_RANGE;
+				rows = rangeRows;
+				driving = query.birthDatePredicate();
+			}
+		}
+		long[] lastNameGrams = lastNameGrams(query);
+		if (lastNameGrams.length > 0) {
+			long nameRows = usersByName.estimate(lastNameGrams);
+			selectivity *= fraction(nameRows, total);
+			if (nameRows < rows) {
+				path = QueryPlan.AccessPath.NAME_TRIGRAM;
+				rows = nameRows;
+				// Trigrams narrow the candidates down but do not prove a match
+				driving = null;
+			}
+		}
+		List<String> filters = new ArrayList<>(query.predicates());
+		filters.remove(driving);
+		return new QueryPlan(path, rows, Math.min(rows, Math.round(total * selectivity)), filters);
+	}
+
+	/**
+	 * @return the trigrams of the first word of the last-name prefix, or none
+	 */
+	private static long[] lastNameGrams(UserQuery query) {
+		String[] words = NameSearch.words(query.getLastNamePrefix());
+		return words.length == 0 ? new long[0] : NameIndex.prefixGrams(words[0]);
+	}
+
+	private static double fraction(long rows, long total) {
+		return total == 0 ? 0 : (double) rows / total;
+	}
+
+	/**
+	 * @return an estimate of the heap taken by the name index
+	 */
+	public long nameIndexBytes() {
+		return usersByName.estimatedBytes();
+	}
+
+	@Override
+	public long countByBirthDateRange(LocalDate from, LocalDate to) {
+		return birthDateCounts.count(from, to);
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByBirthYear() {
+		return birthDateCounts.countByYear();
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByAge(LocalDate date) {
+		return birthDateCounts.countByAge(date);
+	}
+
+	@Override
+	public Stream<User> findAll() {
+		return usersById.values()
+				.stream()
+				.map(InMemoryUserRepository::copy);
+	}
+
+	@Override
+	public long count() {
+		return usersById.size();
+	}
+
+	/**
+	 * Moves the user from {@code previous} to {@code next} in the indexes and
+	 * counts; runs under the id's lock. The email goes first: a duplicate
+	 * aborts the write before any other index has changed.
+	 */
+	private void reindex(User previous, User next) {
+		idsByEmail.publish(previous, next);
+		usersByBirthDate.publish(previous, next);
+		usersByName.publish(previous, next);
+		usersByBirthday.publish(previous, next);
+		if (previous != null && previous.getBirthDate() != null) {
+			birthDateCounts.add(previous.getBirthDate(), -1);
+		}
+		if (next != null && next.getBirthDate() != null) {
+			birthDateCounts.add(next.getBirthDate(), 1);
+		}
+	}
+
+	/**
+	 * Swaps {@code next} in if {@code expected} is still the current version
+	 * of its id.
+	 */
+	private boolean replace(User expected, User next) {
+		return usersById.computeIfPresent(expected.getId(), (key, previous) -> {
+			if (previous != expected) {
+				return previous;
+			}
+			reindex(previous, next);
+			return next;
+		}) == next;
+	}
+
+	private static User apply(UnaryOperator<User> change, User current) {
+		return change.apply(copy(current))
+				.toBuilder()
+				.id(current.getId())
+				.version(current.getVersion() + 1)
+				.build();
+	}
+
+	private static User copy(User user) {
+		return user.toBuilder()
+				.build();
+	}
+}
@@ -0,0 +1,113 @@
+package com.drg.usersapi.repositories.impl;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code long} keys to non-negative {@code int}
+ * values, without boxing: 12 bytes a slot and no object per entry. Removal
+ * shifts the following entries back, so there are no tombstones to clean up.
+ * <p>
+ * Not thread-safe; the owner serializes writes against reads.
+ */
+final class LongIntHashMap {
+	static final int ABSENT = -1;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+
+	LongIntHashMap() {
+		keys = new long[1024];
+		values = new int[1024];
+		Arrays.fill(values, ABSENT);
+	}
+
+	/**
+	 * @return the value of {@code key}, or {@link #ABSENT}
+	 */
+	int get(long key) {
+		int mask = keys.length - 1;
+		for (int slot = slotOf(key, mask); values[slot] != ABSENT; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+		}
+		return ABSENT;
+	}
+
+	void put(long key, int value) {
+		int mask = keys.length - 1;
+		int slot = slotOf(key, mask);
+		while (values[slot] != ABSENT) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > keys.length / 4 * 3) {
+			grow();
+		}
+	}
+
+	/**
+	 * @return the value {@code key} had, or {@link #ABSENT}
+	 */
+	int remove(long key) {
+		int mask = keys.length - 1;
+		int slot = slotOf(key, mask);
+		while (values[slot] != ABSENT && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		int removed = values[slot];
+		if (removed == ABSENT) {
+			return ABSENT;
+		}
+		size--;
+		// Pull back every later entry of the run that may no longer be reachable
+		int hole = slot;
+		for (int next = (hole + 1) & mask; values[next] != ABSENT; next = (next + 1) & mask) {
+			int home = slotOf(keys[next], mask);
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+		}
+		values[hole] = ABSENT;
+		return removed;
+	}
+
+	int size() {
+		return size;
+	}
+
+	long estimatedBytes() {
+		return (long) keys.length * (Long.BYTES + Integer.BYTES);
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		Arrays.fill(values, ABSENT);
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != ABSENT) {
+				int slot = slotOf(oldKeys[i], mask);
+				while (values[slot] != ABSENT) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static int slotOf(long key, int mask) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+}
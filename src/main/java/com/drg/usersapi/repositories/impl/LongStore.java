@@ -0,0 +1,126 @@
+package com.drg.usersapi.repositories.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Growable array of {@code long}s, either on the heap or in a
+ * {@link MappedFile}. Not thread-safe; the owner serializes writes against
+ * reads.
+ */
+interface LongStore extends Closeable {
+	long get(int index);
+
+	void set(int index, long value);
+
+	/**
+	 * Makes room for at least {@code length} values; new values are 0.
+	 */
+	void ensureCapacity(int length);
+
+	/**
+	 * @return the heap taken by the values
+	 */
+	long heapBytes();
+
+	/**
+	 * @return the bytes of file mapped for the values
+	 */
+	long mappedBytes();
+
+	static LongStore onHeap(int initialLength) {
+		return new Heap(initialLength);
+	}
+
+	static LongStore mapped(Path path) {
+		return new Mapped(new MappedFile(path, Mapped.SEGMENT_SIZE));
+	}
+
+	final class Heap implements LongStore {
+		private long[] values;
+
+		Heap(int initialLength) {
+			values = new long[initialLength];
+		}
+
+		@Override
+		public long get(int index) {
+			return values[index];
+		}
+
+		@Override
+		public void set(int index, long value) {
+			values[index] = value;
+		}
+
+		@Override
+		public void ensureCapacity(int length) {
+			if (length > values.length) {
+				values = Arrays.copyOf(values, Math.max(length, values.length * 2));
+			}
+		}
+
+		@Override
+		public long heapBytes() {
+			return (long) values.length * Long.BYTES;
+		}
+
+		@Override
+		public long mappedBytes() {
+			return 0;
+		}
+
+		@Override
+		public void close() {
+			values = new long[0];
+		}
+	}
+
+	final class Mapped implements LongStore {
+		private static final int SEGMENT_SHIFT = 23;
+		private static final int SEGMENT_SIZE = Long.BYTES << SEGMENT_SHIFT;
+		private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+		private final MappedFile file;
+
+		Mapped(MappedFile file) {
+			this.file = file;
+		}
+
+		@Override
+		public long get(int index) {
+			return file.segment(index >>> SEGMENT_SHIFT)
+					.getLong((index & SEGMENT_MASK) << 3);
+		}
+
+		@Override
+		public void set(int index, long value) {
+			file.segment(index >>> SEGMENT_SHIFT)
+					.putLong((index & SEGMENT_MASK) << 3, value);
+		}
+
+		@Override
+		public void ensureCapacity(int length) {
+			if (length > 0) {
+				file.segment((length - 1) >>> SEGMENT_SHIFT);
+			}
+		}
+
+		@Override
+		public long heapBytes() {
+			return 0;
+		}
+
+		@Override
+		public long mappedBytes() {
+			return file.mappedBytes();
+		}
+
+		@Override
+		public void close() throws IOException {
+			file.close();
+		}
+	}
+}
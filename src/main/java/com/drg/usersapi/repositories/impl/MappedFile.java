@@ -0,0 +1,70 @@
+package com.drg.usersapi.repositories.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scratch file mapped into memory in fixed-size segments, each mapped, and
+ * the file grown, the first time it is used. Pages are loaded and written
+ * back by the operating system, so only the touched part of the file takes
+ * memory. The file starts empty and is deleted on close; it is not meant to
+ * outlive the process.
+ */
+final class MappedFile implements Closeable {
+	private final Path path;
+	private final FileChannel channel;
+	private final int segmentSize;
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+	MappedFile(Path path, int segmentSize) {
+		this.path = path;
+		this.segmentSize = segmentSize;
+		try {
+			Files.createDirectories(path.getParent());
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	int segmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * @return the segment at {@code index}; absolute reads and writes only, as
+	 * the buffer is shared
+	 */
+	ByteBuffer segment(int index) {
+		while (segments.size() <= index) {
+			try {
+				segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return segments.get(index);
+	}
+
+	long mappedBytes() {
+		return (long) segments.size() * segmentSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// Mappings are released once the buffers are collected
+		segments.clear();
+		channel.close();
+		Files.deleteIfExists(path);
+	}
+}
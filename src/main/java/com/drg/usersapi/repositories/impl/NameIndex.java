@@ -0,0 +1,268 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.NameSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Trigram index over first and last names for {@link NameSearch}.
+ * <p>
+ * Every name word is padded with two boundary characters in front and split
+ * into the three-character grams it contains, each packed into a long. A gram
+ * maps to a posting list: the ids of the users having it, as a sorted
+ * primitive array. A query looks up the grams of its words, walks the
+ * shortest of their posting lists, keeps the ids found in all the others and
+ * checks those against the stored user, so the cost depends on how selective
+ * the query is, not on the number of users.
+ * <p>
+ * Posting lists change under their own monitor and readers copy the one they
+ * need, so a search that runs while a user is renamed may miss them or see
+ * them under the old name, but never fails.
+ */
+final class NameIndex {
+	// Map node, boxed key and posting object, on top of the id array
+	private static final int POSTING_OVERHEAD_BYTES = 32 + 16 + 24 + 16;
+
+	private final ConcurrentHashMap<Long, Postings> postingsByGram = new ConcurrentHashMap<>();
+
+	/**
+	 * Replaces {@code previous} by {@code next} in the index. Either may be
+	 * {@code null}. Writes to the same id must not run concurrently; the
+	 * caller holds the id's lock.
+	 */
+	void publish(User previous, User next) {
+		Set<Long> previousGrams = previous == null ? Set.of() : grams(previous);
+		Set<Long> nextGrams = next == null ? Set.of() : grams(next);
+		for (Long gram : previousGrams) {
+			if (!nextGrams.contains(gram)) {
+				Postings postings = postingsByGram.get(gram);
+				if (postings != null) {
+					postings.remove(previous.getId());
+				}
+			}
+		}
+		for (Long gram : nextGrams) {
+			if (!previousGrams.contains(gram)) {
+				postingsByGram.computeIfAbsent(gram, key -> new Postings())
+						.add(next.getId());
+			}
+		}
+	}
+
+	/**
+	 * Returns at most {@code limit} users matching {@code query}, ranked as
+	 * {@link NameSearch#top(Stream, String[], int)} does, reading the stored
+	 * users through {@code users}.
+	 */
+	List<User> search(String[] query, int limit, LongFunction<User> users) {
+		LongStream.Builder grams = LongStream.builder();
+		for (String word : query) {
+			for (long gram : queryGrams(word)) {
+				grams.add(gram);
+			}
+		}
+		Stream<User> candidates = ids(grams.build()
+				.toArray()).mapToObj(users)
+				.filter(Objects::nonNull);
+		return NameSearch.top(candidates, query, limit);
+	}
+
+	/**
+	 * @return the grams every name word starting with {@code word} has
+	 */
+	static long[] prefixGrams(String word) {
+		long[] grams = new long[word.length()];
+		char first = 0;
+		char second = 0;
+		for (int i = 0; i < word.length(); i++) {
+			char third = word.charAt(i);
+			grams[i] = gram(first, second, third);
+			first = second;
+			second = third;
+		}
+		return grams;
+	}
+
+	/**
+	 * @return an upper bound on the number of users having all the
+	 * {@code grams}: the length of the shortest of their posting lists
+	 */
+	int estimate(long[] grams) {
+		int estimate = Integer.MAX_VALUE;
+		for (long gram : grams) {
+			Postings postings = postingsByGram.get(gram);
+			estimate = Math.min(estimate, postings == null ? 0 : postings.size());
+		}
+		return grams.length == 0 ? 0 : estimate;
+	}
+
+	/**
+	 * Streams, in ascending order, the ids of the users having all the
+	 * {@code grams}.
+	 */
+	LongStream ids(long[] grams) {
+		List<Postings> lists = new ArrayList<>();
+		for (long gram : grams) {
+			Postings postings = postingsByGram.get(gram);
+			if (postings == null) {
+				return LongStream.empty();
+			}
+			lists.add(postings);
+		}
+		if (lists.isEmpty()) {
+			return LongStream.empty();
+		}
+		lists.sort(Comparator.comparingInt(Postings::size));
+		List<Postings> others = lists.subList(1, lists.size());
+		return Arrays.stream(lists.get(0)
+						.toArray())
+				.filter(id -> others.stream()
+						.allMatch(postings -> postings.contains(id)));
+	}
+
+	/**
+	 * @return an estimate of the heap taken by the index
+	 */
+	long estimatedBytes() {
+		long bytes = 0;
+		for (Postings postings : postingsByGram.values()) {
+			bytes += POSTING_OVERHEAD_BYTES + (long) Long.BYTES * postings.capacity();
+		}
+		return bytes;
+	}
+
+	private static Set<Long> grams(User user) {
+		Set<Long> grams = new HashSet<>();
+		for (String word : NameSearch.words(user)) {
+			for (long gram : prefixGrams(word)) {
+				grams.add(gram);
+			}
+		}
+		return grams;
+	}
+
+	/**
+	 * @return the grams every name word matching {@code word} has
+	 */
+	private static long[] queryGrams(String word) {
+		if (word.length() < NameSearch.MIN_INFIX_LENGTH) {
+			// Short words only match at the start of a name word
+			return word.length() == 1 ? new long[] { gram((char) 0, (char) 0, word.charAt(0)) }
+					: new long[] { gram((char) 0, word.charAt(0), word.charAt(1)) };
+		}
+		long[] grams = new long[word.length() - 2];
+		for (int i = 0; i < grams.length; i++) {
+			grams[i] = gram(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2));
+		}
+		return grams;
+	}
+
+	private static long gram(char first, char second, char third) {
+		return (long) first << 32 | (long) second << 16 | third;
+	}
+
+	/**
+	 * Ids in ascending order. New users get the highest id so far, which
+	 * makes adding them an append. Ids arriving out of order, as when users
+	 * are restored in birth date order, wait unsorted in a pending buffer
+	 * that is merged in one pass once it holds an eighth of the list, or
+	 * before the list is read, instead of each shifting the array.
+	 */
+	private static final class Postings {
+		private static final int MIN_PENDING = 16;
+
+		private long[] ids = new long[2];
+		private int size;
+		private long[] pending;
+		private int pendingSize;
+
+		synchronized void add(long id) {
+			if (size == 0 || id > ids[size - 1]) {
+				if (size == ids.length) {
+					ids = Arrays.copyOf(ids, size * 2);
+				}
+				ids[size++] = id;
+				return;
+			}
+			if (Arrays.binarySearch(ids, 0, size, id) >= 0) {
+				return;
+			}
+			if (pending == null) {
+				pending = new long[MIN_PENDING];
+			} else if (pendingSize == pending.length) {
+				pending = Arrays.copyOf(pending, pendingSize * 2);
+			}
+			pending[pendingSize++] = id;
+			if (pendingSize >= Math.max(MIN_PENDING, size >> 3)) {
+				merge();
+			}
+		}
+
+		synchronized void remove(long id) {
+			merge();
+			int index = Arrays.binarySearch(ids, 0, size, id);
+			if (index < 0) {
+				return;
+			}
+			System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+			size--;
+			if (size > 2 && size < ids.length / 4) {
+				ids = Arrays.copyOf(ids, ids.length / 2);
+			}
+		}
+
+		synchronized boolean contains(long id) {
+			merge();
+			return Arrays.binarySearch(ids, 0, size, id) >= 0;
+		}
+
+		synchronized int size() {
+			return size + pendingSize;
+		}
+
+		synchronized int capacity() {
+			return ids.length + (pending == null ? 0 : pending.length);
+		}
+
+		synchronized long[] toArray() {
+			merge();
+			return Arrays.copyOf(ids, size);
+		}
+
+		private void merge() {
+			if (pendingSize == 0) {
+				return;
+			}
+			Arrays.sort(pending, 0, pendingSize);
+			int capacity = ids.length;
+			while (capacity < size + pendingSize) {
+				capacity *= 2;
+			}
+			long[] merged = new long[capacity];
+			int count = 0;
+			int i = 0;
+			int j = 0;
+			while (i < size || j < pendingSize) {
+				long id = j == pendingSize || i < size && ids[i] <= pending[j] ? ids[i++] : pending[j++];
+				// The same id may have been added twice while pending
+				if (count == 0 || merged[count - 1] != id) {
+					merged[count++] = id;
+				}
+			}
+			ids = merged;
+			size = count;
+			pendingSize = 0;
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.BirthDateCursor;
+import com.drg.usersapi.repositories.Birthdays;
+import com.drg.usersapi.repositories.NameSearch;
+import com.drg.usersapi.repositories.QueryPlan;
+import com.drg.usersapi.repositories.UserQuery;
+import com.drg.usersapi.repositories.UserRepository;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Heap-resident user store split into {@link InMemoryUserRepository} shards
+ * by a hash of the id, so that writers to different users rarely meet on the
+ * same map bins, index nodes or counters.
+ * <p>
+ * Ids come from one sequence and every operation on a single id is routed to
+ * its shard. The shards share one {@link EmailIndex}, which keeps emails
+ * unique across all of them. Searches and counts fan out to every shard:
+ * whole-range reads run the shards in parallel on a fork-join pool, and
+ * results ordered by birth date, birthday or rank are k-way merged, so
+ * pagination sees the same order as with a single store.
+ * <p>
+ * Each shard serves its part of a stream from its own snapshot; the shards'
+ * snapshots are taken one after the other, not atomically together.
+ */
+public class ShardedUserRepository implements UserRepository, Closeable {
+	private static final Comparator<User> BY_BIRTH_DATE = Comparator.comparing(User::getBirthDate)
+			.thenComparing(User::getId);
+
+	private final InMemoryUserRepository[] shards;
+	private final EmailIndex idsByEmail = new EmailIndex();
+	private final AtomicLong idSequence = new AtomicLong();
+	private final ForkJoinPool pool;
+
+	public ShardedUserRepository(int shardCount) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+		}
+		shards = new InMemoryUserRepository[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = new InMemoryUserRepository(idsByEmail);
+		}
+		pool = new ForkJoinPool(Math.min(shardCount, Runtime.getRuntime()
+				.availableProcessors()));
+	}
+
+	public int shardCount() {
+		return shards.length;
+	}
+
+	@Override
+	public User insert(User user) {
+		long id = idSequence.incrementAndGet();
+		return shardOf(id).insert(user, id);
+	}
+
+	@Override
+	public Optional<User> update(User user) {
+		if (user.getId() == null) {
+			return Optional.empty();
+		}
+		return shardOf(user.getId()).update(user);
+	}
+
+	@Override
+	public Optional<User> update(Long id, UnaryOperator<User> change) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		return shardOf(id).update(id, change);
+	}
+
+	@Override
+	public User put(User user) {
+		idSequence.accumulateAndGet(user.getId(), Math::max);
+		return shardOf(user.getId()).put(user);
+	}
+
+	@Override
+	public Optional<User> findById(Long id) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		return shardOf(id).findById(id);
+	}
+
+	@Override
+	public Optional<User> findByEmail(String email) {
+		// The shared index knows the id, and with it the shard
+		Long id = idsByEmail.idOf(email);
+		return id == null ? Optional.empty() : shardOf(id).findByEmail(email);
+	}
+
+	@Override
+	public boolean delete(Long id) {
+		if (id == null) {
+			return false;
+		}
+		return shardOf(id).delete(id);
+	}
+
+	@Override
+	public List<User> findByBirthDateRange(LocalDate from, LocalDate to) {
+		List<List<User>> parts = fanOut(shard -> shard.findByBirthDateRange(from, to));
+		return SortedStreams.merge(parts.stream()
+				.map(List::stream)
+				.collect(Collectors.toList()), BY_BIRTH_DATE).collect(Collectors.toList());
+	}
+
+	@Override
+	public Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to, BirthDateCursor after) {
+		return SortedStreams.merge(Arrays.stream(shards)
+				.map(shard -> shard.streamByBirthDateRange(from, to, after))
+				.collect(Collectors.toList()), BY_BIRTH_DATE);
+	}
+
+	@Override
+	public Stream<User> streamByUpcomingBirthday(LocalDate from, int days) {
+		return SortedStreams.merge(Arrays.stream(shards)
+				.map(shard -> shard.streamByUpcomingBirthday(from, days))
+				.collect(Collectors.toList()), Birthdays.upcomingFrom(from));
+	}
+
+	@Override
+	public List<User> searchByName(String name, int limit) {
+		String[] query = NameSearch.words(name);
+		if (query.length == 0) {
+			return List.of();
+		}
+		// Every shard's best are re-ranked together
+		List<List<User>> parts = fanOut(shard -> shard.searchByName(name, limit));
+		return NameSearch.top(parts.stream()
+				.flatMap(List::stream), query, limit);
+	}
+
+	@Override
+	public QueryPlan explain(UserQuery query) {
+		if (query.getEmail() != null) {
+			// Every shard sees the shared email index, but only the owner holds the user
+			Long id = idsByEmail.idOf(query.getEmail());
+			if (id != null) {
+				return shardOf(id).explain(query);
+			}
+		}
+		Map<QueryPlan.AccessPath, Integer> votes = new EnumMap<>(QueryPlan.AccessPath.class);
+		long indexRows = 0;
+		long estimatedRows = 0;
+		Map<QueryPlan.AccessPath, QueryPlan> samples = new EnumMap<>(QueryPlan.AccessPath.class);
+		for (InMemoryUserRepository shard : shards) {
+			QueryPlan plan = shard.explain(query);
+			samples.putIfAbsent(plan.getAccessPath(), plan);
+			votes.merge(plan.getAccessPath(), 1, Integer::sum);
+			indexRows += plan.getIndexRows();
+			estimatedRows += plan.getEstimatedRows();
+		}
+		// Shards plan on their own; report the path most of them took
+		QueryPlan.AccessPath path = votes.entrySet()
+				.stream()
+				.max(Map.Entry.comparingByValue())
+				.map(Map.Entry::getKey)
+				.orElse(QueryPlan.AccessPath.FULL_SCAN);
+		// The residual filters depend on the path, so take them from a shard that used it
+		return new QueryPlan(path, indexRows, estimatedRows, samples.get(path)
+				.getFilters());
+	}
+
+	@Override
+	public Stream<User> find(UserQuery query) {
+		List<Stream<User>> parts = new ArrayList<>(shards.length);
+		return Arrays.stream(shards)
+				.flatMap(shard -> {
+					Stream<User> part = shard.find(query);
+					parts.add(part);
+					return part;
+				})
+				.onClose(() -> parts.forEach(Stream::close));
+	}
+
+	@Override
+	public long countByBirthDateRange(LocalDate from, LocalDate to) {
+		long count = 0;
+		for (InMemoryUserRepository shard : shards) {
+			count += shard.countByBirthDateRange(from, to);
+		}
+		return count;
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByBirthYear() {
+		return sum(fanOut(InMemoryUserRepository::countByBirthYear));
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByAge(LocalDate date) {
+		return sum(fanOut(shard -> shard.countByAge(date)));
+	}
+
+	@Override
+	public Stream<User> findAll() {
+		return Arrays.stream(shards)
+				.flatMap(InMemoryUserRepository::findAll);
+	}
+
+	@Override
+	public long count() {
+		long count = 0;
+		for (InMemoryUserRepository shard : shards) {
+			count += shard.count();
+		}
+		return count;
+	}
+
+	/**
+	 * @return an estimate of the heap taken by the name indexes
+	 */
+	public long nameIndexBytes() {
+		long bytes = 0;
+		for (InMemoryUserRepository shard : shards) {
+			bytes += shard.nameIndexBytes();
+		}
+		return bytes;
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	private InMemoryUserRepository shardOf(long id) {
+		// Spread sequential ids with a Fibonacci hash
+		int hash = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+		return shards[Math.floorMod(hash, shards.length)];
+	}
+
+	/**
+	 * Runs {@code task} on every shard in parallel and returns the results in
+	 * shard order.
+	 */
+	private <T> List<T> fanOut(Function<InMemoryUserRepository, T> task) {
+		if (pool.getParallelism() == 1) {
+			// Nothing to run alongside; spare the hand-off to the pool
+			List<T> results = new ArrayList<>(shards.length);
+			for (InMemoryUserRepository shard : shards) {
+				results.add(task.apply(shard));
+			}
+			return results;
+		}
+		return pool.invoke(new ShardTask<>(shards, 0, shards.length, task));
+	}
+
+	private static SortedMap<Integer, Long> sum(List<SortedMap<Integer, Long>> parts) {
+		SortedMap<Integer, Long> sum = new TreeMap<>();
+		parts.forEach(part -> part.forEach((key, count) -> sum.merge(key, count, Long::sum)));
+		return sum;
+	}
+
+	/**
+	 * Splits the shards in halves until one is left, forking the left half.
+	 */
+	private static final class ShardTask<T> extends RecursiveTask<List<T>> {
+		private final InMemoryUserRepository[] shards;
+		private final int from;
+		private final int to;
+		private final Function<InMemoryUserRepository, T> task;
+
+		ShardTask(InMemoryUserRepository[] shards, int from, int to, Function<InMemoryUserRepository, T> task) {
+			this.shards = shards;
+			this.from = from;
+			this.to = to;
+			this.task = task;
+		}
+
+		@Override
+		protected List<T> compute() {
+			if (to - from == 1) {
+				List<T> result = new ArrayList<>(1);
+				result.add(task.apply(shards[from]));
+				return result;
+			}
+			int middle = (from + to) >>> 1;
+			ShardTask<T> left = new ShardTask<>(shards, from, middle, task);
+			left.fork();
+			List<T> right = new ShardTask<>(shards, middle, to, task).compute();
+			List<T> result = left.join();
+			result.addAll(right);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Merging of user streams that are each already sorted, for stores that
+ * split their users into parts.
+ */
+final class SortedStreams {
+	private SortedStreams() {
+	}
+
+	/**
+	 * Lazily merges streams that are each sorted by {@code order} into one
+	 * sorted stream, holding one element per stream. Closing the result
+	 * closes them all.
+	 */
+	static Stream<User> merge(List<Stream<User>> parts, Comparator<User> order) {
+		List<Iterator<User>> iterators = new ArrayList<>(parts.size());
+		parts.forEach(part -> iterators.add(part.iterator()));
+		PriorityQueue<Head> heads = new PriorityQueue<>((left, right) -> order.compare(left.user, right.user));
+		Iterator<User> merged = new Iterator<User>() {
+			private boolean started;
+
+			@Override
+			public boolean hasNext() {
+				if (!started) {
+					iterators.forEach(iterator -> Head.advance(heads, iterator));
+					started = true;
+				}
+				return !heads.isEmpty();
+			}
+
+			@Override
+			public User next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Head head = heads.poll();
+				Head.advance(heads, head.iterator);
+				return head.user;
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(() -> parts.forEach(Stream::close));
+	}
+
+	private static final class Head {
+		private final User user;
+		private final Iterator<User> iterator;
+
+		Head(User user, Iterator<User> iterator) {
+			this.user = user;
+			this.iterator = iterator;
+		}
+
+		static void advance(PriorityQueue<Head> heads, Iterator<User> iterator) {
+			if (iterator.hasNext()) {
+				heads.add(new Head(iterator.next(), iterator));
+			}
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package com.drg.usersapi.repositories.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only string storage in 1 MiB chunks, either on the heap, so that
+ * millions of strings cost the garbage collector a handful of byte arrays,
+ * or in a {@link MappedFile}. Strings made of Latin-1 characters take one
+ * byte per character, others are kept as UTF-8.
+ * <p>
+ * A string is addressed by a {@code long} reference packing its position,
+ * byte length and encoding; 0 stands for {@code null}. Strings stored through
+ * {@link #intern(String)} are kept once per distinct value. Space is never
+ * reused: the owner copies what is still live into a fresh arena when enough
+ * of this one is garbage.
+ * <p>
+ * Not thread-safe; the owner serializes writes against reads.
+ */
+final class StringArena implements Closeable {
+	static final int CHUNK_SIZE = 1 << 20;
+	private static final int LENGTH_BITS = 21;
+	private static final int POSITION_SHIFT = LENGTH_BITS + 1;
+	private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+	private static final int CHUNKS_PER_SEGMENT = 64;
+
+	private final MappedFile file;
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private int offset = CHUNK_SIZE;
+	private long storedBytes;
+	// Open-addressing set of interned references, with their hash codes
+	private long[] interned = new long[1024];
+	private int[] internedHashes = new int[1024];
+	private int internedCount;
+
+	StringArena() {
+		this.file = null;
+	}
+
+	/**
+	 * Creates an arena whose chunks live in a file at {@code path}.
+	 */
+	StringArena(Path path) {
+		this.file = new MappedFile(path, CHUNKS_PER_SEGMENT * CHUNK_SIZE);
+	}
+
+	/**
+	 * @return a reference to a new copy of {@code value}
+	 * @throws IllegalArgumentException if the encoded value exceeds a chunk
+	 */
+	long add(String value) {
+		if (value == null) {
+			return 0;
+		}
+		boolean latin1 = isLatin1(value);
+		byte[] utf8 = latin1 ? null : value.getBytes(StandardCharsets.UTF_8);
+		int length = latin1 ? value.length() : utf8.length;
+		if (length > CHUNK_SIZE) {
+			throw new IllegalArgumentException("String of " + length + " bytes is too long to store");
+		}
+		if (offset + length > CHUNK_SIZE) {
+			chunks.add(newChunk(chunks.size()));
+			offset = 0;
+		}
+		ByteBuffer chunk = chunks.get(chunks.size() - 1);
+		if (latin1) {
+			for (int i = 0; i < length; i++) {
+				chunk.put(offset + i, (byte) value.charAt(i));
+			}
+		} else {
+			chunk.duplicate()
+					.position(offset)
+					.put(utf8);
+		}
+		long position = (long) (chunks.size() - 1) * CHUNK_SIZE + offset;
+		offset += length;
+		storedBytes += length;
+		return (position + 1) << POSITION_SHIFT | (long) length << 1 | (latin1 ? 0 : 1);
+	}
+
+	/**
+	 * Like {@link #add(String)}, but returns the reference of an equal string
+	 * added through this method before, if any.
+	 */
+	long intern(String value) {
+		if (value == null) {
+			return 0;
+		}
+		int hash = value.hashCode();
+		int mask = interned.length - 1;
+		int slot = spread(hash) & mask;
+		for (long ref = interned[slot]; ref != 0; ref = interned[slot]) {
+			if (internedHashes[slot] == hash && equals(ref, value)) {
+				return ref;
+			}
+			slot = (slot + 1) & mask;
+		}
+		long ref = add(value);
+		interned[slot] = ref;
+		internedHashes[slot] = hash;
+		if (++internedCount > interned.length / 2) {
+			growInterned();
+		}
+		return ref;
+	}
+
+	String get(long ref) {
+		if (ref == 0) {
+			return null;
+		}
+		long position = (ref >>> POSITION_SHIFT) - 1;
+		ByteBuffer chunk = chunks.get((int) (position / CHUNK_SIZE));
+		int start = (int) (position % CHUNK_SIZE);
+		int length = length(ref);
+		Charset charset = (ref & 1) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+		if (chunk.hasArray()) {
+			return new String(chunk.array(), chunk.arrayOffset() + start, length, charset);
+		}
+		byte[] bytes = new byte[length];
+		chunk.duplicate()
+				.position(start)
+				.get(bytes);
+		return new String(bytes, charset);
+	}
+
+	/**
+	 * @return the number of bytes {@code ref} takes in the arena
+	 */
+	static int length(long ref) {
+		return (int) (ref >>> 1 & LENGTH_MASK);
+	}
+
+	/**
+	 * @return the bytes of every string added so far, live or not
+	 */
+	long storedBytes() {
+		return storedBytes;
+	}
+
+	/**
+	 * @return an estimate of the heap taken by the arena
+	 */
+	long estimatedBytes() {
+		long chunkBytes = file == null ? (long) chunks.size() * CHUNK_SIZE : 0;
+		return chunkBytes + (long) interned.length * (Long.BYTES + Integer.BYTES);
+	}
+
+	long mappedBytes() {
+		return file == null ? 0 : file.mappedBytes();
+	}
+
+	@Override
+	public void close() throws IOException {
+		chunks.clear();
+		if (file != null) {
+			file.close();
+		}
+	}
+
+	private boolean equals(long ref, String value) {
+		if ((ref & 1) != 0) {
+			return value.equals(get(ref));
+		}
+		int length = length(ref);
+		if (length != value.length()) {
+			return false;
+		}
+		long position = (ref >>> POSITION_SHIFT) - 1;
+		ByteBuffer chunk = chunks.get((int) (position / CHUNK_SIZE));
+		int start = (int) (position % CHUNK_SIZE);
+		for (int i = 0; i < length; i++) {
+			if ((chunk.get(start + i) & 0xFF) != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private ByteBuffer newChunk(int index) {
+		if (file == null) {
+			return ByteBuffer.allocate(CHUNK_SIZE);
+		}
+		ByteBuffer segment = file.segment(index / CHUNKS_PER_SEGMENT)
+				.duplicate();
+		int start = index % CHUNKS_PER_SEGMENT * CHUNK_SIZE;
+		segment.position(start)
+				.limit(start + CHUNK_SIZE);
+		return segment.slice();
+	}
+
+	private void growInterned() {
+		long[] refs = interned;
+		int[] hashes = internedHashes;
+		interned = new long[refs.length * 2];
+		internedHashes = new int[refs.length * 2];
+		int mask = interned.length - 1;
+		for (int i = 0; i < refs.length; i++) {
+			if (refs[i] != 0) {
+				int slot = spread(hashes[i]) & mask;
+				while (interned[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				interned[slot] = refs[i];
+				internedHashes[slot] = hashes[i];
+			}
+		}
+	}
+
+	private static boolean isLatin1(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) > 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
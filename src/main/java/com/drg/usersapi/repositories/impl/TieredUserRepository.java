@@ -0,0 +1,386 @@
+package com.drg.usersapi.repositories.impl;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.repositories.BirthDateCursor;
+import com.drg.usersapi.repositories.Birthdays;
+import com.drg.usersapi.repositories.Emails;
+import com.drg.usersapi.repositories.NameSearch;
+import com.drg.usersapi.repositories.QueryPlan;
+import com.drg.usersapi.repositories.UserQuery;
+import com.drg.usersapi.repositories.UserRepository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * User store in two tiers: recently used users in an
+ * {@link InMemoryUserRepository} on the heap, and the rest in a
+ * {@link CompactUserRepository} whose rows and strings are memory-mapped
+ * files, leaving some 50 bytes of heap per cold user. Reads by id, email and
+ * birth-date range see both tiers.
+ * <p>
+ * Every hot user carries an access count, bumped by reads by id or email.
+ * When the hot tier outgrows its capacity, a clock hand sweeps it, halving
+ * counts and demoting users whose count has reached zero, so users nobody
+ * reads go cold after a sweep or two. A cold user read
+ * {@code promoteAfterReads} times is moved back.
+ * <p>
+ * Writes, and moves between tiers, are serialized by one lock, under which
+ * emails are checked across both tiers. A move copies the user into its new
+ * tier before removing it from the old one. Range scans open both tiers'
+ * snapshots under the same lock, so a user moving meanwhile shows up once.
+ */
+public class TieredUserRepository implements UserRepository, Closeable {
+	private static final Comparator<User> BY_BIRTH_DATE = Comparator.comparing(User::getBirthDate)
+			.thenComparing(User::getId);
+	private static final int MAX_ACCESS_COUNT = 15;
+
+	private final InMemoryUserRepository hot = new InMemoryUserRepository();
+	private final CompactUserRepository cold;
+	private final int hotCapacity;
+	private final int promoteAfterReads;
+	private final ConcurrentHashMap<Long, AtomicInteger> accessCounts = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Long, AtomicInteger> coldReads = new ConcurrentHashMap<>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final AtomicLong idSequence = new AtomicLong();
+	private Iterator<Map.Entry<Long, AtomicInteger>> hand = Collections.emptyIterator();
+
+	/**
+	 * @param directory where the cold tier keeps its files
+	 * @param hotCapacity users kept on the heap before the coldest are demoted
+	 * @param promoteAfterReads reads that bring a cold user back to the heap
+	 */
+	public TieredUserRepository(Path directory, int hotCapacity, int promoteAfterReads) {
+		if (hotCapacity < 1 || promoteAfterReads < 1) {
+			throw new IllegalArgumentException("Hot capacity and reads to promote must be positive");
+		}
+		this.cold = new CompactUserRepository(directory);
+		this.hotCapacity = hotCapacity;
+		this.promoteAfterReads = promoteAfterReads;
+	}
+
+	@Override
+	public User insert(User user) {
+		writeLock.lock();
+		try {
+			checkEmail(cold, user.getEmail(), null);
+			User stored = hot.insert(user, idSequence.incrementAndGet());
+			accessCounts.put(stored.getId(), new AtomicInteger(1));
+			demoteColdest();
+			return stored;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<User> update(User user) {
+		if (user.getId() == null) {
+			return Optional.empty();
+		}
+		writeLock.lock();
+		try {
+			if (accessCounts.containsKey(user.getId())) {
+				checkEmail(cold, user.getEmail(), user.getId());
+				return hot.update(user);
+			}
+			return cold.findById(user.getId())
+					.map(current -> promote(user.toBuilder()
+							.version(current.getVersion() + 1)
+							.build()));
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<User> update(Long id, UnaryOperator<User> change) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		writeLock.lock();
+		try {
+			if (accessCounts.containsKey(id)) {
+				return hot.update(id, user -> {
+					User next = change.apply(user);
+					checkEmail(cold, next.getEmail(), id);
+					return next;
+				});
+			}
+			return cold.findById(id)
+					.map(current -> promote(change.apply(current.toBuilder()
+									.build())
+							.toBuilder()
+							.id(id)
+							.version(current.getVersion() + 1)
+							.build()));
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public User put(User user) {
+		writeLock.lock();
+		try {
+			idSequence.accumulateAndGet(user.getId(), Math::max);
+			cold.delete(user.getId());
+			coldReads.remove(user.getId());
+			User stored = hot.put(user);
+			accessCounts.putIfAbsent(user.getId(), new AtomicInteger());
+			demoteColdest();
+			return stored;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<User> findById(Long id) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		return find(tier -> tier.findById(id));
+	}
+
+	@Override
+	public Optional<User> findByEmail(String email) {
+		return find(tier -> tier.findByEmail(email));
+	}
+
+	@Override
+	public boolean delete(Long id) {
+		if (id == null) {
+			return false;
+		}
+		writeLock.lock();
+		try {
+			if (accessCounts.remove(id) != null) {
+				return hot.delete(id);
+			}
+			coldReads.remove(id);
+			return cold.delete(id);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Stream<User> streamByBirthDateRange(LocalDate from, LocalDate to, BirthDateCursor after) {
+		writeLock.lock();
+		try {
+			return SortedStreams.merge(List.of(hot.streamByBirthDateRange(from, to, after), cold.streamByBirthDateRange(from, to, after)),
+					BY_BIRTH_DATE);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Stream<User> streamByUpcomingBirthday(LocalDate from, int days) {
+		return SortedStreams.merge(List.of(hot.streamByUpcomingBirthday(from, days), cold.streamByUpcomingBirthday(from, days)),
+				Birthdays.upcomingFrom(from));
+	}
+
+	@Override
+	public List<User> searchByName(String name, int limit) {
+		String[] query = NameSearch.words(name);
+		if (query.length == 0) {
+			return List.of();
+		}
+		return NameSearch.top(Stream.concat(hot.searchByName(name, limit)
+				.stream(), cold.searchByName(name, limit)
+				.stream()), query, limit);
+	}
+
+	@Override
+	public QueryPlan explain(UserQuery query) {
+		// The cold tier has no secondary indexes and always scans
+		QueryPlan plan = hot.explain(query);
+		long coldCount = cold.count();
+		return new QueryPlan(plan.getAccessPath(), plan.getIndexRows() + coldCount, plan.getEstimatedRows() + coldCount, plan.getFilters());
+	}
+
+	@Override
+	public Stream<User> find(UserQuery query) {
+		return Stream.concat(hot.find(query), cold.find(query));
+	}
+
+	@Override
+	public long countByBirthDateRange(LocalDate from, LocalDate to) {
+		return hot.countByBirthDateRange(from, to) + cold.countByBirthDateRange(from, to);
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByBirthYear() {
+		return sum(hot.countByBirthYear(), cold.countByBirthYear());
+	}
+
+	@Override
+	public SortedMap<Integer, Long> countByAge(LocalDate date) {
+		return sum(hot.countByAge(date), cold.countByAge(date));
+	}
+
+	@Override
+	public Stream<User> findAll() {
+		return Stream.concat(hot.findAll(), cold.findAll());
+	}
+
+	@Override
+	public long count() {
+		return hot.count() + cold.count();
+	}
+
+	public long hotCount() {
+		return hot.count();
+	}
+
+	public long coldCount() {
+		return cold.count();
+	}
+
+	public boolean isHot(Long id) {
+		return accessCounts.containsKey(id);
+	}
+
+	/**
+	 * @return the bytes of file mapped by the cold tier
+	 */
+	public long coldMappedBytes() {
+		return cold.mappedBytes();
+	}
+
+	@Override
+	public void close() throws IOException {
+		cold.close();
+	}
+
+	/**
+	 * Looks the user up in the hot tier, then in the cold one, counting the
+	 * access. A user promoted between the two lookups is in neither, so a
+	 * miss is confirmed under the lock.
+	 */
+	private Optional<User> find(Function<UserRepository, Optional<User>> lookup) {
+		Optional<User> user = lookup.apply(hot);
+		if (user.isEmpty()) {
+			user = lookup.apply(cold);
+			if (user.isPresent()) {
+				countColdRead(user.get());
+				return user;
+			}
+			writeLock.lock();
+			try {
+				user = lookup.apply(hot).or(() -> lookup.apply(cold));
+			} finally {
+				writeLock.unlock();
+			}
+		}
+		user.ifPresent(this::countHotRead);
+		return user;
+	}
+
+	private void countHotRead(User user) {
+		AtomicInteger count = accessCounts.get(user.getId());
+		if (count != null && count.get() < MAX_ACCESS_COUNT) {
+			count.incrementAndGet();
+		}
+	}
+
+	private void countColdRead(User user) {
+		if (coldReads.size() > hotCapacity) {
+			// Forget old reads rather than track every cold user ever read
+			coldReads.clear();
+		}
+		int reads = coldReads.computeIfAbsent(user.getId(), id -> new AtomicInteger())
+				.incrementAndGet();
+		if (reads < promoteAfterReads) {
+			return;
+		}
+		writeLock.lock();
+		try {
+			cold.findById(user.getId())
+					.ifPresent(current -> {
+						hot.put(current);
+						cold.delete(current.getId());
+						coldReads.remove(current.getId());
+						accessCounts.put(current.getId(), new AtomicInteger(promoteAfterReads));
+						demoteColdest();
+					});
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Stores a changed cold user in the hot tier. Runs under the lock.
+	 */
+	private User promote(User next) {
+		checkEmail(hot, next.getEmail(), next.getId());
+		checkEmail(cold, next.getEmail(), next.getId());
+		User stored = hot.put(next);
+		cold.delete(next.getId());
+		coldReads.remove(next.getId());
+		accessCounts.put(next.getId(), new AtomicInteger(1));
+		demoteColdest();
+		return stored;
+	}
+
+	/**
+	 * Sweeps the clock hand until the hot tier fits its capacity. Runs under
+	 * the lock.
+	 */
+	private void demoteColdest() {
+		while (hot.count() > hotCapacity && !accessCounts.isEmpty()) {
+			if (!hand.hasNext()) {
+				hand = accessCounts.entrySet()
+						.iterator();
+				continue;
+			}
+			Map.Entry<Long, AtomicInteger> entry = hand.next();
+			if (entry.getValue()
+					.get() > 0) {
+				entry.getValue()
+						.updateAndGet(count -> count / 2);
+				continue;
+			}
+			Long id = entry.getKey();
+			hot.findById(id)
+					.ifPresent(cold::put);
+			hot.delete(id);
+			accessCounts.remove(id);
+		}
+	}
+
+	private static void checkEmail(UserRepository tier, String email, Long id) {
+		Optional<User> owner = tier.findByEmail(email);
+		if (owner.isPresent() && !owner.get()
+				.getId()
+				.equals(id)) {
+			throw new DuplicateEmailException("User with email " + Emails.normalize(email) + " already exists");
+		}
+	}
+
+	private static SortedMap<Integer, Long> sum(SortedMap<Integer, Long> left, SortedMap<Integer, Long> right) {
+		SortedMap<Integer, Long> sum = new TreeMap<>(left);
+		right.forEach((key, count) -> sum.merge(key, count, Long::sum));
+		return sum;
+	}
+}
@@ -0,0 +1,151 @@
+package com.drg.usersapi.repositories.persistence;
+
+import com.drg.usersapi.entities.User;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Point-in-time image of the user store, tagged with the first write-ahead
+ * log sequence number that is not guaranteed to be reflected in it.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header  [int magic][int version][long seq][long count][int chunkCount][long chunkIndexOffset]
+ * records [int length][record] ... encoded with {@link UserRecordCodec}
+ * index   chunkCount x [long offset][int records]
+ * </pre>
+ * Records are grouped into chunks of {@link #CHUNK_RECORDS}; the chunk index
+ * lets {@link #read(Path, Consumer)} memory-map and decode chunks in parallel.
+ * Snapshots are written to a temporary file and renamed into place, so a
+ * crash mid-write leaves the previous snapshot intact.
+ */
+public final class SnapshotFile {
+	public static final int VERSION = 1;
+	public static final int CHUNK_RECORDS = 1 << 16;
+	private static final int MAGIC = 0x55534e50;
+	private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES + Long.BYTES;
+	private static final int CHUNK_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+	private SnapshotFile() {
+	}
+
+	public static void write(Path path, long seq, Stream<User> users) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE);
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			List<long[]> chunks = new ArrayList<>();
+			long offset = HEADER_SIZE;
+			long count = 0;
+			Iterator<User> iterator = users.iterator();
+			while (iterator.hasNext()) {
+				if (count % CHUNK_RECORDS == 0) {
+					chunks.add(new long[] { offset, 0 });
+				}
+				byte[] record = UserRecordCodec.encode(iterator.next());
+				output.writeInt(record.length);
+				output.write(record);
+				offset += Integer.BYTES + record.length;
+				chunks.get(chunks.size() - 1)[1]++;
+				count++;
+			}
+			for (long[] chunk : chunks) {
+				output.writeLong(chunk[0]);
+				output.writeInt((int) chunk[1]);
+			}
+			output.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+					.putInt(MAGIC)
+					.putInt(VERSION)
+					.putLong(seq)
+					.putLong(count)
+					.putInt(chunks.size())
+					.putLong(offset)
+					.flip();
+			long position = 0;
+			while (header.hasRemaining()) {
+				position += channel.write(header, position);
+			}
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Feeds every user in the snapshot to {@code consumer}. Chunks are decoded
+	 * in parallel, so the consumer must be thread-safe.
+	 *
+	 * @return the snapshot's sequence number, or {@code 0} if there is no snapshot
+	 */
+	public static long read(Path path, Consumer<User> consumer) throws IOException {
+		if (!Files.exists(path)) {
+			return 0;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Truncated user snapshot: " + path);
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a user snapshot: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported user snapshot version " + version + ": " + path);
+			}
+			long seq = header.getLong();
+			header.getLong();
+			int chunkCount = header.getInt();
+			long chunkIndexOffset = header.getLong();
+			MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, chunkIndexOffset, (long) chunkCount * CHUNK_ENTRY_SIZE);
+			long[] offsets = new long[chunkCount + 1];
+			int[] records = new int[chunkCount];
+			for (int i = 0; i < chunkCount; i++) {
+				offsets[i] = index.getLong();
+				records[i] = index.getInt();
+			}
+			offsets[chunkCount] = chunkIndexOffset;
+
+			IntStream.range(0, chunkCount)
+					.parallel()
+					.forEach(chunk -> readChunk(channel, offsets[chunk], offsets[chunk + 1], records[chunk], consumer));
+			return seq;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static void readChunk(FileChannel channel, long start, long end, int records, Consumer<User> consumer) {
+		MappedByteBuffer data;
+		try {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		for (int i = 0; i < records; i++) {
+			int length = data.getInt();
+			int next = data.position() + length;
+			consumer.accept(UserRecordCodec.decode(data));
+			data.position(next);
+		}
+	}
+}
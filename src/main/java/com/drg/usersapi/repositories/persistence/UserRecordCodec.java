@@ -0,0 +1,82 @@
+package com.drg.usersapi.repositories.persistence;
+
+import com.drg.usersapi.entities.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Binary encoding of a {@link User}: a fixed-width id, version and epoch-day
+ * birth date followed by length-prefixed UTF-8 strings. A {@code -1} length or
+ * {@link #NO_BIRTH_DATE} marks a missing value.
+ */
+public final class UserRecordCodec {
+	static final int NO_BIRTH_DATE = Integer.MIN_VALUE;
+	private static final int NULL_LENGTH = -1;
+
+	private UserRecordCodec() {
+	}
+
+	public static byte[] encode(User user) {
+		byte[][] strings = { utf8(user.getEmail()), utf8(user.getFirstName()), utf8(user.getLastName()), utf8(user.getAddress()),
+				utf8(user.getPhoneNumber()) };
+		int size = 2 * Long.BYTES + Integer.BYTES;
+		for (byte[] string : strings) {
+			size += Integer.BYTES + (string == null ? 0 : string.length);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putLong(user.getId());
+		buffer.putLong(user.getVersion());
+		buffer.putInt(user.getBirthDate() == null ? NO_BIRTH_DATE : Math.toIntExact(user.getBirthDate()
+				.toEpochDay()));
+		for (byte[] string : strings) {
+			if (string == null) {
+				buffer.putInt(NULL_LENGTH);
+			} else {
+				buffer.putInt(string.length);
+				buffer.put(string);
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Decodes one user starting at the buffer's position and advances the
+	 * position past it.
+	 */
+	public static User decode(ByteBuffer buffer) {
+		long id = buffer.getLong();
+		long version = buffer.getLong();
+		int epochDay = buffer.getInt();
+		return User.builder()
+				.id(id)
+				.version(version)
+				.birthDate(epochDay == NO_BIRTH_DATE ? null : LocalDate.ofEpochDay(epochDay))
+				.email(readString(buffer))
+				.firstName(readString(buffer))
+				.lastName(readString(buffer))
+				.address(readString(buffer))
+				.phoneNumber(readString(buffer))
+				.build();
+	}
+
+	private static byte[] utf8(String value) {
+		return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		if (buffer.hasArray()) {
+			String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+			return value;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
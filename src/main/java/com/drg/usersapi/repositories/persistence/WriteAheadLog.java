@@ -0,0 +1,379 @@
+package com.drg.usersapi.repositories.persistence;
+
+import com.drg.usersapi.enums.DurabilityMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of user mutations, split into segments named after
+ * the sequence number of their first record.
+ * <p>
+ * Each record is {@code [int length][long seq][byte op][payload][int crc32]}.
+ * Records are staged in an in-memory buffer; {@link #sync(long)} drains the
+ * buffer and fsyncs. Whoever holds the sync lock fsyncs everything appended so
+ * far, so writers queued behind it usually find their record already durable
+ * and return without an fsync of their own (group commit). In
+ * {@link DurabilityMode#BATCHED} and {@link DurabilityMode#ASYNC} modes a
+ * background flusher fsyncs every flush interval instead.
+ */
+public class WriteAheadLog implements Closeable {
+	public static final byte OP_PUT = 1;
+	public static final byte OP_DELETE = 2;
+	private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+	private static final String SEGMENT_PREFIX = "wal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Byte.BYTES;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Path directory;
+	private final DurabilityMode mode;
+	private final long flushIntervalMillis;
+	private final ReentrantLock appendLock = new ReentrantLock();
+	private final ReentrantLock syncLock = new ReentrantLock();
+	private final Object durableMonitor = new Object();
+	private final ScheduledExecutorService flusher;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private FileChannel segment;
+	private long nextSeq;
+	private volatile long durableSeq;
+	private volatile IOException failure;
+
+	/**
+	 * The sequence number after the last intact record of a replayed segment,
+	 * and whether the segment held nothing else.
+	 */
+	private static final class Replayed {
+		private final long nextSeq;
+		private final boolean intact;
+
+		private Replayed(long nextSeq, boolean intact) {
+			this.nextSeq = nextSeq;
+			this.intact = intact;
+		}
+	}
+
+	public interface RecordHandler {
+		void handle(long seq, byte op, ByteBuffer payload);
+	}
+
+	public WriteAheadLog(Path directory, DurabilityMode mode, long flushIntervalMillis) {
+		this.directory = directory;
+		this.mode = mode;
+		this.flushIntervalMillis = flushIntervalMillis;
+		if (mode == DurabilityMode.BATCHED || mode == DurabilityMode.ASYNC) {
+			flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "wal-flusher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			flusher = null;
+		}
+	}
+
+	/**
+	 * Replays every intact record with a sequence number of at least
+	 * {@code fromSeq}, then opens a fresh segment for appends. Replay stops at
+	 * the first torn or corrupt record or skipped sequence number and cuts the
+	 * log off there, as every later record follows a lost one.
+	 */
+	public void open(long fromSeq, RecordHandler handler) {
+		try {
+			Files.createDirectories(directory);
+			long lastSeq = fromSeq - 1;
+			List<Path> segments = segments();
+			long expectedSeq = segments.isEmpty() ? 0 : firstSeq(segments.get(0));
+			for (int i = 0; i < segments.size(); i++) {
+				Path path = segments.get(i);
+				Replayed replayed = firstSeq(path) == expectedSeq ? replay(path, expectedSeq, fromSeq, handler) : null;
+				if (replayed != null) {
+					lastSeq = Math.max(lastSeq, replayed.nextSeq - 1);
+					expectedSeq = replayed.nextSeq;
+				}
+				if (replayed == null || !replayed.intact) {
+					for (Path later : segments.subList(replayed == null ? i : i + 1, segments.size())) {
+						LOGGER.warn("Dropping write-ahead log segment {}, which follows a lost record", later);
+						Files.delete(later);
+					}
+					break;
+				}
+			}
+			nextSeq = lastSeq + 1;
+			durableSeq = lastSeq;
+			segment = openSegment(nextSeq);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (flusher != null) {
+			flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Buffers a record and returns its sequence number. The record is not
+	 * durable until {@link #awaitDurable(long)} returns.
+	 */
+	public long append(byte op, byte[] payload) {
+		CRC32 crc = new CRC32();
+		appendLock.lock();
+		try {
+			checkFailure();
+			long seq = nextSeq++;
+			int size = HEADER_SIZE + payload.length + Integer.BYTES;
+			if (buffer.remaining() < size) {
+				drain();
+			}
+			if (buffer.capacity() < size) {
+				buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+			}
+			buffer.putInt(payload.length);
+			buffer.putLong(seq);
+			buffer.put(op);
+			buffer.put(payload);
+			crc.update(buffer.duplicate()
+					.flip()
+					.position(buffer.position() - payload.length - Byte.BYTES - Long.BYTES));
+			buffer.putInt((int) crc.getValue());
+			return seq;
+		} catch (IOException e) {
+			throw fail(e);
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * Blocks until the record is as durable as the configured mode promises.
+	 */
+	public void awaitDurable(long seq) {
+		switch (mode) {
+			case DURABLE:
+				sync(seq);
+				break;
+			case BATCHED:
+				awaitFlush(seq);
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Makes every record up to {@code seq} durable, sharing the fsync with any
+	 * other writer that is waiting at the same time.
+	 */
+	public void sync(long seq) {
+		if (durableSeq >= seq) {
+			return;
+		}
+		syncLock.lock();
+		try {
+			if (durableSeq >= seq) {
+				return;
+			}
+			long target;
+			appendLock.lock();
+			try {
+				checkFailure();
+				drain();
+				target = nextSeq - 1;
+			} finally {
+				appendLock.unlock();
+			}
+			segment.force(false);
+			publishDurable(target);
+		} catch (IOException e) {
+			throw fail(e);
+		} finally {
+			syncLock.unlock();
+		}
+	}
+
+	/**
+	 * Fsyncs the current segment and starts a new one.
+	 *
+	 * @return the sequence number of the first record in the new segment
+	 */
+	public long roll() {
+		syncLock.lock();
+		try {
+			appendLock.lock();
+			try {
+				checkFailure();
+				drain();
+				segment.force(false);
+				segment.close();
+				publishDurable(nextSeq - 1);
+				segment = openSegment(nextSeq);
+				return nextSeq;
+			} finally {
+				appendLock.unlock();
+			}
+		} catch (IOException e) {
+			throw fail(e);
+		} finally {
+			syncLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes segments that only hold records below {@code seq}.
+	 */
+	public void deleteSegmentsBefore(long seq) throws IOException {
+		List<Path> segments = segments();
+		for (int i = 0; i + 1 < segments.size(); i++) {
+			if (firstSeq(segments.get(i + 1)) <= seq) {
+				Files.deleteIfExists(segments.get(i));
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (flusher != null) {
+			flusher.shutdown();
+			try {
+				flusher.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread()
+						.interrupt();
+			}
+		}
+		if (segment != null && segment.isOpen()) {
+			sync(Long.MAX_VALUE);
+			segment.close();
+		}
+	}
+
+	private void flush() {
+		try {
+			sync(Long.MAX_VALUE);
+		} catch (RuntimeException e) {
+			LOGGER.error("Error flushing write-ahead log: {}", e.getMessage());
+		}
+	}
+
+	private void awaitFlush(long seq) {
+		synchronized (durableMonitor) {
+			while (durableSeq < seq) {
+				checkFailure();
+				try {
+					durableMonitor.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread()
+							.interrupt();
+					throw new IllegalStateException("Interrupted while waiting for write-ahead log flush", e);
+				}
+			}
+		}
+	}
+
+	private void publishDurable(long seq) {
+		synchronized (durableMonitor) {
+			durableSeq = Math.max(durableSeq, seq);
+			durableMonitor.notifyAll();
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			segment.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private UncheckedIOException fail(IOException e) {
+		synchronized (durableMonitor) {
+			failure = e;
+			durableMonitor.notifyAll();
+		}
+		return new UncheckedIOException("Write-ahead log failure", e);
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new UncheckedIOException("Write-ahead log is unusable after an earlier failure", failure);
+		}
+	}
+
+	/**
+	 * Replays the records of a segment that should start at
+	 * {@code expectedSeq}, truncating it after the last intact one.
+	 */
+	private Replayed replay(Path path, long expectedSeq, long fromSeq, RecordHandler handler) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			CRC32 crc = new CRC32();
+			int end = 0;
+			while (data.remaining() >= HEADER_SIZE + Integer.BYTES) {
+				int start = data.position();
+				int length = data.getInt();
+				if (length < 0 || data.remaining() < length + Long.BYTES + Byte.BYTES + Integer.BYTES) {
+					break;
+				}
+				crc.reset();
+				crc.update(data.duplicate()
+						.limit(start + HEADER_SIZE + length));
+				long seq = data.getLong();
+				byte op = data.get();
+				ByteBuffer payload = data.slice()
+						.limit(length);
+				data.position(data.position() + length);
+				if ((int) crc.getValue() != data.getInt() || seq != expectedSeq) {
+					break;
+				}
+				if (seq >= fromSeq) {
+					handler.handle(seq, op, payload);
+				}
+				expectedSeq++;
+				end = data.position();
+			}
+			if (end == channel.size()) {
+				return new Replayed(expectedSeq, true);
+			}
+			LOGGER.warn("Torn or corrupt record at offset {} of {}, truncating the log there", end, path);
+			channel.truncate(end);
+			channel.force(true);
+			return new Replayed(expectedSeq, false);
+		}
+	}
+
+	private FileChannel openSegment(long firstSeq) throws IOException {
+		Path path = directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+		// A segment can only already exist if it holds no intact records, so it is safe to truncate
+		return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private List<Path> segments() throws IOException {
+		List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			stream.forEach(segments::add);
+		}
+		segments.sort(null);
+		return segments;
+	}
+
+	private static long firstSeq(Path segment) {
+		String name = segment.getFileName()
+				.toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+}
@@ -1,17 +1,120 @@
 package com.drg.usersapi.services;
 
+import com.drg.usersapi.dto.BatchResultDTO;
+import com.drg.usersapi.dto.ImportResultDTO;
+import com.drg.usersapi.dto.QueryPlanDTO;
 import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.dto.UserPageDTO;
+import com.drg.usersapi.dto.UserQueryDTO;
+import com.drg.usersapi.dto.UserStatsDTO;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface UserService {
+	/**
+	 * Stores a new user; a {@code DuplicateEmailException} is thrown if
+	 * another user already has the email.
+	 */
 	UserDTO insert(UserDTO dto);
 
+	/**
+	 * Validates every entry against the same rules as {@link #insert(UserDTO)}
+	 * and stores the valid ones in a single batched write. Invalid entries,
+	 * and entries whose email is taken, are reported per index instead of
+	 * failing the whole batch.
+	 */
+	BatchResultDTO insertAll(List<UserDTO> dtos);
+
+	/**
+	 * Restores users as {@link #exportUsers()} writes them, keeping their
+	 * ids and versions and replacing any user with the same id. Users are
+	 * pulled from {@code users} in batches, each validated like an insert and
+	 * stored in one batched write while the next one is read. Rejected
+	 * entries are counted, and reported by index up to a limit. Batches
+	 * stored before {@code users} fails stay stored.
+	 */
+	ImportResultDTO importUsers(Iterator<UserDTO> users);
+
 	void delete(Long id);
 
-	UserDTO updateUser(Long id, UserDTO user);
+	UserDTO getUser(Long id);
+
+	/**
+	 * Looks a user up by email, ignoring case and surrounding whitespace.
+	 */
+	UserDTO getUserByEmail(String email);
+
+	/**
+	 * Replaces the user's fields. When {@code expectedVersion} is not
+	 * {@code null}, the update only happens if the user is still at that
+	 * version; otherwise a {@code StaleVersionException} is thrown.
+	 */
+	UserDTO updateUser(Long id, UserDTO user, Long expectedVersion);
 
 	List<UserDTO> getUsersByBirthDateRange(String from, String to);
 
-	UserDTO partialUpdateUser(Long id, UserDTO user);
+	/**
+	 * Returns at most {@code limit} users following {@code cursor}, or from
+	 * the start of the range when {@code cursor} is {@code null}.
+	 */
+	UserPageDTO getUsersByBirthDateRange(String from, String to, int limit, String cursor);
+
+	/**
+	 * Counts the users in the range without fetching them.
+	 */
+	long countUsersByBirthDateRange(String from, String to);
+
+	/**
+	 * Returns age and birth-year aggregates as of today, read from counts the
+	 * store keeps up to date on every write.
+	 */
+	UserStatsDTO getStats();
+
+	/**
+	 * Validates the range eagerly and returns a lazy stream of the matching
+	 * users, which opens its store snapshot on the first read; the caller
+	 * must close it once read.
+	 */
+	Stream<UserDTO> streamUsersByBirthDateRange(String from, String to);
+
+	/**
+	 * Returns at most {@code limit} users matching every predicate of
+	 * {@code query}, read through the most selective index available.
+	 */
+	List<UserDTO> queryUsers(UserQueryDTO query, int limit);
+
+	/**
+	 * Returns the plan {@link #queryUsers(UserQueryDTO, int)} would use,
+	 * without running it.
+	 */
+	QueryPlanDTO explainQuery(UserQueryDTO query);
+
+	/**
+	 * Returns at most {@code limit} users whose first or last name matches
+	 * {@code name}, exact matches first, then prefix and then infix matches.
+	 */
+	List<UserDTO> searchUsersByName(String name, int limit);
+
+	/**
+	 * Returns a lazy stream of the users whose birthday falls in the
+	 * {@code days} days starting today, soonest first. The window is checked
+	 * eagerly and the store stream opened on the first read; the caller must
+	 * close it once read.
+	 */
+	Stream<UserDTO> streamUpcomingBirthdays(int days);
+
+	/**
+	 * Returns a lazy stream of every user, ordered by birth date and then by
+	 * id, read from a snapshot of the store taken on its first read; the
+	 * caller must close it once read.
+	 */
+	Stream<UserDTO> exportUsers();
+
+	/**
+	 * Updates the non-empty fields of {@code user}, with the same version
+	 * check as {@link #updateUser(Long, UserDTO, Long)}.
+	 */
+	UserDTO partialUpdateUser(Long id, UserDTO user, Long expectedVersion);
 }
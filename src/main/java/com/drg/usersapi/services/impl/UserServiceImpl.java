@@ -1,138 +1,687 @@
 package com.drg.usersapi.services.impl;
 
+import com.drg.usersapi.dto.BatchItemResultDTO;
+import com.drg.usersapi.dto.BatchResultDTO;
+import com.drg.usersapi.dto.ImportResultDTO;
+import com.drg.usersapi.dto.QueryPlanDTO;
 import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.dto.UserPageDTO;
+import com.drg.usersapi.dto.UserQueryDTO;
+import com.drg.usersapi.dto.UserStatsDTO;
 import com.drg.usersapi.entities.User;
 import com.drg.usersapi.exceptions.BirthDateRestrictionException;
+import com.drg.usersapi.exceptions.InvalidBatchException;
 import com.drg.usersapi.exceptions.InvalidDateRangeException;
+import com.drg.usersapi.exceptions.InvalidBirthdayWindowException;
+import com.drg.usersapi.exceptions.InvalidPageRequestException;
+import com.drg.usersapi.exceptions.InvalidSearchException;
+import com.drg.usersapi.exceptions.StaleVersionException;
 import com.drg.usersapi.exceptions.UserNotFoundException;
+import com.drg.usersapi.metrics.MetricsRegistry;
+import com.drg.usersapi.repositories.BirthDateCursor;
+import com.drg.usersapi.repositories.Emails;
+import com.drg.usersapi.repositories.Birthdays;
+import com.drg.usersapi.repositories.NameSearch;
+import com.drg.usersapi.repositories.UserQuery;
+import com.drg.usersapi.repositories.UserRepository;
 import com.drg.usersapi.services.UserService;
 import com.drg.usersapi.utils.ConverterUtil;
+import com.drg.usersapi.validation.UserValidation;
+import com.drg.usersapi.validation.UserValidator;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.Period;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class UserServiceImpl implements UserService {
 	@Value("${user.age.min}")
 	private int minUserAge;
+	@Value("${user.page.max-limit:1000}")
+	private int maxPageLimit;
+	@Value("${user.batch.max-size:100000}")
+	private int maxBatchSize;
+	@Value("${user.import.batch-size:1000}")
+	private int importBatchSize;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private UserValidator userValidator;
+	@Autowired
+	private MetricsRegistry metrics;
 	private static final Logger LOGGER = LoggerFactory.getLogger(UserService.class);
+	private static final int MAX_IMPORT_ERRORS = 100;
+
+	/**
+	 * Running counts of an import, updated by its writer thread only.
+	 */
+	private static final class ImportTally {
+		private long imported;
+		private long failed;
+		private final List<BatchItemResultDTO> errors = new ArrayList<>();
+
+		private void reject(int index, Map<String, String> itemErrors) {
+			failed++;
+			if (errors.size() < MAX_IMPORT_ERRORS) {
+				errors.add(new BatchItemResultDTO(index, null, itemErrors));
+			}
+		}
+	}
 
 	@Override
 	public UserDTO insert(UserDTO userDTO) {
 		LOGGER.debug("Inserting user: {}", userDTO);
+		long start = System.nanoTime();
+		Exception error = null;
 		try {
 			User user = new User(userDTO);
 			checkUser(user);
-			//create user in the repository
-			return new UserDTO(user);
+			return new UserDTO(userRepository.insert(user));
 		} catch (Exception e) {
+			error = e;
 			LOGGER.error("Error inserting user: {}", e.getMessage());
 			throw e;
+		} finally {
+			metrics.record("UserService.insert", start, error);
+		}
+	}
+
+	@Override
+	public BatchResultDTO insertAll(List<UserDTO> userDTOs) {
+		LOGGER.debug("Inserting batch of {} users", userDTOs.size());
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			if (userDTOs.size() > maxBatchSize) {
+				throw new InvalidBatchException("Batch must not contain more than " + maxBatchSize + " users.");
+			}
+			int size = userDTOs.size();
+			User[] users = new User[size];
+			BatchItemResultDTO[] results = new BatchItemResultDTO[size];
+			IntStream.range(0, size)
+					.parallel()
+					.forEach(i -> {
+						Map<String, String> errors = validateForInsert(userDTOs.get(i), users, i);
+						if (!errors.isEmpty()) {
+							results[i] = new BatchItemResultDTO(i, null, errors);
+						}
+					});
+
+			List<Integer> validIndexes = new ArrayList<>();
+			List<User> validUsers = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				if (results[i] == null) {
+					validIndexes.add(i);
+					validUsers.add(users[i]);
+				}
+			}
+			List<User> stored = userRepository.insertAll(validUsers);
+			int inserted = 0;
+			for (int i = 0; i < stored.size(); i++) {
+				int index = validIndexes.get(i);
+				if (stored.get(i) == null) {
+					results[index] = new BatchItemResultDTO(index, null, Collections.singletonMap("email", "must be unique"));
+				} else {
+					results[index] = new BatchItemResultDTO(index, new UserDTO(stored.get(i)), null);
+					inserted++;
+				}
+			}
+			return new BatchResultDTO(inserted, size - inserted, List.of(results));
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error inserting batch of users: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.insertAll", start, error);
+		}
+	}
+
+	/**
+	 * Runs the checks of a single insert without throwing, storing the
+	 * converted user in {@code users[index]} when it passes.
+	 */
+	private Map<String, String> validateForInsert(UserDTO userDTO, User[] users, int index) {
+		if (userDTO == null) {
+			return Collections.singletonMap("user", "must not be null");
+		}
+		UserValidation validation = userValidator.validateFullUpdate(userDTO);
+		if (!validation.isValid()) {
+			return errorsOf(validation);
+		}
+		users[index] = new User(userDTO);
+		return Collections.emptyMap();
+	}
+
+	private static Map<String, String> errorsOf(UserValidation validation) {
+		if (validation.getFieldErrors()
+				.isEmpty()) {
+			return Collections.singletonMap("birthDate", validation.getBirthDateError());
+		}
+		return validation.getFieldErrors();
+	}
+
+	@Override
+	public ImportResultDTO importUsers(Iterator<UserDTO> users) {
+		LOGGER.debug("Importing users");
+		long start = System.nanoTime();
+		Exception error = null;
+		ImportTally tally = new ImportTally();
+		ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "user-import");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			Future<?> writing = CompletableFuture.completedFuture(null);
+			int index = 0;
+			while (users.hasNext()) {
+				List<UserDTO> batch = new ArrayList<>(importBatchSize);
+				while (batch.size() < importBatchSize && users.hasNext()) {
+					batch.add(users.next());
+				}
+				// Read each batch while the previous one is written, and no further ahead
+				awaitImport(writing);
+				int first = index;
+				writing = writer.submit(() -> importBatch(batch, first, tally));
+				index += batch.size();
+			}
+			awaitImport(writing);
+			LOGGER.info("Imported {} users, rejected {}", tally.imported, tally.failed);
+			return new ImportResultDTO(tally.imported, tally.failed, tally.errors);
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error importing users: {}", e.getMessage());
+			throw e;
+		} finally {
+			writer.shutdown();
+			metrics.record("UserService.importUsers", start, error);
+		}
+	}
+
+	/**
+	 * Validates one batch of an import and stores its valid users in a single
+	 * write.
+	 */
+	private void importBatch(List<UserDTO> batch, int first, ImportTally tally) {
+		List<User> valid = new ArrayList<>(batch.size());
+		Map<String, Long> batchEmails = new HashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			UserDTO userDTO = batch.get(i);
+			Map<String, String> errors = validateForImport(userDTO, batchEmails);
+			if (!errors.isEmpty()) {
+				tally.reject(first + i, errors);
+				continue;
+			}
+			User user = new User(userDTO);
+			user.setVersion(userDTO.getVersion() == null ? 0 : userDTO.getVersion());
+			valid.add(user);
+		}
+		userRepository.putAll(valid);
+		tally.imported += valid.size();
+	}
+
+	/**
+	 * Runs the checks of an insert, and since stored users are replaced rather
+	 * than checked for a taken email, checks that the email is not held by
+	 * another user, in the store or earlier in the batch.
+	 */
+	private Map<String, String> validateForImport(UserDTO userDTO, Map<String, Long> batchEmails) {
+		Long id = userDTO.getId();
+		if (id == null || id < 1) {
+			return Collections.singletonMap("id", "must be greater than 0");
+		}
+		UserValidation validation = userValidator.validateFullUpdate(userDTO);
+		if (!validation.isValid()) {
+			return errorsOf(validation);
+		}
+		Long batchHolder = batchEmails.putIfAbsent(Emails.normalize(userDTO.getEmail()), id);
+		boolean taken = batchHolder != null && !batchHolder.equals(id) || userRepository.findByEmail(userDTO.getEmail())
+				.filter(holder -> !holder.getId()
+						.equals(id))
+				.isPresent();
+		return taken ? Collections.singletonMap("email", "must be unique") : Collections.emptyMap();
+	}
+
+	private static void awaitImport(Future<?> writing) {
+		try {
+			writing.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+					.interrupt();
+			throw new IllegalStateException("Interrupted while importing users", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
 		}
 	}
 
 	@Override
 	public void delete(Long id) {
 		LOGGER.debug("Deleting user with id: {}", id);
+		long start = System.nanoTime();
+		Exception error = null;
 		try {
-			User user = getUserById(id);
-			// Delete user from the repository
+			if (!userRepository.delete(id)) {
+				throw new UserNotFoundException("User with id " + id + " not found");
+			}
 		} catch (Exception e) {
+			error = e;
 			LOGGER.error("Error deleting user with id {}: {}", id, e.getMessage());
 			throw e;
+		} finally {
+			metrics.record("UserService.delete", start, error);
+		}
+	}
+
+	@Override
+	public UserDTO getUser(Long id) {
+		LOGGER.debug("Fetching user with id: {}", id);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			return new UserDTO(userRepository.findById(id)
+					.orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found")));
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error fetching user with id {}: {}", id, e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.getUser", start, error);
+		}
+	}
+
+	@Override
+	public UserDTO getUserByEmail(String email) {
+		LOGGER.debug("Fetching user with email: {}", email);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			return new UserDTO(userRepository.findByEmail(email)
+					.orElseThrow(() -> new UserNotFoundException("User with email " + email + " not found")));
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error fetching user with email {}: {}", email, e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.getUserByEmail", start, error);
 		}
 	}
 
 	@Override
-	public UserDTO updateUser(Long id, UserDTO userDTO) {
+	public UserDTO updateUser(Long id, UserDTO userDTO, Long expectedVersion) {
 		LOGGER.debug("Updating user: {}", userDTO);
+		long start = System.nanoTime();
+		Exception error = null;
 		try {
-			User user = getUserById(userDTO.getId());
-			user.setEmail(userDTO.getEmail());
-			user.setFirstName(userDTO.getFirstName());
-			user.setLastName(userDTO.getLastName());
-			user.setBirthDate(ConverterUtil.localDateFromString(userDTO.getBirthDate()));
-			user.setAddress(userDTO.getAddress());
-			user.setPhoneNumber(userDTO.getPhoneNumber());
+			User user = new User(userDTO);
+			user.setId(id);
 			checkUser(user);
-			// Save the updated user to the repository
-			return new UserDTO(user);
+			if (expectedVersion == null) {
+				return new UserDTO(save(user));
+			}
+			return new UserDTO(userRepository.update(id, current -> {
+						checkVersion(current, expectedVersion);
+						return user;
+					})
+					.orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found")));
 		} catch (Exception e) {
+			error = e;
 			LOGGER.error("Error updating user: {}", e.getMessage());
 			throw e;
+		} finally {
+			metrics.record("UserService.updateUser", start, error);
 		}
 	}
 
 	@Override
-	public UserDTO partialUpdateUser(Long id, UserDTO partialUser) {
+	public UserDTO partialUpdateUser(Long id, UserDTO partialUser, Long expectedVersion) {
 		LOGGER.debug("Partial updating user with id {}: {}", id, partialUser);
+		long start = System.nanoTime();
+		Exception error = null;
 		try {
-			User user = readById(id);
-			updateFieldsFromDTO(user, partialUser);
-			checkUser(user);
-			// Save the updated user to the repository
+			User user = userRepository.update(id, current -> {
+						if (expectedVersion != null) {
+							checkVersion(current, expectedVersion);
+						}
+						updateFieldsFromDTO(current, partialUser);
+						checkUser(current);
+						return current;
+					})
+					.orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
 			return new UserDTO(user);
 		} catch (Exception e) {
+			error = e;
 			LOGGER.error("Error partial updating user with id {}: {}", id, e.getMessage());
 			throw e;
+		} finally {
+			metrics.record("UserService.partialUpdateUser", start, error);
 		}
 	}
 
 	private void checkUser(User user) {
 		LocalDate birthDate = user.getBirthDate();
 		if (birthDate != null) {
-			if (!birthDate.isBefore(LocalDate.now())) {
-				throw new BirthDateRestrictionException("Birth date value must be earlier than current date.");
+			String error = userValidator.birthDateError(birthDate);
+			if (error != null) {
+				throw new BirthDateRestrictionException(error);
 			}
+		}
+	}
+
+	private void checkVersion(User current, long expectedVersion) {
+		if (current.getVersion() != expectedVersion) {
+			throw new StaleVersionException("User with id " + current.getId() + " is at version " + current.getVersion() + ", not " + expectedVersion + ".");
+		}
+	}
 
-			if (!isUserOldEnough(birthDate)) {
-				throw new BirthDateRestrictionException("User must be at least " + minUserAge + " years old.");
+	private User save(User user) {
+		return userRepository.update(user)
+				.orElseThrow(() -> new UserNotFoundException("User with id " + user.getId() + " not found"));
+	}
+
+	@Override
+	public List<UserDTO> getUsersByBirthDateRange(String from, String to) {
+		LOGGER.debug("Fetching users by birth date range: from {} to {}", from, to);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			LocalDate fromDate = ConverterUtil.localDateFromString(from);
+			LocalDate toDate = ConverterUtil.localDateFromString(to);
+			checkDateRange(fromDate, toDate);
+
+			return userRepository.findByBirthDateRange(fromDate, toDate)
+					.stream()
+					.map(UserDTO::new)
+					.collect(Collectors.toList());
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error fetching users by birth date range: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.getUsersByBirthDateRange", start, error);
+		}
+	}
+
+	@Override
+	public UserPageDTO getUsersByBirthDateRange(String from, String to, int limit, String cursor) {
+		LOGGER.debug("Fetching page of {} users by birth date range: from {} to {} after {}", limit, from, to, cursor);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			LocalDate fromDate = ConverterUtil.localDateFromString(from);
+			LocalDate toDate = ConverterUtil.localDateFromString(to);
+			checkDateRange(fromDate, toDate);
+			if (limit < 1 || limit > maxPageLimit) {
+				throw new InvalidPageRequestException("Limit must be between 1 and " + maxPageLimit + ".");
+			}
+			BirthDateCursor after = cursor == null ? null : BirthDateCursor.decode(cursor);
+
+			List<User> users;
+			// Fetch one extra user to learn whether there is a next page
+			try (Stream<User> range = userRepository.streamByBirthDateRange(fromDate, toDate, after)) {
+				users = range.limit(limit + 1L)
+						.collect(Collectors.toList());
+			}
+			String nextCursor = null;
+			if (users.size() > limit) {
+				users = users.subList(0, limit);
+				nextCursor = BirthDateCursor.after(users.get(limit - 1))
+						.encode();
 			}
+			return new UserPageDTO(users.stream()
+					.map(UserDTO::new)
+					.collect(Collectors.toList()), nextCursor);
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error fetching page of users by birth date range: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.getUsersByBirthDateRangePage", start, error);
 		}
 	}
 
-	private boolean isUserOldEnough(LocalDate birthDate) {
-		LocalDate currentDate = LocalDate.now();
-		return Period.between(birthDate, currentDate)
-				.getYears() >= minUserAge;
+	@Override
+	public long countUsersByBirthDateRange(String from, String to) {
+		LOGGER.debug("Counting users by birth date range: from {} to {}", from, to);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			LocalDate fromDate = ConverterUtil.localDateFromString(from);
+			LocalDate toDate = ConverterUtil.localDateFromString(to);
+			checkDateRange(fromDate, toDate);
+
+			return userRepository.countByBirthDateRange(fromDate, toDate);
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error counting users by birth date range: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.countUsersByBirthDateRange", start, error);
+		}
 	}
 
-	private User getUserById(Long id) {
-		User user = readById(id);
-		if (user == null) {
-			throw new UserNotFoundException("User with id " + id + " not found");
+	@Override
+	public UserStatsDTO getStats() {
+		LOGGER.debug("Fetching user stats");
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			LocalDate today = LocalDate.now();
+			SortedMap<Integer, Long> ages = userRepository.countByAge(today);
+			long underMinAge = sum(ages.headMap(minUserAge));
+			long atLeastMinAge = sum(ages.tailMap(minUserAge));
+			return new UserStatsDTO(ConverterUtil.stringFromLocalDate(today), userRepository.count(), minUserAge, underMinAge, atLeastMinAge, ages,
+					userRepository.countByBirthYear());
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error fetching user stats: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.getStats", start, error);
 		}
-		return user;
 	}
 
-	public User readById(Long id) {
-		// find user by id
-		return new User();
+	private static long sum(Map<Integer, Long> counts) {
+		return counts.values()
+				.stream()
+				.mapToLong(Long::longValue)
+				.sum();
 	}
 
 	@Override
-	public List<UserDTO> getUsersByBirthDateRange(String from, String to) {
-		LOGGER.debug("Fetching users by birth date range: from {} to {}", from, to);
+	public Stream<UserDTO> streamUsersByBirthDateRange(String from, String to) {
+		LOGGER.debug("Streaming users by birth date range: from {} to {}", from, to);
+		long start = System.nanoTime();
+		Exception error = null;
 		try {
 			LocalDate fromDate = ConverterUtil.localDateFromString(from);
 			LocalDate toDate = ConverterUtil.localDateFromString(to);
+			checkDateRange(fromDate, toDate);
+
+			return openOnFirstRead(() -> userRepository.streamByBirthDateRange(fromDate, toDate))
+					.map(UserDTO::new);
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error streaming users by birth date range: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.streamUsersByBirthDateRange", start, error);
+		}
+	}
 
-			if (toDate.isBefore(fromDate)) {
-				throw new InvalidDateRangeException("'From' date must be before 'To' date.");
+	@Override
+	public List<UserDTO> queryUsers(UserQueryDTO queryDTO, int limit) {
+		LOGGER.debug("Querying users: {}, limit {}", queryDTO, limit);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			if (limit < 1 || limit > maxPageLimit) {
+				throw new InvalidPageRequestException("Limit must be between 1 and " + maxPageLimit + ".");
 			}
+			UserQuery query = toUserQuery(queryDTO);
 
-			// Fetch users from the repository
-			return Collections.emptyList();
+			try (Stream<User> users = userRepository.find(query)) {
+				return users.limit(limit)
+						.map(UserDTO::new)
+						.collect(Collectors.toList());
+			}
 		} catch (Exception e) {
-			LOGGER.error("Error fetching users by birth date range: {}", e.getMessage());
+			error = e;
+			LOGGER.error("Error querying users: {}", e.getMessage());
 			throw e;
+		} finally {
+			metrics.record("UserService.queryUsers", start, error);
+		}
+	}
+
+	@Override
+	public QueryPlanDTO explainQuery(UserQueryDTO queryDTO) {
+		LOGGER.debug("Explaining user query: {}", queryDTO);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			return new QueryPlanDTO(userRepository.explain(toUserQuery(queryDTO)));
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error explaining user query: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.explainQuery", start, error);
+		}
+	}
+
+	private UserQuery toUserQuery(UserQueryDTO queryDTO) {
+		UserQuery.UserQueryBuilder query = UserQuery.builder()
+				.email(queryDTO.getEmail())
+				.emailDomain(queryDTO.getEmailDomain())
+				.lastNamePrefix(queryDTO.getLastNamePrefix())
+				.hasPhone(queryDTO.getHasPhone());
+		if (queryDTO.getFrom() != null || queryDTO.getTo() != null) {
+			if (queryDTO.getFrom() == null || queryDTO.getTo() == null) {
+				throw new InvalidDateRangeException("'From' and 'To' dates must be given together.");
+			}
+			LocalDate fromDate = ConverterUtil.localDateFromString(queryDTO.getFrom());
+			LocalDate toDate = ConverterUtil.localDateFromString(queryDTO.getTo());
+			checkDateRange(fromDate, toDate);
+			query.birthDateFrom(fromDate)
+					.birthDateTo(toDate);
+		}
+		return query.build();
+	}
+
+	@Override
+	public List<UserDTO> searchUsersByName(String name, int limit) {
+		LOGGER.debug("Searching users by name: {}, limit {}", name, limit);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			if (NameSearch.words(name).length == 0) {
+				throw new InvalidSearchException("Name must not be blank.");
+			}
+			if (limit < 1 || limit > maxPageLimit) {
+				throw new InvalidPageRequestException("Limit must be between 1 and " + maxPageLimit + ".");
+			}
+
+			return userRepository.searchByName(name, limit)
+					.stream()
+					.map(UserDTO::new)
+					.collect(Collectors.toList());
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error searching users by name: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.searchUsersByName", start, error);
+		}
+	}
+
+	@Override
+	public Stream<UserDTO> streamUpcomingBirthdays(int days) {
+		LOGGER.debug("Streaming upcoming birthdays: {} days", days);
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			if (days < 1 || days > Birthdays.DAYS) {
+				throw new InvalidBirthdayWindowException("Days must be between 1 and " + Birthdays.DAYS + ".");
+			}
+
+			LocalDate today = LocalDate.now();
+			return openOnFirstRead(() -> userRepository.streamByUpcomingBirthday(today, days))
+					.map(UserDTO::new);
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error streaming upcoming birthdays: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.streamUpcomingBirthdays", start, error);
+		}
+	}
+
+	@Override
+	public Stream<UserDTO> exportUsers() {
+		LOGGER.debug("Exporting users");
+		long start = System.nanoTime();
+		Exception error = null;
+		try {
+			return openOnFirstRead(() -> userRepository.streamByBirthDateRange(LocalDate.MIN, LocalDate.MAX))
+					.map(UserDTO::new);
+		} catch (Exception e) {
+			error = e;
+			LOGGER.error("Error exporting users: {}", e.getMessage());
+			throw e;
+		} finally {
+			metrics.record("UserService.exportUsers", start, error);
+		}
+	}
+
+	/**
+	 * Defers opening a store stream, and the snapshot it pins, to the first
+	 * read, so a stream that is never read holds nothing and need not be
+	 * closed.
+	 */
+	private static Stream<User> openOnFirstRead(Supplier<Stream<User>> open) {
+		AtomicReference<Stream<User>> opened = new AtomicReference<>();
+		return StreamSupport.stream(() -> {
+			Stream<User> users = open.get();
+			opened.set(users);
+			return users.spliterator();
+		}, Spliterator.ORDERED, false)
+				.onClose(() -> {
+					Stream<User> users = opened.get();
+					if (users != null) {
+						users.close();
+					}
+				});
+	}
+
+	private void checkDateRange(LocalDate fromDate, LocalDate toDate) {
+		if (toDate.isBefore(fromDate)) {
+			throw new InvalidDateRangeException("'From' date must be before 'To' date.");
 		}
 	}
 
@@ -3,28 +3,158 @@ package com.drg.usersapi.utils;
 import com.drg.usersapi.exceptions.InvalidDateFormatException;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.Objects;
 
+/**
+ * Conversions between {@code yyyy-MM-dd} strings and dates.
+ * <p>
+ * Parsing is hand-written for the fixed layout: it validates digits,
+ * separators and calendar ranges without throwing or allocating, and
+ * reports failures as {@link #INVALID_EPOCH_DAY}. Formatted strings for
+ * dates between {@link #CACHE_FIRST_YEAR} and {@link #CACHE_LAST_YEAR} are
+ * cached, since birth dates fall in that range.
+ */
 public class ConverterUtil {
+	public static final int INVALID_EPOCH_DAY = Integer.MIN_VALUE;
 	static final private String PATTERN = "yyyy-MM-dd";
-	static final private DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+	public static final String INVALID_DATE_FORMAT_MESSAGE = "Invalid date format. Use: " + PATTERN;
+	static final private int LENGTH = PATTERN.length();
+	static final private int DAYS_0000_TO_1970 = 719528;
+	static final int CACHE_FIRST_YEAR = 1900;
+	static final int CACHE_LAST_YEAR = 2099;
+	static final private int CACHE_FIRST_DAY = (int) LocalDate.of(CACHE_FIRST_YEAR, 1, 1)
+			.toEpochDay();
+	static final private int CACHE_LAST_DAY = (int) LocalDate.of(CACHE_LAST_YEAR, 12, 31)
+			.toEpochDay();
+	// Racy single-check caching is safe: Strings are immutable and safely published
+	static final private String[] FORMATTED = new String[CACHE_LAST_DAY - CACHE_FIRST_DAY + 1];
 
 	public static LocalDate localDateFromString(String str) {
 		if (Objects.isNull(str)) {
 			return null;
 		}
-		try {
-			return LocalDate.parse(str, DATE_TIME_FORMATTER);
-		} catch (Exception e) {
-			throw new InvalidDateFormatException("Invalid date format. Use: " + PATTERN);
+		int epochDay = epochDayFromString(str);
+		if (epochDay == INVALID_EPOCH_DAY) {
+			throw new InvalidDateFormatException(INVALID_DATE_FORMAT_MESSAGE);
 		}
+		return LocalDate.ofEpochDay(epochDay);
 	}
 
 	public static String stringFromLocalDate(LocalDate localDate) {
 		if (Objects.isNull(localDate)) {
 			return null;
 		}
-		return localDate.format(DATE_TIME_FORMATTER);
+		if (localDate.getYear() < 1 || localDate.getYear() > 9999) {
+			return localDate.toString();
+		}
+		return stringFromEpochDay((int) localDate.toEpochDay());
+	}
+
+	public static boolean isValidDate(CharSequence str) {
+		return str != null && epochDayFromString(str) != INVALID_EPOCH_DAY;
+	}
+
+	/**
+	 * Parses a {@code yyyy-MM-dd} date with a year between 0001 and 9999.
+	 *
+	 * @return the epoch day, or {@link #INVALID_EPOCH_DAY} if {@code str} is
+	 * {@code null}, malformed or not a calendar date
+	 */
+	public static int epochDayFromString(CharSequence str) {
+		if (str == null || str.length() != LENGTH || str.charAt(4) != '-' || str.charAt(7) != '-') {
+			return INVALID_EPOCH_DAY;
+		}
+		int year = digits(str, 0, 4);
+		int month = digits(str, 5, 7);
+		int day = digits(str, 8, 10);
+		if (year < 1 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+			return INVALID_EPOCH_DAY;
+		}
+		return epochDay(year, month, day);
+	}
+
+	public static String stringFromEpochDay(int epochDay) {
+		if (epochDay < CACHE_FIRST_DAY || epochDay > CACHE_LAST_DAY) {
+			return format(epochDay);
+		}
+		int slot = epochDay - CACHE_FIRST_DAY;
+		String formatted = FORMATTED[slot];
+		if (formatted == null) {
+			formatted = format(epochDay);
+			FORMATTED[slot] = formatted;
+		}
+		return formatted;
+	}
+
+	private static String format(int epochDay) {
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+		int year = date.getYear();
+		if (year < 1 || year > 9999) {
+			// Outside the fixed layout, fall back to ISO formatting
+			return date.toString();
+		}
+		char[] chars = new char[LENGTH];
+		chars[0] = (char) ('0' + year / 1000);
+		chars[1] = (char) ('0' + year / 100 % 10);
+		chars[2] = (char) ('0' + year / 10 % 10);
+		chars[3] = (char) ('0' + year % 10);
+		chars[4] = '-';
+		chars[5] = (char) ('0' + date.getMonthValue() / 10);
+		chars[6] = (char) ('0' + date.getMonthValue() % 10);
+		chars[7] = '-';
+		chars[8] = (char) ('0' + date.getDayOfMonth() / 10);
+		chars[9] = (char) ('0' + date.getDayOfMonth() % 10);
+		return new String(chars);
+	}
+
+	/**
+	 * @return the value of the decimal digits in {@code [from, to)}, or
+	 * {@code -1} if any character is not a digit
+	 */
+	private static int digits(CharSequence str, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = str.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				return isLeapYear(year) ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	/**
+	 * Same arithmetic as {@link LocalDate#toEpochDay()}, restricted to
+	 * positive years.
+	 */
+	private static int epochDay(int year, int month, int day) {
+		int total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2) {
+			total--;
+			if (!isLeapYear(year)) {
+				total--;
+			}
+		}
+		return total - DAYS_0000_TO_1970;
 	}
 }
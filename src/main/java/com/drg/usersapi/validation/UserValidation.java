@@ -0,0 +1,26 @@
+package com.drg.usersapi.validation;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link UserValidator} check: the failing fields with their
+ * messages, or else the birth date error. {@link #getErrorType()} names the
+ * exception the same failure used to be raised as, so it is counted the same.
+ */
+@Getter
+@AllArgsConstructor
+public class UserValidation {
+	static final UserValidation VALID = new UserValidation(Collections.emptyMap(), null, null);
+
+	private final Map<String, String> fieldErrors;
+	private final String birthDateError;
+	private final Class<? extends Exception> errorType;
+
+	public boolean isValid() {
+		return errorType == null;
+	}
+}
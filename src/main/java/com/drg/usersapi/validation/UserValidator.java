@@ -0,0 +1,232 @@
+package com.drg.usersapi.validation;
+
+import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.exceptions.BirthDateRestrictionException;
+import com.drg.usersapi.exceptions.InvalidDateFormatException;
+import com.drg.usersapi.utils.ConverterUtil;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import javax.validation.constraints.NotBlank;
+import javax.validation.metadata.ConstraintDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks a {@link UserDTO} against the constraints of its {@link FullUpdate}
+ * or {@link PartialUpdate} group and the birth date rules in one pass,
+ * returning the failures instead of throwing them.
+ * <p>
+ * The checks of each group are built once from the constraint annotations on
+ * {@link UserDTO}. Each constraint is checked by the validator Bean
+ * Validation registers for it, created once, except {@link NotBlank}, which
+ * is tested in place. Messages are the ones Bean Validation gives for the
+ * request's locale, looked up once per constraint and locale.
+ */
+@Component
+public class UserValidator {
+	private static final int MAX_CACHED_LOCALES = 32;
+
+	@Value("${user.age.min}")
+	private int minUserAge;
+	@Autowired
+	private Validator validator;
+	@Autowired
+	private ValidatorFactory validatorFactory;
+	private final Map<Class<?>, List<Check>> checks = new ConcurrentHashMap<>();
+
+	/**
+	 * One constraint of a {@link UserDTO} property in one group.
+	 */
+	private static final class Check {
+		private final String property;
+		private final Method getter;
+		private final Class<?> group;
+		private final Annotation constraint;
+		// null for NotBlank
+		private final ConstraintValidator<Annotation, Object> validator;
+		private final Map<Locale, String> messages = new ConcurrentHashMap<>();
+
+		private Check(String property, Method getter, Class<?> group, Annotation constraint, ConstraintValidator<Annotation, Object> validator) {
+			this.property = property;
+			this.getter = getter;
+			this.group = group;
+			this.constraint = constraint;
+			this.validator = validator;
+		}
+
+		private boolean isValid(Object value) {
+			return validator == null ? !isBlank((String) value) : validator.isValid(value, null);
+		}
+	}
+
+	/**
+	 * The checks of {@code @Validated(FullUpdate.class)}, then the birth date
+	 * format and rules.
+	 */
+	public UserValidation validateFullUpdate(UserDTO user) {
+		Map<String, String> fieldErrors = fieldErrors(user, FullUpdate.class);
+		if (fieldErrors != null) {
+			return new UserValidation(fieldErrors, null, MethodArgumentNotValidException.class);
+		}
+		return validateBirthDate(user.getBirthDate());
+	}
+
+	/**
+	 * The checks of {@code @Validated(PartialUpdate.class)}, then the birth
+	 * date format and rules if a birth date is given.
+	 */
+	public UserValidation validatePartialUpdate(UserDTO user) {
+		Map<String, String> fieldErrors = fieldErrors(user, PartialUpdate.class);
+		if (fieldErrors != null) {
+			return new UserValidation(fieldErrors, null, MethodArgumentNotValidException.class);
+		}
+		String birthDate = user.getBirthDate();
+		return birthDate == null || birthDate.isEmpty() ? UserValidation.VALID : validateBirthDate(birthDate);
+	}
+
+	/**
+	 * @return why {@code birthDate} is not allowed, or {@code null} if it is
+	 */
+	public String birthDateError(LocalDate birthDate) {
+		LocalDate today = LocalDate.now();
+		if (!birthDate.isBefore(today)) {
+			return "Birth date value must be earlier than current date.";
+		}
+		if (Period.between(birthDate, today)
+				.getYears() < minUserAge) {
+			return "User must be at least " + minUserAge + " years old.";
+		}
+		return null;
+	}
+
+	private UserValidation validateBirthDate(String birthDate) {
+		int epochDay = ConverterUtil.epochDayFromString(birthDate);
+		if (epochDay == ConverterUtil.INVALID_EPOCH_DAY) {
+			return new UserValidation(Map.of(), ConverterUtil.INVALID_DATE_FORMAT_MESSAGE, InvalidDateFormatException.class);
+		}
+		String error = birthDateError(LocalDate.ofEpochDay(epochDay));
+		return error == null ? UserValidation.VALID : new UserValidation(Map.of(), error, BirthDateRestrictionException.class);
+	}
+
+	/**
+	 * @return the first failing constraint's message per property, or
+	 *         {@code null} if every constraint of {@code group} holds
+	 */
+	private Map<String, String> fieldErrors(UserDTO user, Class<?> group) {
+		Map<String, String> errors = null;
+		for (Check check : checks.computeIfAbsent(group, this::compileChecks)) {
+			if (errors != null && errors.containsKey(check.property)) {
+				continue;
+			}
+			Object value = ReflectionUtils.invokeMethod(check.getter, user);
+			if (!check.isValid(value)) {
+				errors = put(errors, check.property, message(check, value));
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Reads the constraints of {@code group} from {@link UserDTO}, ordered
+	 * by property with {@link NotBlank} first, so a blank value is reported
+	 * as blank rather than as malformed.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Check> compileChecks(Class<?> group) {
+		List<Check> compiled = new ArrayList<>();
+		for (PropertyDescriptor property : validator.getConstraintsForClass(UserDTO.class)
+				.getConstrainedProperties()) {
+			String name = property.getPropertyName();
+			Method getter = BeanUtils.getPropertyDescriptor(UserDTO.class, name)
+					.getReadMethod();
+			for (ConstraintDescriptor<?> descriptor : property.findConstraints()
+					.unorderedAndMatchingGroups(group)
+					.getConstraintDescriptors()) {
+				Annotation constraint = descriptor.getAnnotation();
+				ConstraintValidator<Annotation, Object> constraintValidator = null;
+				if (!(constraint instanceof NotBlank)) {
+					if (descriptor.getConstraintValidatorClasses()
+							.isEmpty()) {
+						throw new IllegalStateException("No validator registered for " + constraint + " on UserDTO." + name);
+					}
+					constraintValidator = (ConstraintValidator<Annotation, Object>) validatorFactory.getConstraintValidatorFactory()
+							.getInstance(descriptor.getConstraintValidatorClasses()
+									.get(0));
+					constraintValidator.initialize(constraint);
+				}
+				compiled.add(new Check(name, getter, group, constraint, constraintValidator));
+			}
+		}
+		compiled.sort(Comparator.comparing((Check check) -> check.property)
+				.thenComparing(check -> !(check.constraint instanceof NotBlank)));
+		return compiled;
+	}
+
+	/**
+	 * Looks up the message Bean Validation gives for the failed constraint
+	 * in the current locale.
+	 */
+	private String message(Check check, Object value) {
+		Locale locale = LocaleContextHolder.getLocale();
+		String cached = check.messages.get(locale);
+		if (cached != null) {
+			return cached;
+		}
+		for (ConstraintViolation<UserDTO> violation : validator.validateValue(UserDTO.class, check.property, value, check.group)) {
+			if (violation.getConstraintDescriptor()
+					.getAnnotation()
+					.equals(check.constraint)) {
+				// Locales come from request headers, so only a few are kept
+				if (check.messages.size() < MAX_CACHED_LOCALES) {
+					check.messages.put(locale, violation.getMessage());
+				}
+				return violation.getMessage();
+			}
+		}
+		throw new IllegalStateException(check.constraint + " on UserDTO." + check.property + " failed only outside Bean Validation");
+	}
+
+	private static Map<String, String> put(Map<String, String> errors, String field, String message) {
+		if (errors == null) {
+			errors = new HashMap<>();
+		}
+		errors.put(field, message);
+		return errors;
+	}
+
+	/**
+	 * Same test as {@link NotBlank}: {@code null}, or nothing but characters
+	 * {@link String#trim()} removes.
+	 */
+	private static boolean isBlank(String value) {
+		if (value == null) {
+			return true;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) > ' ') {
+				return false;
+			}
+		}
+		return true;
+	}
+}
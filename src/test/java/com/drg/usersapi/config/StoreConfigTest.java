@@ -0,0 +1,110 @@
+package com.drg.usersapi.config;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.enums.DurabilityMode;
+import com.drg.usersapi.enums.StoreEngine;
+import com.drg.usersapi.metrics.MetricsRegistry;
+import com.drg.usersapi.repositories.UserRepository;
+import com.drg.usersapi.repositories.impl.CachingUserRepository;
+import com.drg.usersapi.repositories.impl.DurableUserRepository;
+import com.drg.usersapi.repositories.impl.ShardedUserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class StoreConfigTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private UserRepository repository;
+
+	@Before
+	public void setup() {
+		StoreConfig config = new StoreConfig();
+		ReflectionTestUtils.setField(config, "engine", StoreEngine.OBJECTS);
+		ReflectionTestUtils.setField(config, "shards", 4);
+		ReflectionTestUtils.setField(config, "durability", DurabilityMode.ASYNC);
+		ReflectionTestUtils.setField(config, "walDirectory", folder.getRoot()
+				.toString());
+		ReflectionTestUtils.setField(config, "flushIntervalMillis", 5L);
+		ReflectionTestUtils.setField(config, "snapshotIntervalMillis", 60000L);
+		ReflectionTestUtils.setField(config, "cacheMaximumSize", 100L);
+		ReflectionTestUtils.setField(config, "metrics", new MetricsRegistry());
+		repository = config.userRepository();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		((Closeable) repository).close();
+	}
+
+	@Test
+	public void givenCachedDurableShards_whenFindByBirthDateRange_thenShardsAreQueriedInParallel() {
+		assertThat(repository, instanceOf(CachingUserRepository.class));
+		Object durable = ReflectionTestUtils.getField(repository, "delegate");
+		assertThat(durable, instanceOf(DurableUserRepository.class));
+		ShardedUserRepository sharded = spy((ShardedUserRepository) ReflectionTestUtils.getField(durable, "delegate"));
+		ReflectionTestUtils.setField(durable, "delegate", sharded);
+		for (int i = 0; i < 40; i++) {
+			repository.insert(User.builder()
+					.email("user" + i + "@mail.com")
+					.firstName("John")
+					.lastName("Smith")
+					.birthDate(LocalDate.of(1990, 1, 1)
+							.plusDays(i * 37 % 400))
+					.build());
+		}
+		LocalDate from = LocalDate.of(1990, 3, 1);
+		LocalDate to = LocalDate.of(1990, 9, 1);
+
+		List<User> found = repository.findByBirthDateRange(from, to);
+
+		verify(sharded).findByBirthDateRange(from, to);
+		verify(sharded, never()).streamByBirthDateRange(any(), any(), any());
+		assertThat(found.size(), is((int) repository.countByBirthDateRange(from, to)));
+		assertThat(found.stream()
+				.map(User::getBirthDate)
+				.sorted()
+				.collect(Collectors.toList()), is(found.stream()
+				.map(User::getBirthDate)
+				.collect(Collectors.toList())));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void givenCompactEngineWithShards_whenCreateRepository_thenIllegalStateException() {
+		StoreConfig config = new StoreConfig();
+		ReflectionTestUtils.setField(config, "engine", StoreEngine.COMPACT);
+		ReflectionTestUtils.setField(config, "shards", 4);
+		ReflectionTestUtils.setField(config, "metrics", new MetricsRegistry());
+
+		config.userRepository();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void givenHotCapacityWithShards_whenCreateRepository_thenIllegalStateException() {
+		StoreConfig config = new StoreConfig();
+		ReflectionTestUtils.setField(config, "engine", StoreEngine.OBJECTS);
+		ReflectionTestUtils.setField(config, "hotCapacity", 1000);
+		ReflectionTestUtils.setField(config, "shards", 4);
+		ReflectionTestUtils.setField(config, "metrics", new MetricsRegistry());
+
+		config.userRepository();
+	}
+}
@@ -1,7 +1,21 @@
 package com.drg.usersapi.controllers;
 
+import com.drg.usersapi.dto.BatchItemResultDTO;
+import com.drg.usersapi.dto.BatchResultDTO;
+import com.drg.usersapi.dto.ImportResultDTO;
+import com.drg.usersapi.dto.QueryPlanDTO;
 import com.drg.usersapi.dto.UserDTO;
+import com.drg.usersapi.dto.UserPageDTO;
+import com.drg.usersapi.dto.UserQueryDTO;
+import com.drg.usersapi.dto.UserStatsDTO;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.exceptions.InvalidBirthdayWindowException;
+import com.drg.usersapi.exceptions.InvalidSearchException;
+import com.drg.usersapi.exceptions.StaleVersionException;
+import com.drg.usersapi.exceptions.UserNotFoundException;
+import com.drg.usersapi.metrics.MetricsRegistry;
 import com.drg.usersapi.services.impl.UserServiceImpl;
+import com.drg.usersapi.validation.UserValidator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,24 +23,49 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(UserController.class)
+@Import({ MetricsRegistry.class, UserValidator.class })
 public class UserControllerTest {
 	@Autowired
 	private MockMvc mvc;
@@ -34,11 +73,15 @@ public class UserControllerTest {
 	@MockBean
 	private UserServiceImpl service;
 	private UserDTO user;
+	private UserDTO storedUser;
 	private static final String USERS_ENDPOINT = "/users";
 
 	@Before
 	public void setup() {
 		user = new UserDTO(1L, "example@mail.com", "John", "Tray", "1999-01-02", "Main St. Mankato Mississippi 96522", "212-456-7890");
+		storedUser = user.toBuilder()
+				.version(1L)
+				.build();
 	}
 
 	@Test
@@ -198,4 +241,297 @@ public class UserControllerTest {
 						.contentType(MediaType.APPLICATION_JSON))
 				.andExpect(status().isBadRequest());
 	}
+
+	@Test
+	public void givenUsers_whenStreamUsersByBirthDateRangeAsNdjson_thenReturnOneJsonObjectPerLine() throws Exception {
+		UserDTO other = user.toBuilder()
+				.id(2L)
+				.build();
+		given(service.streamUsersByBirthDateRange("2022-01-01", "2022-01-03")).willReturn(Stream.of(user, other));
+
+		MvcResult result = mvc.perform(get(USERS_ENDPOINT + "?from=2022-01-01&to=2022-01-03").accept(UserController.APPLICATION_NDJSON_VALUE))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(UserController.APPLICATION_NDJSON_VALUE))
+				.andExpect(content().string(asJsonString(user) + "\n" + asJsonString(other) + "\n"));
+	}
+
+	@Test
+	public void givenUsers_whenStreamUsersByBirthDateRangeAsArray_thenReturnJsonArray() throws Exception {
+		given(service.streamUsersByBirthDateRange("2022-01-01", "2022-01-03")).willReturn(Stream.of(user));
+
+		MvcResult result = mvc.perform(get(USERS_ENDPOINT + "?from=2022-01-01&to=2022-01-03&stream=true"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].first_name", is(user.getFirstName())));
+	}
+
+	@Test
+	public void givenMoreUsersThanLimit_whenGetUsersByBirthDateRangePage_thenReturnNextLink() throws Exception {
+		given(service.getUsersByBirthDateRange("2022-01-01", "2022-01-03", 1, null)).willReturn(
+				new UserPageDTO(Collections.singletonList(user), "next-page"));
+
+		mvc.perform(get(USERS_ENDPOINT + "?from=2022-01-01&to=2022-01-03&limit=1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(header().string("Link", containsString("cursor=next-page")))
+				.andExpect(header().string("Link", containsString("rel=\"next\"")));
+	}
+
+	@Test
+	public void givenCursorWithoutLimit_whenGetUsersByBirthDateRange_thenReturnBadRequest() throws Exception {
+		mvc.perform(get(USERS_ENDPOINT + "?from=2022-01-01&to=2022-01-03&cursor=abc"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void givenNdjsonUsers_whenInsertBatch_thenReturnPerItemResults() throws Exception {
+		BatchResultDTO batchResult = new BatchResultDTO(1, 1,
+				Arrays.asList(new BatchItemResultDTO(0, user, null), new BatchItemResultDTO(1, null, Collections.singletonMap("email", "must not be blank"))));
+		given(service.insertAll(argThat(users -> users.size() == 2))).willReturn(batchResult);
+
+		mvc.perform(post(USERS_ENDPOINT + "/batch").contentType(UserController.APPLICATION_NDJSON_VALUE)
+						.content(asJsonString(user) + "\n" + asJsonString(new UserDTO()) + "\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created", is(1)))
+				.andExpect(jsonPath("$.items[0].user.first_name", is(user.getFirstName())))
+				.andExpect(jsonPath("$.items[1].index", is(1)))
+				.andExpect(jsonPath("$.items[1].errors.email", is("must not be blank")));
+	}
+
+	@Test
+	public void givenMalformedNdjson_whenInsertBatch_thenReturnBadRequest() throws Exception {
+		mvc.perform(post(USERS_ENDPOINT + "/batch").contentType(UserController.APPLICATION_NDJSON_VALUE)
+						.content("{\"email\": \"example@mail.com\" \"first_name\": \"John\"}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void givenUsers_whenExportUsers_thenReturnGzippedNdjson() throws Exception {
+		UserDTO other = storedUser.toBuilder()
+				.id(2L)
+				.build();
+		given(service.exportUsers()).willReturn(Stream.of(storedUser, other));
+
+		MvcResult result = mvc.perform(get(USERS_ENDPOINT + "/export"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		byte[] body = mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(UserController.APPLICATION_GZIP_VALUE))
+				.andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("users.ndjson.gz")))
+				.andReturn()
+				.getResponse()
+				.getContentAsByteArray();
+
+		try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8),
+					is(asJsonString(storedUser) + "\n" + asJsonString(other) + "\n"));
+		}
+	}
+
+	@Test
+	public void givenGzippedUsers_whenImportUsers_thenUsersReadWithIdsAndVersions() throws Exception {
+		List<UserDTO> imported = new ArrayList<>();
+		given(service.importUsers(any())).willAnswer(invocation -> {
+			Iterator<UserDTO> users = invocation.getArgument(0);
+			users.forEachRemaining(imported::add);
+			return new ImportResultDTO(imported.size(), 0, List.of());
+		});
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (GZIPOutputStream output = new GZIPOutputStream(body)) {
+			output.write((asJsonString(storedUser) + "\n" + asJsonString(storedUser) + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		mvc.perform(post(USERS_ENDPOINT + "/import").contentType(UserController.APPLICATION_GZIP_VALUE)
+						.content(body.toByteArray()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.imported", is(2)))
+				.andExpect(jsonPath("$.failed", is(0)));
+		assertThat(imported, hasSize(2));
+		assertThat(imported.get(0)
+				.getId(), is(1L));
+		assertThat(imported.get(0)
+				.getVersion(), is(1L));
+	}
+
+	@Test
+	public void givenCorruptGzip_whenImportUsers_thenReturnBadRequest() throws Exception {
+		mvc.perform(post(USERS_ENDPOINT + "/import").contentType(UserController.APPLICATION_GZIP_VALUE)
+						.content(asJsonString(user)))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void givenUser_whenGetUser_thenReturnUserWithETag() throws Exception {
+		given(service.getUser(1L)).willReturn(user.toBuilder()
+				.version(3L)
+				.build());
+
+		mvc.perform(get(USERS_ENDPOINT + "/1"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+				.andExpect(jsonPath("$.version", is(3)));
+	}
+
+	@Test
+	public void givenMatchingIfNoneMatch_whenGetUser_thenReturnNotModifiedWithoutBody() throws Exception {
+		given(service.getUser(1L)).willReturn(user.toBuilder()
+				.version(3L)
+				.build());
+
+		mvc.perform(get(USERS_ENDPOINT + "/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+				.andExpect(content().string(""));
+	}
+
+	@Test
+	public void givenMissingUser_whenGetUser_thenReturnNotFound() throws Exception {
+		given(service.getUser(1L)).willThrow(new UserNotFoundException("User with id 1 not found"));
+
+		mvc.perform(get(USERS_ENDPOINT + "/1"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void givenStaleIfMatch_whenPartialUpdateUser_thenReturnPreconditionFailed() throws Exception {
+		given(service.partialUpdateUser(eq(1L), any(UserDTO.class), eq(2L))).willThrow(new StaleVersionException("User with id 1 is at version 3, not 2."));
+
+		mvc.perform(patch(USERS_ENDPOINT + "/1").contentType(MediaType.APPLICATION_JSON)
+						.header(HttpHeaders.IF_MATCH, "\"2\"")
+						.content("{\"first_name\": \"Jane\"}"))
+				.andExpect(status().isPreconditionFailed());
+	}
+
+	@Test
+	public void givenMalformedIfMatch_whenUpdateUser_thenReturnPreconditionFailed() throws Exception {
+		mvc.perform(put(USERS_ENDPOINT + "/1").contentType(MediaType.APPLICATION_JSON)
+						.header(HttpHeaders.IF_MATCH, "W/\"2\"")
+						.content(asJsonString(user)))
+				.andExpect(status().isPreconditionFailed());
+	}
+
+	@Test
+	public void givenUsers_whenCountUsersByBirthDateRange_thenReturnCount() throws Exception {
+		given(service.countUsersByBirthDateRange("2022-01-01", "2022-01-03")).willReturn(42L);
+
+		mvc.perform(get(USERS_ENDPOINT + "/count?from=2022-01-01&to=2022-01-03"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.count", is(42)));
+	}
+
+	@Test
+	public void givenUsers_whenGetUsersByBirthDateRange_thenReturnTotalCountHeader() throws Exception {
+		given(service.getUsersByBirthDateRange("2022-01-01", "2022-01-03")).willReturn(Arrays.asList(user));
+		// A separate count could disagree with the list under concurrent writes
+		given(service.countUsersByBirthDateRange("2022-01-01", "2022-01-03")).willReturn(2L);
+
+		mvc.perform(get(USERS_ENDPOINT + "?from=2022-01-01&to=2022-01-03"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(UserController.TOTAL_COUNT_HEADER, "1"));
+	}
+
+	@Test
+	public void givenStats_whenGetStats_thenReturnAggregates() throws Exception {
+		given(service.getStats()).willReturn(new UserStatsDTO("2024-01-01", 3, 18, 1, 2, new TreeMap<>(Map.of(17, 1L, 30, 2L)),
+				new TreeMap<>(Map.of(1993, 2L, 2006, 1L))));
+
+		mvc.perform(get(USERS_ENDPOINT + "/stats"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.under_min_age", is(1)))
+				.andExpect(jsonPath("$.ages.30", is(2)))
+				.andExpect(jsonPath("$.birth_years.1993", is(2)));
+	}
+
+	@Test
+	public void givenUpcomingBirthdays_whenGetBirthdays_thenReturnJsonArray() throws Exception {
+		given(service.streamUpcomingBirthdays(7)).willReturn(Stream.of(user));
+
+		MvcResult result = mvc.perform(get(USERS_ENDPOINT + "/birthdays?days=7"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].birth_date", is(user.getBirthDate())));
+	}
+
+	@Test
+	public void givenTooManyDays_whenGetBirthdays_thenReturnBadRequest() throws Exception {
+		given(service.streamUpcomingBirthdays(400)).willThrow(new InvalidBirthdayWindowException("Days must be between 1 and 366."));
+
+		mvc.perform(get(USERS_ENDPOINT + "/birthdays?days=400"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void givenUser_whenGetUserByEmail_thenReturnUser() throws Exception {
+		given(service.getUserByEmail("EXAMPLE@mail.com")).willReturn(user.toBuilder()
+				.version(2L)
+				.build());
+
+		mvc.perform(get(USERS_ENDPOINT + "?email=EXAMPLE@mail.com"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+				.andExpect(jsonPath("$.id", is(1)));
+	}
+
+	@Test
+	public void givenTakenEmail_whenCreateUser_thenReturnConflict() throws Exception {
+		given(service.insert(any(UserDTO.class))).willThrow(new DuplicateEmailException("User with email example@mail.com already exists"));
+
+		mvc.perform(post(USERS_ENDPOINT).contentType(MediaType.APPLICATION_JSON)
+						.content(asJsonString(user)))
+				.andExpect(status().isConflict());
+	}
+
+	@Test
+	public void givenMatchingUsers_whenSearchUsersByName_thenReturnRankedUsers() throws Exception {
+		given(service.searchUsersByName("tra", 5)).willReturn(List.of(user));
+
+		mvc.perform(get(USERS_ENDPOINT + "/search?name=tra&limit=5"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].last_name", is(user.getLastName())));
+	}
+
+	@Test
+	public void givenBlankName_whenSearchUsersByName_thenReturnBadRequest() throws Exception {
+		given(service.searchUsersByName(" ", 20)).willThrow(new InvalidSearchException("Name must not be blank."));
+
+		mvc.perform(get(USERS_ENDPOINT + "/search?name= "))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void givenPredicates_whenQueryUsers_thenReturnMatchingUsers() throws Exception {
+		UserQueryDTO query = new UserQueryDTO("1990-01-01", "2000-01-01", null, "mail.com", "tr", true);
+		given(service.queryUsers(query, 10)).willReturn(List.of(user));
+
+		mvc.perform(get(USERS_ENDPOINT + "/query?from=1990-01-01&to=2000-01-01&email_domain=mail.com&last_name_prefix=tr&has_phone=true&limit=10"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].email", is(user.getEmail())));
+	}
+
+	@Test
+	public void givenExplain_whenQueryUsers_thenReturnPlan() throws Exception {
+		UserQueryDTO query = new UserQueryDTO(null, null, "example@mail.com", null, null, true);
+		given(service.explainQuery(query)).willReturn(new QueryPlanDTO("EMAIL_HASH", 1, 1, List.of("has_phone = true")));
+
+		mvc.perform(get(USERS_ENDPOINT + "/query?email=example@mail.com&has_phone=true&explain=true"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.access_path", is("EMAIL_HASH")))
+				.andExpect(jsonPath("$.estimated_rows", is(1)))
+				.andExpect(jsonPath("$.filters[0]", is("has_phone = true")));
+	}
 }
@@ -0,0 +1,92 @@
+package com.drg.usersapi.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class UserJsonSerializerTest {
+	private static final List<UserDTO> USERS = List.of(UserDTO.builder()
+			.id(1L)
+			.email("example@mail.com")
+			.firstName("John")
+			.lastName("Tray")
+			.birthDate("1999-01-02")
+			.address("Main St. Mankato Mississippi 96522")
+			.phoneNumber("212-456-7890")
+			.version(3L)
+			.build(), UserDTO.builder()
+			.email("quote\"back\\slash@mail.com")
+			.firstName("Zo\u00EB")
+			.lastName("\u00D8rsted \u20AC \uD83D\uDE00")
+			.birthDate("1850-12-31")
+			.address("line\nbreak\ttab\u0001")
+			.build(), UserDTO.builder()
+			.id(Long.MAX_VALUE)
+			.version(Long.MIN_VALUE)
+			.build());
+
+	private final ObjectMapper beanMapper = new ObjectMapper();
+	private final ObjectMapper directMapper = new ObjectMapper().registerModule(new SimpleModule().addSerializer(new UserJsonSerializer()));
+
+	@Test
+	public void givenUsers_whenSerializeToBytes_thenSameAsBeanSerializer() throws IOException {
+		assertThat(directMapper.writeValueAsBytes(USERS), is(beanMapper.writeValueAsBytes(USERS)));
+	}
+
+	@Test
+	public void givenUsers_whenSerializeToStringOrPrettyPrint_thenSameAsBeanSerializer() throws IOException {
+		assertThat(directMapper.writeValueAsString(USERS), is(beanMapper.writeValueAsString(USERS)));
+		assertThat(directMapper.writer(SerializationFeature.INDENT_OUTPUT)
+				.writeValueAsBytes(USERS), is(beanMapper.writer(SerializationFeature.INDENT_OUTPUT)
+				.writeValueAsBytes(USERS)));
+	}
+
+	@Test
+	public void givenUsers_whenEncode_thenSameAsBeanSerializer() throws IOException {
+		UserJsonEncoder encoder = new UserJsonEncoder(16);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		for (UserDTO user : USERS) {
+			encoder.append(user);
+			encoder.drainTo(output);
+
+			assertThat(output.toByteArray(), is(beanMapper.writeValueAsBytes(user)));
+			output.reset();
+		}
+	}
+
+	@Test
+	public void givenEncodedUsers_whenRead_thenSameDtosWithVersions() throws IOException {
+		UserJsonEncoder encoder = new UserJsonEncoder(16);
+		for (UserDTO user : USERS) {
+			encoder.append(user);
+			encoder.append((byte) '\n');
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		encoder.drainTo(output);
+
+		List<UserDTO> read = new ArrayList<>();
+		try (UserJsonReader reader = new UserJsonReader(beanMapper.getFactory(), new ByteArrayInputStream(output.toByteArray()))) {
+			reader.forEachRemaining(read::add);
+		}
+
+		assertThat(read, is(USERS));
+	}
+
+	@Test(expected = UncheckedIOException.class)
+	public void givenMalformedJson_whenRead_thenUncheckedIOException() throws IOException {
+		try (UserJsonReader reader = new UserJsonReader(beanMapper.getFactory(), new ByteArrayInputStream("{\"id\": \"1\"}".getBytes()))) {
+			reader.next();
+		}
+	}
+}
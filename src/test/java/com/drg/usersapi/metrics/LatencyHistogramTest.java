@@ -0,0 +1,36 @@
+package com.drg.usersapi.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LatencyHistogramTest {
+	@Test
+	public void givenValues_whenBucketed_thenBucketBoundsContainValueWithinPrecision() {
+		for (long value = 0; value < 1_000_000; value += 7) {
+			long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+			assertThat(highest, greaterThanOrEqualTo(value));
+			assertThat(highest - value, lessThanOrEqualTo(value / 16));
+		}
+		assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void givenUniformLatencies_whenSnapshot_thenQuantilesAreWithinPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+		assertThat(snapshot.getCount(), is(1000L));
+		assertThat(snapshot.getMaxNanos(), is(1_000_000L));
+		assertThat(snapshot.valueAtQuantile(0.5), greaterThanOrEqualTo(500_000L));
+		assertThat(snapshot.valueAtQuantile(0.5), lessThanOrEqualTo(500_000L + 500_000L / 16));
+		assertThat(snapshot.valueAtQuantile(1.0), is(1_000_000L));
+	}
+}
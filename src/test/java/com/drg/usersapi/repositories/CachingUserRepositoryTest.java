@@ -0,0 +1,100 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.repositories.impl.CachingUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class CachingUserRepositoryTest {
+	private CachingUserRepository repository;
+
+	@Before
+	public void setup() {
+		repository = new CachingUserRepository(new InMemoryUserRepository(), 1000, 0);
+	}
+
+	@Test
+	public void givenCachedUser_whenUpdateAndDelete_thenFindByIdSeesEveryChange() {
+		User user = repository.insert(user("first"));
+		repository.findById(user.getId());
+
+		user.setFirstName("second");
+		repository.update(user);
+		assertThat(repository.findById(user.getId())
+				.get()
+				.getFirstName(), is("second"));
+
+		repository.delete(user.getId());
+		assertThat(repository.findById(user.getId())
+				.isPresent(), is(false));
+		assertThat(repository.stats()
+				.hitCount(), is(0L));
+		assertThat(repository.stats()
+				.missCount(), is(3L));
+	}
+
+	@Test
+	public void givenReturnedUser_whenMutated_thenCachedUserIsUnchanged() {
+		User user = repository.insert(user("first"));
+
+		repository.findById(user.getId())
+				.get()
+				.setFirstName("changed");
+
+		assertThat(repository.findById(user.getId())
+				.get()
+				.getFirstName(), is("first"));
+		assertThat(repository.stats()
+				.hitCount(), is(1L));
+	}
+
+	@Test
+	public void givenConcurrentReaders_whenUpdate_thenNoReaderSeesOlderVersionAfterWriteReturns() throws Exception {
+		User user = repository.insert(user("0"));
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService readers = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[4];
+			for (int i = 0; i < futures.length; i++) {
+				futures[i] = readers.submit(() -> {
+					while (running.get()) {
+						repository.findById(user.getId());
+					}
+				});
+			}
+			for (int version = 1; version <= 2000; version++) {
+				user.setFirstName(String.valueOf(version));
+				repository.update(user);
+				assertThat(repository.findById(user.getId())
+						.get()
+						.getFirstName(), is(String.valueOf(version)));
+			}
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			running.set(false);
+			readers.shutdownNow();
+		}
+	}
+
+	private static User user(String firstName) {
+		return User.builder()
+				.email(firstName + "@example.com")
+				.firstName(firstName)
+				.lastName("Smith")
+				.birthDate(LocalDate.parse("1990-01-01"))
+				.build();
+	}
+}
@@ -0,0 +1,173 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.repositories.impl.CompactUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class CompactUserRepositoryTest {
+	private static final String[] LAST_NAMES = { "Smith", "Smithers", "Tray", "Łukasiewicz", "Jones" };
+
+	private CompactUserRepository compact;
+	private InMemoryUserRepository objects;
+
+	@Before
+	public void setup() {
+		compact = new CompactUserRepository();
+		objects = new InMemoryUserRepository();
+		Random random = new Random(11);
+		for (int i = 0; i < 500; i++) {
+			User user = User.builder()
+					.email("user" + i + "@mail.com")
+					.firstName(i % 3 == 0 ? "Zoë" : "John")
+					.lastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+					.birthDate(i % 50 == 0 ? null : LocalDate.of(1990, 1, 1)
+							.plusDays(random.nextInt(3000)))
+					.phoneNumber(i % 2 == 0 ? null : "+1 555 01" + i)
+					.build();
+			compact.insert(user);
+			objects.insert(user);
+		}
+		for (long id = 1; id <= 500; id += 7) {
+			compact.delete(id);
+			objects.delete(id);
+		}
+		for (long id = 3; id <= 500; id += 11) {
+			LocalDate birthDate = LocalDate.of(1985, 2, 28)
+					.plusDays(id);
+			compact.update(id, user -> user.toBuilder()
+					.birthDate(birthDate)
+					.address("Unit " + birthDate)
+					.build());
+			objects.update(id, user -> user.toBuilder()
+					.birthDate(birthDate)
+					.address("Unit " + birthDate)
+					.build());
+		}
+	}
+
+	@Test
+	public void givenSameWrites_whenRead_thenMatchObjectStore() {
+		assertThat(compact.count(), is(objects.count()));
+		for (long id = 1; id <= 500; id++) {
+			assertThat(compact.findById(id), is(objects.findById(id)));
+		}
+		assertThat(sorted(compact.findAll()), is(sorted(objects.findAll())));
+		LocalDate from = LocalDate.of(1985, 1, 1);
+		LocalDate to = LocalDate.of(1996, 1, 1);
+		assertThat(compact.findByBirthDateRange(from, to), is(objects.findByBirthDateRange(from, to)));
+		assertThat(compact.countByBirthDateRange(from, to), is(objects.countByBirthDateRange(from, to)));
+		assertThat(compact.countByBirthYear(), is(objects.countByBirthYear()));
+		assertThat(compact.searchByName("zoe smi", 20), is(objects.searchByName("zoe smi", 20)));
+		assertThat(compact.findByEmail(" USER2@mail.com"), is(objects.findByEmail(" USER2@mail.com")));
+	}
+
+	@Test
+	public void givenCursor_whenStreamByBirthDateRange_thenPagesMatchObjectStore() {
+		LocalDate from = LocalDate.of(1985, 1, 1);
+		LocalDate to = LocalDate.of(1996, 1, 1);
+		List<User> expected = objects.findByBirthDateRange(from, to);
+		User middle = expected.get(expected.size() / 2);
+
+		List<User> rest;
+		try (Stream<User> users = compact.streamByBirthDateRange(from, to, BirthDateCursor.after(middle))) {
+			rest = users.collect(Collectors.toList());
+		}
+
+		assertThat(rest, is(expected.subList(expected.size() / 2 + 1, expected.size())));
+	}
+
+	@Test
+	public void givenOpenStream_whenUsersChange_thenStreamShowsStoreAsOpened() {
+		LocalDate from = LocalDate.of(1980, 1, 1);
+		LocalDate to = LocalDate.of(2000, 1, 1);
+		List<User> before = compact.findByBirthDateRange(from, to);
+
+		List<User> seen;
+		try (Stream<User> users = compact.streamByBirthDateRange(from, to)) {
+			// Move every user past the range, delete some and add one at its start
+			before.forEach(user -> compact.update(user.getId(), current -> current.toBuilder()
+					.birthDate(LocalDate.of(2005, 1, 1))
+					.build()));
+			for (long id = 2; id <= 500; id += 5) {
+				compact.delete(id);
+			}
+			compact.insert(User.builder()
+					.email("late@mail.com")
+					.birthDate(from)
+					.build());
+			seen = users.collect(Collectors.toList());
+		}
+
+		assertThat(seen, is(before));
+		assertThat(compact.countByBirthDateRange(from, to), is(1L));
+	}
+
+	@Test
+	public void givenTakenEmail_whenInsertOrUpdate_thenRejectAndKeepStoreUnchanged() {
+		User other = compact.findById(2L)
+				.orElseThrow();
+
+		assertThat(rejectedAsDuplicate(() -> compact.insert(other.toBuilder()
+				.email(other.getEmail()
+						.toUpperCase())
+				.build())), is(true));
+		assertThat(rejectedAsDuplicate(() -> compact.update(3L, user -> user.toBuilder()
+				.email(other.getEmail())
+				.build())), is(true));
+		assertThat(compact.findById(3L), is(objects.findById(3L)));
+		assertThat(compact.count(), is(objects.count()));
+	}
+
+	@Test
+	public void givenChurn_whenStringsBecomeGarbage_thenArenaIsCompacted() {
+		String padding = "x".repeat(1000);
+		long baseline = compact.estimatedBytes();
+
+		for (int round = 0; round < 60; round++) {
+			String address = round + padding;
+			for (long id = 2; id <= 500; id += 7) {
+				compact.update(id, user -> user.toBuilder()
+						.address(address)
+						.build());
+			}
+		}
+
+		assertThat(compact.estimatedBytes() - baseline, lessThan(4L << 20));
+		assertThat(compact.findById(2L)
+				.orElseThrow()
+				.getAddress(), is(59 + padding));
+		assertThat(compact.findById(4L)
+				.orElseThrow(), is(objects.findById(4L)
+				.orElseThrow()));
+	}
+
+	private static List<User> sorted(Stream<User> users) {
+		try (users) {
+			return users.sorted(Comparator.comparing(User::getId))
+					.collect(Collectors.toList());
+		}
+	}
+
+	private static boolean rejectedAsDuplicate(Runnable write) {
+		try {
+			write.run();
+			return false;
+		} catch (DuplicateEmailException e) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.enums.DurabilityMode;
+import com.drg.usersapi.repositories.impl.DurableUserRepository;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.persistence.SnapshotFile;
+import com.drg.usersapi.repositories.persistence.WriteAheadLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class DurableUserRepositoryTest {
+	private static final AtomicLong EMAIL_SEQUENCE = new AtomicLong();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void givenWrites_whenReopened_thenStateIsReplayedFromLog() throws IOException {
+		Path directory = folder.getRoot()
+				.toPath();
+		User kept;
+		User deleted;
+		try (DurableUserRepository repository = open(directory)) {
+			kept = repository.insert(user("1990-01-01"));
+			deleted = repository.insert(user("1991-01-01"));
+			kept.setFirstName("Jane");
+			repository.update(kept);
+			repository.delete(deleted.getId());
+		}
+
+		try (DurableUserRepository repository = open(directory)) {
+			assertThat(repository.count(), is(1L));
+			assertThat(repository.findById(kept.getId())
+					.get()
+					.getFirstName(), is("Jane"));
+			assertThat(repository.insert(user("1992-01-01"))
+					.getId() > deleted.getId(), is(true));
+		}
+	}
+
+	@Test
+	public void givenCompaction_whenReopened_thenStateIsRestoredFromSnapshotAndTail() throws IOException {
+		Path directory = folder.getRoot()
+				.toPath();
+		User beforeSnapshot;
+		User afterSnapshot;
+		try (DurableUserRepository repository = open(directory)) {
+			beforeSnapshot = repository.insert(user("1990-01-01"));
+			repository.compact();
+			afterSnapshot = repository.insert(user("1991-01-01"));
+		}
+
+		try (DurableUserRepository repository = open(directory)) {
+			assertThat(repository.count(), is(2L));
+			assertThat(repository.findById(beforeSnapshot.getId())
+					.isPresent(), is(true));
+			assertThat(repository.findById(afterSnapshot.getId())
+					.isPresent(), is(true));
+		}
+	}
+
+	@Test
+	public void givenSnapshotOfSeveralChunks_whenReopened_thenEveryUserIsRestored() throws IOException {
+		Path directory = folder.getRoot()
+				.toPath();
+		int count = 2 * SnapshotFile.CHUNK_RECORDS + 1000;
+		Map<Long, User> expected = new HashMap<>();
+		try (DurableUserRepository repository = open(directory)) {
+			for (int inserted = 0; inserted < count; inserted += 10_000) {
+				List<User> batch = new ArrayList<>();
+				for (int i = inserted; i < Math.min(count, inserted + 10_000); i++) {
+					batch.add(user(LocalDate.of(1950, 1, 1)
+							.plusDays(i % 20_000)
+							.toString()));
+				}
+				repository.insertAll(batch)
+						.forEach(user -> expected.put(user.getId(), user));
+			}
+			for (long id = 1; id <= count; id += 997) {
+				repository.update(id, user -> user.toBuilder()
+								.firstName("Jane")
+								.build())
+						.ifPresent(user -> expected.put(user.getId(), user));
+			}
+			for (long id = 5; id <= count; id += 1009) {
+				repository.delete(id);
+				expected.remove(id);
+			}
+			repository.compact();
+		}
+
+		try (DurableUserRepository repository = open(directory)) {
+			assertThat(repository.count(), is((long) expected.size()));
+			Map<Long, User> restored;
+			try (Stream<User> users = repository.findAll()) {
+				restored = users.collect(Collectors.toMap(User::getId, user -> user));
+			}
+			assertThat(restored, is(expected));
+		}
+	}
+
+	@Test
+	public void givenCorruptRecordBeforeLaterSegment_whenReopened_thenLogIsCutAtTheCorruptRecord() throws IOException {
+		Path directory = folder.getRoot()
+				.toPath();
+		User kept;
+		User corrupted;
+		User afterGap;
+		try (DurableUserRepository repository = open(directory)) {
+			kept = repository.insert(user("1990-01-01"));
+			corrupted = repository.insert(user("1991-01-01"));
+		}
+		try (DurableUserRepository repository = open(directory)) {
+			afterGap = repository.insert(user("1992-01-01"));
+		}
+		List<Path> segments;
+		try (Stream<Path> files = Files.list(directory)) {
+			segments = files.filter(path -> path.getFileName()
+							.toString()
+							.startsWith("wal-"))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+		byte[] first = Files.readAllBytes(segments.get(0));
+		// Flip a byte of the last record's checksum
+		first[first.length - 1] ^= 1;
+		Files.write(segments.get(0), first);
+
+		User inserted;
+		try (DurableUserRepository repository = open(directory)) {
+			assertThat(repository.count(), is(1L));
+			assertThat(repository.findById(kept.getId())
+					.isPresent(), is(true));
+			assertThat(repository.findById(corrupted.getId())
+					.isPresent(), is(false));
+			assertThat(repository.findById(afterGap.getId())
+					.isPresent(), is(false));
+			inserted = repository.insert(user("1993-01-01"));
+		}
+
+		try (DurableUserRepository repository = open(directory)) {
+			assertThat(repository.count(), is(2L));
+			assertThat(repository.findById(inserted.getId())
+					.isPresent(), is(true));
+		}
+	}
+
+	@Test
+	public void givenFailingAppend_whenWrite_thenStoreIsLeftUnchanged() throws IOException {
+		Path directory = folder.getRoot()
+				.toPath();
+		AtomicBoolean failing = new AtomicBoolean();
+		WriteAheadLog log = new WriteAheadLog(directory, DurabilityMode.DURABLE, 5) {
+			@Override
+			public long append(byte op, byte[] payload) {
+				if (failing.get()) {
+					throw new UncheckedIOException(new IOException("Disk full"));
+				}
+				return super.append(op, payload);
+			}
+		};
+		try (DurableUserRepository repository = new DurableUserRepository(new InMemoryUserRepository(), log, directory, TimeUnit.HOURS.toMillis(1))) {
+			User existing = repository.insert(user("1990-01-01"));
+			failing.set(true);
+
+			assertThat(fails(() -> repository.update(existing.getId(), user -> {
+				user.setFirstName("Jane");
+				return user;
+			})), is(true));
+			assertThat(fails(() -> repository.update(existing.toBuilder()
+					.firstName("Jane")
+					.build())), is(true));
+			assertThat(fails(() -> repository.put(existing.toBuilder()
+					.firstName("Jane")
+					.version(7)
+					.build())), is(true));
+			assertThat(fails(() -> repository.delete(existing.getId())), is(true));
+			assertThat(fails(() -> repository.insert(user("1991-01-01"))), is(true));
+
+			assertThat(repository.count(), is(1L));
+			assertThat(repository.findById(existing.getId())
+					.orElseThrow(), is(existing));
+		}
+	}
+
+	@Test
+	public void givenPutAll_whenReopened_thenUsersKeepTheirIdsAndVersions() throws IOException {
+		Path directory = folder.getRoot()
+				.toPath();
+		try (DurableUserRepository repository = open(directory)) {
+			repository.putAll(List.of(user("1990-01-01").toBuilder()
+					.id(7L)
+					.version(3)
+					.build(), user("1991-01-01").toBuilder()
+					.id(42L)
+					.version(1)
+					.build()));
+		}
+
+		try (DurableUserRepository repository = open(directory)) {
+			assertThat(repository.count(), is(2L));
+			assertThat(repository.findById(7L)
+					.get()
+					.getVersion(), is(3L));
+			assertThat(repository.insert(user("1992-01-01"))
+					.getId(), is(43L));
+		}
+	}
+
+	@Test
+	public void givenWritesRacingInserts_whenReopened_thenLogKeepsTheLastWrite() throws IOException {
+		Path directory = folder.getRoot()
+				.toPath();
+		WriteAheadLog log = new WriteAheadLog(directory, DurabilityMode.DURABLE, 5);
+		AtomicReference<DurableUserRepository> durable = new AtomicReference<>();
+		// Writes the new id the moment the store publishes it, before the insert logs it
+		InMemoryUserRepository racing = new InMemoryUserRepository() {
+			@Override
+			public User insert(User user) {
+				User stored = super.insert(user);
+				if (stored.getBirthDate()
+						.getYear() == 1990) {
+					durable.get()
+							.delete(stored.getId());
+				} else {
+					durable.get()
+							.update(stored.getId(), current -> current.toBuilder()
+									.firstName("Jane")
+									.build());
+				}
+				return stored;
+			}
+		};
+		User deleted;
+		User updated;
+		try (DurableUserRepository repository = new DurableUserRepository(racing, log, directory, TimeUnit.HOURS.toMillis(1))) {
+			durable.set(repository);
+			deleted = repository.insert(user("1990-01-01"));
+			updated = repository.insert(user("1991-01-01"));
+		}
+
+		try (DurableUserRepository repository = open(directory)) {
+			assertThat(repository.findById(deleted.getId())
+					.isPresent(), is(false));
+			assertThat(repository.findById(updated.getId())
+					.get()
+					.getFirstName(), is("Jane"));
+		}
+	}
+
+	private static boolean fails(Runnable write) {
+		try {
+			write.run();
+			return false;
+		} catch (UncheckedIOException expected) {
+			return true;
+		}
+	}
+
+	private static DurableUserRepository open(Path directory) {
+		WriteAheadLog log = new WriteAheadLog(directory, DurabilityMode.DURABLE, 5);
+		return new DurableUserRepository(new InMemoryUserRepository(), log, directory, TimeUnit.HOURS.toMillis(1));
+	}
+
+	private static User user(String birthDate) {
+		return User.builder()
+				.email("user" + EMAIL_SEQUENCE.incrementAndGet() + "@mail.com")
+				.firstName("John")
+				.lastName("Tray")
+				.birthDate(LocalDate.parse(birthDate))
+				.build();
+	}
+}
@@ -0,0 +1,562 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class InMemoryUserRepositoryTest {
+	private static final AtomicLong EMAIL_SEQUENCE = new AtomicLong();
+
+	private UserRepository repository;
+
+	@Before
+	public void setup() {
+		repository = new InMemoryUserRepository();
+	}
+
+	@Test
+	public void givenUsers_whenFindByBirthDateRange_thenReturnOnlyUsersInRangeOrderedByBirthDate() {
+		User late = repository.insert(user("2001-05-01"));
+		User early = repository.insert(user("1990-01-01"));
+		repository.insert(user("1980-12-31"));
+		User boundary = repository.insert(user("2001-05-01"));
+
+		List<Long> ids = ids(repository.findByBirthDateRange(LocalDate.parse("1990-01-01"), LocalDate.parse("2001-05-01")));
+
+		assertThat(ids, contains(early.getId(), late.getId(), boundary.getId()));
+	}
+
+	@Test
+	public void givenCursor_whenStreamByBirthDateRange_thenResumeRightAfterCursor() {
+		User first = repository.insert(user("1990-01-01"));
+		User second = repository.insert(user("1990-01-01"));
+		User third = repository.insert(user("1995-06-15"));
+		LocalDate from = LocalDate.parse("1980-01-01");
+		LocalDate to = LocalDate.parse("2000-01-01");
+
+		List<Long> afterFirst = ids(repository.streamByBirthDateRange(from, to, BirthDateCursor.after(first))
+				.collect(Collectors.toList()));
+		List<Long> afterThird = ids(repository.streamByBirthDateRange(from, to, BirthDateCursor.after(third))
+				.collect(Collectors.toList()));
+
+		assertThat(afterFirst, contains(second.getId(), third.getId()));
+		assertThat(afterThird, is(empty()));
+	}
+
+	@Test
+	public void givenUpdatedBirthDate_whenFindByBirthDateRange_thenOldEntryIsGone() {
+		User user = repository.insert(user("1990-01-01"));
+		user.setBirthDate(LocalDate.parse("1970-01-01"));
+		repository.update(user);
+
+		assertThat(repository.findByBirthDateRange(LocalDate.parse("1989-01-01"), LocalDate.parse("1991-01-01")), is(empty()));
+		assertThat(ids(repository.findByBirthDateRange(LocalDate.parse("1970-01-01"), LocalDate.parse("1970-01-01"))), contains(user.getId()));
+	}
+
+	@Test
+	public void givenReturnedUserMutated_whenFindById_thenStoredUserIsUnchanged() {
+		User user = repository.insert(user("1990-01-01"));
+		user.setFirstName("Changed");
+
+		assertThat(repository.findById(user.getId())
+				.get()
+				.getFirstName(), is("John"));
+	}
+
+	@Test
+	public void givenDeletedUser_whenFind_thenNothingIsReturned() {
+		User user = repository.insert(user("1990-01-01"));
+
+		assertThat(repository.delete(user.getId()), is(true));
+		assertThat(repository.delete(user.getId()), is(false));
+		assertThat(repository.findById(user.getId())
+				.isPresent(), is(false));
+		assertThat(repository.findByBirthDateRange(LocalDate.parse("1990-01-01"), LocalDate.parse("1990-01-01")), is(empty()));
+	}
+
+	@Test
+	public void givenMissingUser_whenUpdate_thenReturnEmpty() {
+		User user = user("1990-01-01");
+		user.setId(42L);
+
+		assertThat(repository.update(user)
+				.isPresent(), is(false));
+		assertThat(repository.count(), is(0L));
+	}
+
+	@Test
+	public void givenInsertedUser_whenUpdate_thenVersionIncrements() {
+		User user = repository.insert(user("1990-01-01"));
+		user.setFirstName("Changed");
+
+		assertThat(user.getVersion(), is(1L));
+		assertThat(repository.update(user)
+				.get()
+				.getVersion(), is(2L));
+		assertThat(repository.update(user.getId(), current -> current)
+				.get()
+				.getVersion(), is(3L));
+	}
+
+	@Test
+	public void givenConcurrentReadModifyWrites_whenUpdateSameUser_thenNoUpdateIsLost() throws Exception {
+		User user = repository.insert(user("1990-01-01"));
+		user.setAddress("0");
+		repository.update(user);
+		int threads = 16;
+		int updatesPerThread = 500;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < updatesPerThread; i++) {
+						repository.update(user.getId(), current -> {
+							int count = Integer.parseInt(current.getAddress()) + 1;
+							current.setAddress(String.valueOf(count));
+							current.setBirthDate(LocalDate.parse(count % 2 == 0 ? "1990-01-01" : "1991-01-01"));
+							return current;
+						});
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		int total = threads * updatesPerThread;
+		User stored = repository.findById(user.getId())
+				.get();
+		assertThat(stored.getAddress(), is(String.valueOf(total)));
+		assertThat(ids(repository.findByBirthDateRange(LocalDate.parse("1980-01-01"), LocalDate.parse("2000-01-01"))), contains(user.getId()));
+		assertThat(stored.getBirthDate(), is(LocalDate.parse(total % 2 == 0 ? "1990-01-01" : "1991-01-01")));
+	}
+
+	@Test
+	public void givenFailingChange_whenUpdate_thenStoredUserIsUnchanged() {
+		User user = repository.insert(user("1990-01-01"));
+
+		try {
+			repository.update(user.getId(), current -> {
+				current.setFirstName("Changed");
+				throw new IllegalStateException("rejected");
+			});
+		} catch (IllegalStateException expected) {
+			// the change is rejected before anything is stored
+		}
+
+		assertThat(repository.findById(user.getId())
+				.get()
+				.getFirstName(), is("John"));
+	}
+
+	@Test
+	public void givenInsertsMovesAndDeletes_whenCountByBirthDateRange_thenMatchScan() {
+		User first = repository.insert(user("1990-01-01"));
+		User second = repository.insert(user("1999-12-31"));
+		repository.insert(user("2000-02-29"));
+		repository.insert(user("1985-07-15"));
+		second.setBirthDate(LocalDate.parse("2000-01-01"));
+		repository.update(second);
+		repository.delete(first.getId());
+
+		assertThat(repository.countByBirthDateRange(LocalDate.parse("1990-01-01"), LocalDate.parse("2000-12-31")), is(2L));
+		assertThat(repository.countByBirthDateRange(LocalDate.parse("2000-01-01"), LocalDate.parse("2000-01-01")), is(1L));
+		assertThat(repository.countByBirthDateRange(LocalDate.parse("1900-01-01"), LocalDate.parse("2100-01-01")), is(3L));
+		assertThat(repository.countByBirthDateRange(LocalDate.parse("1990-01-01"), LocalDate.parse("1999-12-31")), is(0L));
+	}
+
+	@Test
+	public void givenUsers_whenCountByAgeAndBirthYear_thenMatchPeriodBetween() {
+		String[] birthDates = { "2000-02-29", "2001-02-28", "2001-03-01", "1990-06-15", "1990-12-31", "2005-01-01", "2024-03-01" };
+		for (String birthDate : birthDates) {
+			repository.insert(user(birthDate));
+		}
+
+		for (String date : new String[] { "2023-02-28", "2023-03-01", "2024-02-28", "2024-02-29", "2024-12-31", "2025-01-01" }) {
+			LocalDate today = LocalDate.parse(date);
+			Map<Integer, Long> expected = new TreeMap<>();
+			for (String birthDate : birthDates) {
+				if (!LocalDate.parse(birthDate)
+						.isAfter(today)) {
+					expected.merge(Period.between(LocalDate.parse(birthDate), today)
+							.getYears(), 1L, Long::sum);
+				}
+			}
+			assertThat(date, repository.countByAge(today), is(expected));
+		}
+		assertThat(repository.countByBirthYear()
+				.get(2001), is(2L));
+		assertThat(repository.countByBirthYear()
+				.keySet(), contains(1990, 2000, 2001, 2005, 2024));
+	}
+
+	@Test
+	public void givenUsers_whenStreamByUpcomingBirthday_thenMatchScanOrderedBySoonest() {
+		String[] birthDates = { "2000-02-29", "2001-02-28", "2001-03-01", "1990-12-31", "1985-01-01", "1970-01-01", "1999-06-15", "2010-12-25" };
+		for (String birthDate : birthDates) {
+			repository.insert(user(birthDate));
+		}
+		User moved = repository.insert(user("1980-07-04"));
+		moved.setBirthDate(LocalDate.parse("1980-12-30"));
+		repository.update(moved);
+
+		for (String date : new String[] { "2023-02-28", "2023-03-01", "2024-02-28", "2024-02-29", "2023-12-24", "2024-12-31", "2025-06-15" }) {
+			LocalDate from = LocalDate.parse(date);
+			for (int days : new int[] { 1, 2, 7, 60, 365, 366 }) {
+				LocalDate last = from.plusDays(days - 1L);
+				List<Long> expected = ids(repository.findAll()
+						.filter(user -> !Birthdays.next(user.getBirthDate(), from)
+								.isAfter(last))
+						.sorted(Birthdays.upcomingFrom(from))
+						.collect(Collectors.toList()));
+
+				assertThat(date + " +" + days, ids(repository.streamByUpcomingBirthday(from, days)
+						.collect(Collectors.toList())), is(expected));
+			}
+		}
+	}
+
+	@Test
+	public void givenLeapDayBirthday_whenStreamByUpcomingBirthdayInCommonYear_thenCelebratedOnMarchFirst() {
+		User leapDay = repository.insert(user("2000-02-29"));
+
+		assertThat(repository.streamByUpcomingBirthday(LocalDate.parse("2023-02-28"), 1)
+				.count(), is(0L));
+		assertThat(ids(repository.streamByUpcomingBirthday(LocalDate.parse("2023-03-01"), 1)
+				.collect(Collectors.toList())), contains(leapDay.getId()));
+		assertThat(ids(repository.streamByUpcomingBirthday(LocalDate.parse("2024-02-29"), 1)
+				.collect(Collectors.toList())), contains(leapDay.getId()));
+		assertThat(repository.streamByUpcomingBirthday(LocalDate.parse("2024-03-01"), 1)
+				.count(), is(0L));
+	}
+
+	@Test
+	public void givenUsers_whenFindByEmail_thenMatchIgnoringCaseAndFollowChanges() {
+		User user = repository.insert(user("1990-01-01").toBuilder()
+				.email("John.Tray@Mail.com")
+				.build());
+
+		assertThat(repository.findByEmail(" john.tray@mail.COM ")
+				.map(User::getId)
+				.orElseThrow(), is(user.getId()));
+
+		user.setEmail("jt@mail.com");
+		repository.update(user);
+		assertThat(repository.findByEmail("john.tray@mail.com")
+				.isPresent(), is(false));
+		assertThat(repository.findByEmail("JT@mail.com")
+				.isPresent(), is(true));
+
+		repository.delete(user.getId());
+		assertThat(repository.findByEmail("jt@mail.com")
+				.isPresent(), is(false));
+	}
+
+	@Test
+	public void givenTakenEmail_whenInsertOrUpdate_thenRejectAndLeaveStoreUnchanged() {
+		User owner = repository.insert(user("1990-01-01"));
+		User other = repository.insert(user("1991-01-01"));
+		String taken = owner.getEmail()
+				.toUpperCase();
+
+		assertThat(rejectedAsDuplicate(() -> repository.insert(user("1992-01-01").toBuilder()
+				.email(taken)
+				.build())), is(true));
+		assertThat(rejectedAsDuplicate(() -> repository.update(other.getId(), current -> current.toBuilder()
+				.email(taken)
+				.birthDate(LocalDate.parse("1999-01-01"))
+				.build())), is(true));
+
+		assertThat(repository.count(), is(2L));
+		assertThat(repository.findById(other.getId())
+				.orElseThrow()
+				.getVersion(), is(1L));
+		assertThat(repository.countByBirthDateRange(LocalDate.parse("1999-01-01"), LocalDate.parse("1999-01-01")), is(0L));
+		assertThat(repository.findByEmail(other.getEmail())
+				.map(User::getId)
+				.orElseThrow(), is(other.getId()));
+	}
+
+	@Test
+	public void givenDuplicateEmailsInBatch_whenInsertAll_thenSkipDuplicates() {
+		User first = user("1990-01-01");
+		User duplicate = user("1991-01-01").toBuilder()
+				.email(first.getEmail())
+				.build();
+
+		List<User> stored = repository.insertAll(List.of(first, duplicate, user("1992-01-01")));
+
+		assertThat(stored.get(1) == null, is(true));
+		assertThat(stored.get(0) != null && stored.get(2) != null, is(true));
+		assertThat(repository.count(), is(2L));
+	}
+
+	@Test
+	public void givenConcurrentInsertsOfSameEmail_whenInsert_thenExactlyOneWins() throws Exception {
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int round = 0; round < 200; round++) {
+				String email = "race" + round + "@mail.com";
+				CountDownLatch start = new CountDownLatch(1);
+				List<Future<Boolean>> results = new ArrayList<>();
+				for (int i = 0; i < threads; i++) {
+					results.add(executor.submit(() -> {
+						start.await();
+						try {
+							repository.insert(user("1990-01-01").toBuilder()
+									.email(email)
+									.build());
+							return true;
+						} catch (DuplicateEmailException e) {
+							return false;
+						}
+					}));
+				}
+				start.countDown();
+				int winners = 0;
+				for (Future<Boolean> result : results) {
+					winners += result.get() ? 1 : 0;
+				}
+				assertThat(email, winners, is(1));
+			}
+			assertThat(repository.count(), is(200L));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void givenUsers_whenSearchByName_thenMatchScanRankedByQuality() {
+		String[][] names = { { "John", "Smith" }, { "Jane", "Smithers" }, { "José", "Blacksmith" }, { "Mary-Jo", "Smi" }, { "Joan", "O'Brien" },
+				{ "Johnny", "Doe" }, { "Anne", "Jones" } };
+		for (String[] name : names) {
+			repository.insert(user("1990-01-01").toBuilder()
+					.firstName(name[0])
+					.lastName(name[1])
+					.build());
+		}
+		User renamed = repository.insert(user("1990-01-01").toBuilder()
+				.firstName("Smitty")
+				.lastName("Werben")
+				.build());
+		renamed.setFirstName("Walter");
+		repository.update(renamed);
+
+		for (String name : new String[] { "smi", "SMITH", "jo", "j", "jo smi", "jose", "brien", "smitty", "o", "xyz", "mith jane" }) {
+			List<Long> expected = ids(NameSearch.top(repository.findAll(), NameSearch.words(name), 5));
+
+			assertThat(name, ids(repository.searchByName(name, 5)), is(expected));
+		}
+		assertThat(repository.searchByName("smi", 10)
+				.get(0)
+				.getLastName(), is("Smi"));
+		assertThat(repository.searchByName("smitty", 10), is(empty()));
+	}
+
+	@Test
+	public void givenUsersPutOutOfIdOrder_whenSearchByName_thenEveryUserFoundOnce() {
+		for (long id = 300; id >= 1; id--) {
+			repository.put(user("1990-01-01").toBuilder()
+					.id(id * 7 % 307)
+					.lastName(id % 3 == 0 ? "Smith" : "Tray")
+					.build());
+		}
+		repository.delete(7L);
+		repository.put(user("1990-01-01").toBuilder()
+				.id(14L)
+				.lastName("Tray")
+				.build());
+
+		List<Long> expected = ids(NameSearch.top(repository.findAll(), NameSearch.words("smith"), 500));
+		assertThat(ids(repository.searchByName("smith", 500)), is(expected));
+		assertThat(repository.searchByName("john", 500), hasSize(299));
+	}
+
+	@Test
+	public void givenQueries_whenFindAndExplain_thenMostSelectiveIndexDrivesAndResultsMatchScan() {
+		String[] lastNames = { "Smith", "Smithers", "Tray", "Van Dyke", "Trayner" };
+		for (int i = 0; i < 50; i++) {
+			repository.insert(user(LocalDate.parse("1980-01-01")
+					.plusDays(i * 100L)
+					.toString()).toBuilder()
+					.email("user" + i + (i % 3 == 0 ? "@corp.com" : "@mail.com"))
+					.lastName(lastNames[i % lastNames.length])
+					.phoneNumber(i % 2 == 0 ? "212-456-7890" : null)
+					.build());
+		}
+		UserQuery byEmail = UserQuery.builder()
+				.email("USER3@corp.com")
+				.birthDateFrom(LocalDate.parse("1970-01-01"))
+				.birthDateTo(LocalDate.parse("2000-01-01"))
+				.build();
+		UserQuery byRange = UserQuery.builder()
+				.birthDateFrom(LocalDate.parse("1981-01-01"))
+				.birthDateTo(LocalDate.parse("1981-12-31"))
+				.emailDomain("mail.com")
+				.build();
+		UserQuery byName = UserQuery.builder()
+				.lastNamePrefix("van d")
+				.hasPhone(true)
+				.build();
+		UserQuery byNothing = UserQuery.builder()
+				.emailDomain("@corp.com")
+				.hasPhone(false)
+				.build();
+
+		assertThat(repository.explain(byEmail)
+				.getAccessPath(), is(QueryPlan.AccessPath.EMAIL_HASH));
+		assertThat(repository.explain(byEmail)
+				.getFilters(), contains("birth_date between 1970-01-01 and 2000-01-01"));
+		assertThat(repository.explain(byRange)
+				.getAccessPath(), is(QueryPlan.AccessPath.BIRTH_DATE_RANGE));
+		assertThat(repository.explain(byRange)
+				.getIndexRows(), is(4L));
+		assertThat(repository.explain(byName)
+				.getAccessPath(), is(QueryPlan.AccessPath.NAME_TRIGRAM));
+		assertThat(repository.explain(byNothing)
+				.getAccessPath(), is(QueryPlan.AccessPath.FULL_SCAN));
+		for (UserQuery query : List.of(byEmail, byRange, byName, byNothing)) {
+			List<Long> expected = repository.findAll()
+					.filter(query::matches)
+					.map(User::getId)
+					.sorted()
+					.collect(Collectors.toList());
+
+			List<Long> found;
+			try (Stream<User> users = repository.find(query)) {
+				found = users.map(User::getId)
+						.sorted()
+						.collect(Collectors.toList());
+			}
+			assertThat(query.predicates()
+					.toString(), found, is(expected));
+			assertThat(found.isEmpty(), is(false));
+		}
+	}
+
+	@Test
+	public void givenOpenStream_whenUsersChange_thenStreamShowsStateWhenOpened() {
+		User moved = repository.insert(user("1990-01-01"));
+		User deleted = repository.insert(user("1990-06-01"));
+
+		try (Stream<User> users = repository.streamByBirthDateRange(LocalDate.parse("1990-01-01"), LocalDate.parse("1990-12-31"))) {
+			moved.setBirthDate(LocalDate.parse("1990-12-01"));
+			repository.update(moved);
+			repository.delete(deleted.getId());
+			repository.insert(user("1990-03-01"));
+
+			assertThat(ids(users.collect(Collectors.toList())), contains(moved.getId(), deleted.getId()));
+		}
+		assertThat(repository.findByBirthDateRange(LocalDate.parse("1990-01-01"), LocalDate.parse("1990-12-31"))
+				.size(), is(2));
+	}
+
+	@Test
+	public void givenConcurrentMoves_whenScanRange_thenEveryScanSeesEachUserExactlyOnceInOrder() throws Exception {
+		int users = 2000;
+		LocalDate from = LocalDate.parse("1990-01-01");
+		LocalDate to = LocalDate.parse("1990-12-31");
+		for (int i = 0; i < users; i++) {
+			repository.insert(user(from.plusDays(i % 365)
+					.toString()));
+		}
+		int writers = 4;
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < writers; t++) {
+				futures.add(executor.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					while (running.get()) {
+						long id = random.nextLong(1, users + 1L);
+						LocalDate birthDate = from.plusDays(random.nextInt(365));
+						repository.update(id, current -> {
+							current.setBirthDate(birthDate);
+							return current;
+						});
+					}
+				}));
+			}
+			for (int scan = 0; scan < 200; scan++) {
+				List<User> found = repository.findByBirthDateRange(from, to);
+				assertThat(found.size(), is(users));
+				assertThat(found.stream()
+						.map(User::getId)
+						.distinct()
+						.count(), is((long) users));
+				for (int i = 1; i < found.size(); i++) {
+					User previous = found.get(i - 1);
+					User current = found.get(i);
+					int order = previous.getBirthDate()
+							.compareTo(current.getBirthDate());
+					assertThat(order < 0 || order == 0 && previous.getId() < current.getId(), is(true));
+				}
+			}
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			running.set(false);
+			executor.shutdownNow();
+		}
+	}
+
+	private static User user(String birthDate) {
+		return User.builder()
+				.email("user" + EMAIL_SEQUENCE.incrementAndGet() + "@mail.com")
+				.firstName("John")
+				.lastName("Tray")
+				.birthDate(LocalDate.parse(birthDate))
+				.build();
+	}
+
+	private static boolean rejectedAsDuplicate(Runnable write) {
+		try {
+			write.run();
+			return false;
+		} catch (DuplicateEmailException expected) {
+			return true;
+		}
+	}
+
+	private static List<Long> ids(List<User> users) {
+		return users.stream()
+				.map(User::getId)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,193 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.impl.ShardedUserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ShardedUserRepositoryTest {
+	private static final String[] LAST_NAMES = { "Smith", "Smithers", "Tray", "Van Dyke", "Jones" };
+
+	private ShardedUserRepository sharded;
+	private InMemoryUserRepository single;
+
+	@Before
+	public void setup() {
+		sharded = new ShardedUserRepository(8);
+		single = new InMemoryUserRepository();
+		Random random = new Random(7);
+		for (int i = 0; i < 500; i++) {
+			User user = User.builder()
+					.email("user" + i + "@mail.com")
+					.firstName("John")
+					.lastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+					.birthDate(LocalDate.of(1990, 1, 1)
+							.plusDays(random.nextInt(3000)))
+					.build();
+			sharded.insert(user);
+			single.insert(user);
+		}
+		for (long id = 1; id <= 500; id += 7) {
+			sharded.delete(id);
+			single.delete(id);
+		}
+		for (long id = 3; id <= 500; id += 11) {
+			LocalDate birthDate = LocalDate.of(1985, 2, 28)
+					.plusDays(id);
+			sharded.update(id, user -> user.toBuilder()
+					.birthDate(birthDate)
+					.build());
+			single.update(id, user -> user.toBuilder()
+					.birthDate(birthDate)
+					.build());
+		}
+	}
+
+	@After
+	public void tearDown() {
+		sharded.close();
+	}
+
+	@Test
+	public void givenSameWrites_whenReadByIdAndCount_thenMatchSingleStore() {
+		assertThat(sharded.count(), is(single.count()));
+		for (long id = 1; id <= 500; id++) {
+			assertThat(sharded.findById(id), is(single.findById(id)));
+		}
+		assertThat(sharded.countByBirthDateRange(LocalDate.of(1990, 6, 1), LocalDate.of(1995, 6, 1)),
+				is(single.countByBirthDateRange(LocalDate.of(1990, 6, 1), LocalDate.of(1995, 6, 1))));
+		assertThat(sharded.countByAge(LocalDate.of(2024, 3, 1)), is(single.countByAge(LocalDate.of(2024, 3, 1))));
+		assertThat(sharded.countByBirthYear(), is(single.countByBirthYear()));
+	}
+
+	@Test
+	public void givenSameWrites_whenReadRangesAndPages_thenMatchSingleStoreOrder() {
+		LocalDate from = LocalDate.of(1985, 1, 1);
+		LocalDate to = LocalDate.of(1996, 1, 1);
+		assertThat(ids(sharded.findByBirthDateRange(from, to)), is(ids(single.findByBirthDateRange(from, to))));
+
+		List<Long> paged = new ArrayList<>();
+		BirthDateCursor cursor = null;
+		while (true) {
+			List<User> page;
+			try (Stream<User> users = sharded.streamByBirthDateRange(from, to, cursor)) {
+				page = users.limit(25)
+						.collect(Collectors.toList());
+			}
+			if (page.isEmpty()) {
+				break;
+			}
+			paged.addAll(ids(page));
+			cursor = BirthDateCursor.after(page.get(page.size() - 1));
+		}
+		assertThat(paged, is(ids(single.findByBirthDateRange(from, to))));
+
+		LocalDate today = LocalDate.of(2023, 12, 20);
+		assertThat(ids(sharded.streamByUpcomingBirthday(today, 30)
+				.collect(Collectors.toList())), is(ids(single.streamByUpcomingBirthday(today, 30)
+				.collect(Collectors.toList()))));
+		assertThat(ids(sharded.searchByName("smi", 30)), is(ids(single.searchByName("smi", 30))));
+	}
+
+	@Test
+	public void givenQuery_whenFind_thenMatchSingleStore() {
+		UserQuery query = UserQuery.builder()
+				.lastNamePrefix("tr")
+				.birthDateFrom(LocalDate.of(1991, 1, 1))
+				.birthDateTo(LocalDate.of(1993, 1, 1))
+				.build();
+
+		List<Long> found;
+		try (Stream<User> users = sharded.find(query)) {
+			found = users.map(User::getId)
+					.sorted()
+					.collect(Collectors.toList());
+		}
+		List<Long> expected;
+		try (Stream<User> users = single.find(query)) {
+			expected = users.map(User::getId)
+					.sorted()
+					.collect(Collectors.toList());
+		}
+		assertThat(found, is(expected));
+	}
+
+	@Test
+	public void givenShardsPlanningApart_whenExplain_thenFiltersMatchReportedPath() {
+		for (int days = 20; days <= 800; days += 20) {
+			UserQuery query = UserQuery.builder()
+					.lastNamePrefix("tr")
+					.birthDateFrom(LocalDate.of(1992, 1, 1))
+					.birthDateTo(LocalDate.of(1992, 1, 1)
+							.plusDays(days))
+					.build();
+
+			QueryPlan plan = sharded.explain(query);
+
+			List<String> filters = new ArrayList<>(query.predicates());
+			if (plan.getAccessPath() == QueryPlan.AccessPath.BIRTH_DATE_RANGE) {
+				filters.remove(query.birthDatePredicate());
+			}
+			assertThat(plan.getFilters(), is(filters));
+		}
+	}
+
+	@Test
+	public void givenExistingEmail_whenExplain_thenOnlyTheOwningShardCounts() {
+		User existing = sharded.findById(2L)
+				.orElseThrow();
+		UserQuery query = UserQuery.builder()
+				.email(existing.getEmail())
+				.build();
+
+		QueryPlan plan = sharded.explain(query);
+
+		assertThat(plan.getAccessPath(), is(QueryPlan.AccessPath.EMAIL_HASH));
+		assertThat(plan.getIndexRows(), is(1L));
+		assertThat(plan.getEstimatedRows(), is(1L));
+		assertThat(plan.getFilters(), is(List.of()));
+	}
+
+	@Test
+	public void givenEmailOnAnotherShard_whenInsertOrLookUp_thenEmailsStayUniqueAcrossShards() {
+		User existing = sharded.findById(2L)
+				.orElseThrow();
+
+		assertThat(sharded.findByEmail(existing.getEmail()
+						.toUpperCase())
+				.map(User::getId)
+				.orElseThrow(), is(2L));
+		boolean rejected = false;
+		for (int i = 0; i < 16 && !rejected; i++) {
+			try {
+				// Ids land on different shards, one of which is not the owner's
+				sharded.insert(existing.toBuilder()
+						.id(null)
+						.build());
+			} catch (DuplicateEmailException expected) {
+				rejected = true;
+			}
+		}
+		assertThat(rejected, is(true));
+		assertThat(sharded.count(), is(single.count()));
+	}
+
+	private static List<Long> ids(List<User> users) {
+		return users.stream()
+				.map(User::getId)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,144 @@
+package com.drg.usersapi.repositories;
+
+import com.drg.usersapi.entities.User;
+import com.drg.usersapi.exceptions.DuplicateEmailException;
+import com.drg.usersapi.repositories.impl.InMemoryUserRepository;
+import com.drg.usersapi.repositories.impl.TieredUserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class TieredUserRepositoryTest {
+	private static final int HOT_CAPACITY = 50;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TieredUserRepository tiered;
+	private InMemoryUserRepository single;
+
+	@Before
+	public void setup() throws IOException {
+		tiered = new TieredUserRepository(folder.newFolder()
+				.toPath(), HOT_CAPACITY, 2);
+		single = new InMemoryUserRepository();
+		Random random = new Random(5);
+		for (int i = 0; i < 300; i++) {
+			User user = User.builder()
+					.email("user" + i + "@mail.com")
+					.firstName("John")
+					.lastName(i % 2 == 0 ? "Smith" : "Tray")
+					.birthDate(LocalDate.of(1990, 1, 1)
+							.plusDays(random.nextInt(3000)))
+					.build();
+			tiered.insert(user);
+			single.insert(user);
+		}
+		for (long id = 1; id <= 300; id += 9) {
+			LocalDate birthDate = LocalDate.of(1985, 2, 28)
+					.plusDays(id);
+			tiered.update(id, user -> user.toBuilder()
+					.birthDate(birthDate)
+					.build());
+			single.update(id, user -> user.toBuilder()
+					.birthDate(birthDate)
+					.build());
+		}
+		tiered.delete(4L);
+		single.delete(4L);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		tiered.close();
+	}
+
+	@Test
+	public void givenMoreUsersThanHotCapacity_whenRead_thenBothTiersMatchSingleStore() {
+		assertThat(tiered.hotCount() <= HOT_CAPACITY, is(true));
+		assertThat(tiered.count(), is(single.count()));
+		for (long id = 1; id <= 300; id++) {
+			assertThat(tiered.findById(id), is(single.findById(id)));
+		}
+		assertThat(tiered.findByEmail("USER200@mail.com"), is(single.findByEmail("USER200@mail.com")));
+		LocalDate from = LocalDate.of(1985, 1, 1);
+		LocalDate to = LocalDate.of(1996, 1, 1);
+		assertThat(tiered.findByBirthDateRange(from, to), is(single.findByBirthDateRange(from, to)));
+		assertThat(tiered.countByBirthYear(), is(single.countByBirthYear()));
+		assertThat(tiered.searchByName("tray", 300), is(single.searchByName("tray", 300)));
+	}
+
+	@Test
+	public void givenColdUser_whenReadTwice_thenPromotedAndColdestDemoted() {
+		long id = 2;
+		assertThat(tiered.isHot(id), is(false));
+
+		tiered.findById(id);
+		assertThat(tiered.isHot(id), is(false));
+		tiered.findById(id);
+
+		assertThat(tiered.isHot(id), is(true));
+		assertThat(tiered.hotCount() <= HOT_CAPACITY, is(true));
+		assertThat(tiered.findById(id), is(single.findById(id)));
+	}
+
+	@Test
+	public void givenOpenStream_whenUsersMoveBetweenTiers_thenEachUserShowsUpOnce() {
+		LocalDate from = LocalDate.of(1980, 1, 1);
+		LocalDate to = LocalDate.of(2000, 1, 1);
+
+		List<User> seen;
+		try (Stream<User> users = tiered.streamByBirthDateRange(from, to)) {
+			// Promote cold users, which demotes hot ones
+			for (long id = 1; id <= 300; id++) {
+				tiered.findById(id);
+				tiered.findById(id);
+			}
+			seen = users.collect(Collectors.toList());
+		}
+
+		assertThat(seen, is(single.findByBirthDateRange(from, to)));
+	}
+
+	@Test
+	public void givenEmailInOtherTier_whenInsertOrUpdate_thenReject() {
+		User cold = tiered.findById(3L)
+				.orElseThrow();
+		User hot = tiered.findById(300L)
+				.orElseThrow();
+		assertThat(tiered.isHot(cold.getId()), is(false));
+		assertThat(tiered.isHot(hot.getId()), is(true));
+
+		assertThat(rejectedAsDuplicate(() -> tiered.insert(cold.toBuilder()
+				.id(null)
+				.build())), is(true));
+		assertThat(rejectedAsDuplicate(() -> tiered.update(hot.getId(), user -> user.toBuilder()
+				.email(cold.getEmail())
+				.build())), is(true));
+		assertThat(rejectedAsDuplicate(() -> tiered.update(cold.getId(), user -> user.toBuilder()
+				.email(hot.getEmail())
+				.build())), is(true));
+		assertThat(tiered.count(), is(single.count()));
+	}
+
+	private static boolean rejectedAsDuplicate(Runnable write) {
+		try {
+			write.run();
+			return false;
+		} catch (DuplicateEmailException e) {
+			return true;
+		}
+	}
+}
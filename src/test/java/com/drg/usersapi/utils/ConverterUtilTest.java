@@ -0,0 +1,64 @@
+package com.drg.usersapi.utils;
+
+import com.drg.usersapi.exceptions.InvalidDateFormatException;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ConverterUtilTest {
+	@Test
+	public void givenEveryDateOfTwoLeapCycles_whenParseAndFormat_thenMatchLocalDate() {
+		LocalDate last = LocalDate.of(2399, 12, 31);
+		for (LocalDate date = LocalDate.of(1600, 1, 1); !date.isAfter(last); date = date.plusDays(1)) {
+			String formatted = String.format("%04d-%02d-%02d", date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+			if (ConverterUtil.epochDayFromString(formatted) != date.toEpochDay()) {
+				throw new AssertionError("Parsed " + formatted + " as " + ConverterUtil.epochDayFromString(formatted));
+			}
+			if (!formatted.equals(ConverterUtil.stringFromLocalDate(date))) {
+				throw new AssertionError("Formatted " + date + " as " + ConverterUtil.stringFromLocalDate(date));
+			}
+		}
+	}
+
+	@Test
+	public void givenLayoutBoundaries_whenEpochDayFromString_thenMatchLocalDate() {
+		assertThat((long) ConverterUtil.epochDayFromString("0001-01-01"), is(LocalDate.of(1, 1, 1)
+				.toEpochDay()));
+		assertThat((long) ConverterUtil.epochDayFromString("9999-12-31"), is(LocalDate.of(9999, 12, 31)
+				.toEpochDay()));
+	}
+
+	@Test
+	public void givenMalformedDates_whenEpochDayFromString_thenReturnInvalid() {
+		String[] malformed = { "", "2000-1-01", "2000/01/01", "20000-01-01", "2000-01-0a", "2000-13-01", "2000-00-10", "2000-01-00",
+				"2001-02-29", "2000-04-31", "0000-01-01", " 2000-01-01", "+200-01-01" };
+		for (String str : malformed) {
+			assertThat(str, ConverterUtil.epochDayFromString(str), is(ConverterUtil.INVALID_EPOCH_DAY));
+			assertThat(str, ConverterUtil.isValidDate(str), is(false));
+		}
+		assertThat(ConverterUtil.isValidDate("2000-02-29"), is(true));
+	}
+
+	@Test(expected = InvalidDateFormatException.class)
+	public void givenMalformedDate_whenLocalDateFromString_thenThrowInvalidDateFormat() {
+		ConverterUtil.localDateFromString("2000-02-30");
+	}
+
+	@Test
+	public void givenNull_whenConvert_thenReturnNull() {
+		assertThat(ConverterUtil.localDateFromString(null), is(nullValue()));
+		assertThat(ConverterUtil.stringFromLocalDate(null), is(nullValue()));
+	}
+
+	@Test
+	public void givenCommonDate_whenFormattedTwice_thenReturnCachedString() {
+		LocalDate date = LocalDate.of(1999, 1, 2);
+
+		assertThat(ConverterUtil.stringFromLocalDate(date), is(sameInstance(ConverterUtil.stringFromLocalDate(date))));
+	}
+}
@@ -0,0 +1,110 @@
+package com.drg.usersapi.validation;
+
+import com.drg.usersapi.dto.UserDTO;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import javax.validation.constraints.NotBlank;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class UserValidatorTest {
+	private static final ValidatorFactory VALIDATOR_FACTORY = Validation.buildDefaultValidatorFactory();
+	private static final Validator VALIDATOR = VALIDATOR_FACTORY.getValidator();
+	private static final List<String> EMAILS = List.of("example@mail.com", "x@y", "a.b+c@sub.mail.co", "wrong", "@mail.com", "a@",
+			"a@@mail.com", "a b@mail.com", "a@mail..com", "\"quoted\"@mail.com", "", " ", "é@mail.com");
+	private static final List<String> NAMES = List.of("John", "", " ", "\t\n", " x ");
+
+	private final UserValidator userValidator = new UserValidator();
+	private final UserDTO user = UserDTO.builder()
+			.email("example@mail.com")
+			.firstName("John")
+			.lastName("Tray")
+			.birthDate("1999-01-02")
+			.build();
+
+	{
+		ReflectionTestUtils.setField(userValidator, "minUserAge", 18);
+		ReflectionTestUtils.setField(userValidator, "validator", VALIDATOR);
+		ReflectionTestUtils.setField(userValidator, "validatorFactory", VALIDATOR_FACTORY);
+	}
+
+	@Test
+	public void givenFieldValues_whenValidate_thenSameFieldErrorsAsBeanValidation() {
+		for (String email : EMAILS) {
+			for (String name : NAMES) {
+				UserDTO candidate = user.toBuilder()
+						.email(email)
+						.firstName(name)
+						.build();
+				assertThat(email + "/" + name, userValidator.validateFullUpdate(candidate)
+						.getFieldErrors(), is(beanValidationErrors(candidate, FullUpdate.class)));
+				assertThat(email, userValidator.validatePartialUpdate(candidate)
+						.getFieldErrors(), is(beanValidationErrors(candidate, PartialUpdate.class)));
+			}
+		}
+	}
+
+	@Test
+	public void givenInvalidBirthDates_whenValidate_thenBirthDateError() {
+		UserDTO badFormat = user.toBuilder()
+				.birthDate("1999-02-30")
+				.build();
+		UserDTO tooYoung = user.toBuilder()
+				.birthDate(LocalDate.now()
+						.minusYears(18)
+						.plusDays(1)
+						.toString())
+				.build();
+		UserDTO future = user.toBuilder()
+				.birthDate(LocalDate.now()
+						.toString())
+				.build();
+
+		assertThat(userValidator.validateFullUpdate(badFormat)
+				.getBirthDateError(), is("Invalid date format. Use: yyyy-MM-dd"));
+		assertThat(userValidator.validatePartialUpdate(tooYoung)
+				.getBirthDateError(), is("User must be at least 18 years old."));
+		assertThat(userValidator.validateFullUpdate(future)
+				.getBirthDateError(), is("Birth date value must be earlier than current date."));
+	}
+
+	@Test
+	public void givenPartialUserWithoutBirthDate_whenValidatePartialUpdate_thenValid() {
+		UserValidation validation = userValidator.validatePartialUpdate(UserDTO.builder()
+				.birthDate("")
+				.build());
+
+		assertThat(validation.isValid(), is(true));
+		assertThat(validation.getBirthDateError(), nullValue());
+	}
+
+	/**
+	 * A blank email breaks both of its constraints, in no set order; the
+	 * validator reports the blank one.
+	 */
+	private static Map<String, String> beanValidationErrors(UserDTO user, Class<?> group) {
+		Map<String, String> errors = new HashMap<>();
+		for (ConstraintViolation<UserDTO> violation : VALIDATOR.validate(user, group)) {
+			String field = violation.getPropertyPath()
+					.toString();
+			if (violation.getConstraintDescriptor()
+					.getAnnotation() instanceof NotBlank) {
+				errors.put(field, violation.getMessage());
+			} else {
+				errors.putIfAbsent(field, violation.getMessage());
+			}
+		}
+		return errors;
+	}
+}